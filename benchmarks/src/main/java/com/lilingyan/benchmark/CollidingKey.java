@@ -0,0 +1,44 @@
+package com.lilingyan.benchmark;
+
+/**
+ * 故意制造hash冲突的key
+ * 每COLLISIONS个连续的值共用同一个hashCode
+ * 这样同一个桶里的节点数量远超过TREEIFY_THRESHOLD，桶会被转成红黑树
+ * 实现了Comparable，红黑树里可以按key比较大小(不走tieBreakOrder)
+ * @Author: lilingyan
+ * @Date 2026/10/17 10:05
+ */
+public final class CollidingKey implements Comparable<CollidingKey> {
+
+    /**
+     * 共用一个hashCode的key个数
+     */
+    static final int COLLISIONS = 64;
+
+    private final int value;
+
+    public CollidingKey(int value) {
+        this.value = value;
+    }
+
+    @Override
+    public int hashCode() {
+        return value / COLLISIONS;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this ||
+                (o instanceof CollidingKey && ((CollidingKey)o).value == value);
+    }
+
+    @Override
+    public int compareTo(CollidingKey o) {
+        return Integer.compare(value, o.value);
+    }
+
+    @Override
+    public String toString() {
+        return "CollidingKey(" + value + ")";
+    }
+}
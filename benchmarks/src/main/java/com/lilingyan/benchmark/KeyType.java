@@ -0,0 +1,49 @@
+package com.lilingyan.benchmark;
+
+/**
+ * 基准测试用的key类型
+ * @Author: lilingyan
+ * @Date 2026/10/17 10:05
+ */
+public enum KeyType {
+    /**
+     * 和MyHashMapTest一样的Integer key
+     */
+    INTEGER {
+        @Override
+        Object key(int i) {
+            return i;
+        }
+    },
+    /**
+     * hashCode需要遍历字符的String key
+     */
+    STRING {
+        @Override
+        Object key(int i) {
+            return "key-" + i;
+        }
+    },
+    /**
+     * 冲突严重的key，会走TreeNode的路径
+     */
+    COLLIDING {
+        @Override
+        Object key(int i) {
+            return new CollidingKey(i);
+        }
+    };
+
+    abstract Object key(int i);
+
+    /**
+     * 生成count个互不相同的key
+     * 从offset开始，用来生成一定查不到的key
+     */
+    Object[] keys(int offset, int count) {
+        Object[] keys = new Object[count];
+        for (int i = 0; i < count; i++)
+            keys[i] = key(offset + i);
+        return keys;
+    }
+}
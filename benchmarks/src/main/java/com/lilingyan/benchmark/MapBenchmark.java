@@ -0,0 +1,251 @@
+package com.lilingyan.benchmark;
+
+import com.lilingyan.MyHashMap;
+import com.lilingyan.OpenAddressingMyHashMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MyHashMap和java.util.HashMap的对比基准测试
+ * 每个操作都有my和jdk两个方法，结果放在一起对比
+ * open开头的是开放寻址版本(OpenAddressingMyHashMap)，用来对比链表节点的指针跳转和平行数组的连续探测
+ * 一次调用处理size个key，结果是整批操作的平均时间
+ *
+ * 运行: mvn -f benchmarks/pom.xml package && java -jar benchmarks/target/benchmarks.jar
+ * @Author: lilingyan
+ * @Date 2026/10/17 10:05
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    int size;
+
+    @Param({"INTEGER", "STRING", "COLLIDING"})
+    KeyType keyType;
+
+    /**
+     * 已经放进map里的key(打乱顺序，避免按桶顺序访问)
+     */
+    Object[] keys;
+    /**
+     * 和keys相等但不是同一个对象的key，并且换了一种顺序
+     * 如果用插入时的key按插入顺序查，节点在内存里正好是按访问顺序分配的，key也是直接==命中
+     * 链表版本会因此显得特别快，和真实的查找不一样
+     */
+    Object[] hitKeys;
+    /**
+     * 一定查不到的key
+     */
+    Object[] missingKeys;
+
+    /**
+     * hitKeys按BATCH个一组拆开，批量查找用
+     */
+    Object[][] hitBatches;
+    Object[] batchResults = new Object[BATCH];
+    MyHashMap.BatchLookup batchLookup = new MyHashMap.BatchLookup(BATCH);
+
+    MyHashMap<Object,Object> myHashMap;
+    HashMap<Object,Object> hashMap;
+    OpenAddressingMyHashMap<Object,Object> openMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = keyType.keys(0, size);
+        hitKeys = keyType.keys(0, size);
+        missingKeys = keyType.keys(size, size);
+        shuffle(keys, new Random(42));
+        shuffle(hitKeys, new Random(44));
+        shuffle(missingKeys, new Random(43));
+        hitBatches = new Object[(size + BATCH - 1) / BATCH][];
+        for (int i = 0; i < hitBatches.length; i++)
+            hitBatches[i] = Arrays.copyOfRange(hitKeys, i * BATCH, Math.min(size, (i + 1) * BATCH));
+        myHashMap = new MyHashMap<>();
+        hashMap = new HashMap<>();
+        openMap = new OpenAddressingMyHashMap<>();
+        for (Object key : keys) {
+            myHashMap.put(key, key);
+            hashMap.put(key, key);
+            openMap.put(key, key);
+        }
+    }
+
+    //=========================查找==========================
+    @Benchmark
+    public void myGetHit(Blackhole bh) {
+        MyHashMap<Object,Object> map = myHashMap;
+        for (Object key : hitKeys)
+            bh.consume(map.get(key));
+    }
+    @Benchmark
+    public void jdkGetHit(Blackhole bh) {
+        HashMap<Object,Object> map = hashMap;
+        for (Object key : hitKeys)
+            bh.consume(map.get(key));
+    }
+    @Benchmark
+    public void openGetHit(Blackhole bh) {
+        OpenAddressingMyHashMap<Object,Object> map = openMap;
+        for (Object key : hitKeys)
+            bh.consume(map.get(key));
+    }
+    @Benchmark
+    public void myGetMiss(Blackhole bh) {
+        MyHashMap<Object,Object> map = myHashMap;
+        for (Object key : missingKeys)
+            bh.consume(map.get(key));
+    }
+    @Benchmark
+    public void jdkGetMiss(Blackhole bh) {
+        HashMap<Object,Object> map = hashMap;
+        for (Object key : missingKeys)
+            bh.consume(map.get(key));
+    }
+    @Benchmark
+    public void openGetMiss(Blackhole bh) {
+        OpenAddressingMyHashMap<Object,Object> map = openMap;
+        for (Object key : missingKeys)
+            bh.consume(map.get(key));
+    }
+    /**
+     * 一批BATCH个key，逐个get()和getAll()对比
+     */
+    @Benchmark
+    public void myGetBatchLoop(Blackhole bh) {
+        MyHashMap<Object,Object> map = myHashMap;
+        Object[] results = batchResults;
+        for (Object[] batch : hitBatches) {
+            for (int i = 0; i < batch.length; i++)
+                results[i] = map.get(batch[i]);
+            bh.consume(results);
+        }
+    }
+    @Benchmark
+    public void myGetAll(Blackhole bh) {
+        MyHashMap<Object,Object> map = myHashMap;
+        Object[] results = batchResults;
+        for (Object[] batch : hitBatches) {
+            map.getAll(batch, batch.length, results, batchLookup);
+            bh.consume(results);
+        }
+    }
+    //=========================查找==========================
+
+    //=========================添加==========================
+    /**
+     * 从无参构造开始添加，会经历多次resize()
+     */
+    @Benchmark
+    public MyHashMap<Object,Object> myPutGrowing() {
+        MyHashMap<Object,Object> map = new MyHashMap<>();
+        for (Object key : keys)
+            map.put(key, key);
+        return map;
+    }
+    @Benchmark
+    public HashMap<Object,Object> jdkPutGrowing() {
+        HashMap<Object,Object> map = new HashMap<>();
+        for (Object key : keys)
+            map.put(key, key);
+        return map;
+    }
+    @Benchmark
+    public OpenAddressingMyHashMap<Object,Object> openPutGrowing() {
+        OpenAddressingMyHashMap<Object,Object> map = new OpenAddressingMyHashMap<>();
+        for (Object key : keys)
+            map.put(key, key);
+        return map;
+    }
+    /**
+     * 构造时指定容量，添加过程中不会resize()
+     */
+    @Benchmark
+    public MyHashMap<Object,Object> myPutPresized() {
+        MyHashMap<Object,Object> map = new MyHashMap<>(capacityFor(size), 0.75f);
+        for (Object key : keys)
+            map.put(key, key);
+        return map;
+    }
+    @Benchmark
+    public HashMap<Object,Object> jdkPutPresized() {
+        HashMap<Object,Object> map = new HashMap<>(capacityFor(size), 0.75f);
+        for (Object key : keys)
+            map.put(key, key);
+        return map;
+    }
+    /**
+     * 覆盖已有的key，只走查找+替换值的路径
+     */
+    @Benchmark
+    public void myPutExisting(Blackhole bh) {
+        MyHashMap<Object,Object> map = myHashMap;
+        for (Object key : keys)
+            bh.consume(map.put(key, key));
+    }
+    @Benchmark
+    public void jdkPutExisting(Blackhole bh) {
+        HashMap<Object,Object> map = hashMap;
+        for (Object key : keys)
+            bh.consume(map.put(key, key));
+    }
+    //=========================添加==========================
+
+    //=========================删除==========================
+    /**
+     * 删除后再放回去，保证每次调用时map的内容不变
+     */
+    @Benchmark
+    public void myRemoveAndPut(Blackhole bh) {
+        MyHashMap<Object,Object> map = myHashMap;
+        for (Object key : keys) {
+            bh.consume(map.remove(key));
+            map.put(key, key);
+        }
+    }
+    @Benchmark
+    public void jdkRemoveAndPut(Blackhole bh) {
+        HashMap<Object,Object> map = hashMap;
+        for (Object key : keys) {
+            bh.consume(map.remove(key));
+            map.put(key, key);
+        }
+    }
+    @Benchmark
+    public void openRemoveAndPut(Blackhole bh) {
+        OpenAddressingMyHashMap<Object,Object> map = openMap;
+        for (Object key : keys) {
+            bh.consume(map.remove(key));
+            map.put(key, key);
+        }
+    }
+    //=========================删除==========================
+
+    /**
+     * 批量查找一批的key数量
+     */
+    static final int BATCH = 1000;
+
+    static int capacityFor(int size) {
+        return (int)(size / 0.75f) + 1;
+    }
+
+    static void shuffle(Object[] array, Random random) {
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Object tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package com.lilingyan;
+
+import java.util.*;
+
+/**
+ * 省内存版本的MyHashMap
+ * 还是拉链法，但是不创建Node对象，节点的字段拆开放在几个并列的数组里(struct of arrays)
+ * i号节点: hash在hashes[i]，key在keys[i]，value在values[i]，链表的下一个节点下标在next[i]
+ * hash表里存的是桶中第一个节点的下标
+ *
+ * 64位JVM开启压缩指针时:
+ * MyHashMap每个节点是一个32字节的Node对象，再加上hash表里4字节的引用(按0.75的负载因子摊下来约5字节)
+ * 这里每个节点只占四个数组里各4字节，再加上hash表摊下来的约5字节，表快满时一共约21字节，差不多是原来的一半
+ * 节点数组的长度就是扩容阈值，刚扩容完时会有一部分空位(500万个Integer节点实测约27字节，MyHashMap约38字节)
+ *
+ * 节点在数组里是连续的(0 ~ size-1)，删除时把最后一个节点挪到空出来的位置
+ * 数组里放不下红黑树，冲突严重的key链表会很长，这种场景还是用MyHashMap
+ * @Author: lilingyan
+ * @Date 2026/10/17 20:50
+ */
+public class CompactMyHashMap<K,V> {
+
+    /**
+     * 空桶/链表结尾
+     */
+    static final int NIL = -1;
+
+    /**
+     * hash表，存桶中第一个节点的下标，NIL表示空桶
+     */
+    int[] table;
+
+    /**
+     * 节点的hash
+     */
+    int[] hashes;
+
+    /**
+     * 同一个桶中下一个节点的下标，NIL表示链表结尾
+     */
+    int[] next;
+
+    Object[] keys;
+
+    Object[] values;
+
+    final float loadFactor;
+
+    /**
+     * 扩容阈值(capacity * load factor)，也是节点数组的长度
+     * 表还没分配的时候，存放初始容量
+     */
+    int threshold;
+
+    int size;
+
+    /**
+     * 结构修改的次数，迭代器用来fail-fast
+     */
+    transient int modCount;
+
+    /**
+     * 视图，第一次使用时创建
+     */
+    transient Set<Map.Entry<K,V>> entrySetView;
+    transient Set<K> keySetView;
+    transient Collection<V> valuesView;
+
+    //=========================构造器==========================
+    public CompactMyHashMap() {
+        this.loadFactor = MyHashMap.DEFAULT_LOAD_FACTOR;
+    }
+    public CompactMyHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        if (initialCapacity > MyHashMap.MAXIMUM_CAPACITY)
+            initialCapacity = MyHashMap.MAXIMUM_CAPACITY;
+        if (loadFactor <= 0 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                    loadFactor);
+        this.loadFactor = loadFactor;
+        this.threshold = MyHashMap.tableSizeFor(initialCapacity);
+    }
+    //=========================构造器==========================
+
+    //=========================添加==========================
+    public V put(K key, V value) {
+        int h = MyHashMap.hash(key), i;
+        if (table == null)
+            resize();
+        if ((i = indexOf(h, key)) >= 0) {
+            @SuppressWarnings("unchecked") V oldValue = (V)values[i];
+            values[i] = value;
+            return oldValue;
+        }
+        if (size == hashes.length) {
+            //节点数组满了，一般就是到了扩容阈值
+            if (size >= threshold)
+                resize();
+            else
+                growEntries();
+        }
+        int[] tab = table;
+        int b = h & (tab.length - 1);
+        //新节点放在数组末尾，挂到桶的链表头
+        i = size++;
+        hashes[i] = h;
+        keys[i] = key;
+        values[i] = value;
+        next[i] = tab[b];
+        tab[b] = i;
+        ++modCount;
+        return null;
+    }
+
+    /**
+     * 批量添加，先按最终的节点数量一次扩容到位
+     * @param m
+     */
+    public void putAll(Map<? extends K, ? extends V> m) {
+        int s = m.size();
+        if (s > 0) {
+            if (table == null) {
+                int t = MyHashMap.capacityFor(s, loadFactor);
+                if (t > threshold)
+                    threshold = MyHashMap.tableSizeFor(t);
+            }
+            else {
+                long expected = (long)size + s;
+                if (expected > threshold && table.length < MyHashMap.MAXIMUM_CAPACITY) {
+                    //一次扩到最终容量，节点数组只复制一次，桶的链表只串一遍
+                    int cap = MyHashMap.tableSizeFor(MyHashMap.capacityFor((int)Math.min(expected, Integer.MAX_VALUE), loadFactor));
+                    resize(Math.max(cap, table.length << 1));
+                }
+            }
+            for (Map.Entry<? extends K, ? extends V> e : m.entrySet())
+                put(e.getKey(), e.getValue());
+        }
+    }
+    //=========================添加==========================
+
+    //=========================删除==========================
+    public V remove(Object key) {
+        int i;
+        if ((i = indexOf(MyHashMap.hash(key), key)) < 0)
+            return null;
+        @SuppressWarnings("unchecked") V oldValue = (V)values[i];
+        removeEntry(i);
+        return oldValue;
+    }
+
+    /**
+     * 删除i号节点
+     * 先从桶的链表里摘掉，再把最后一个节点挪到i，保持节点数组连续
+     * @param i
+     */
+    final void removeEntry(int i) {
+        int[] tab = table, nx = next;
+        int mask = tab.length - 1;
+        unlink(tab, nx, i, hashes[i] & mask);
+        int last = --size;
+        if (i != last) {
+            //指向last的指针改成指向i
+            int b = hashes[last] & mask, p;
+            if ((p = tab[b]) == last)
+                tab[b] = i;
+            else {
+                while (nx[p] != last)
+                    p = nx[p];
+                nx[p] = i;
+            }
+            hashes[i] = hashes[last];
+            keys[i] = keys[last];
+            values[i] = values[last];
+            nx[i] = nx[last];
+        }
+        keys[last] = null;
+        values[last] = null;
+        ++modCount;
+    }
+
+    /**
+     * 把i号节点从b桶的链表里摘掉
+     */
+    static void unlink(int[] tab, int[] nx, int i, int b) {
+        int p;
+        if ((p = tab[b]) == i)
+            tab[b] = nx[i];
+        else {
+            while (nx[p] != i)
+                p = nx[p];
+            nx[p] = nx[i];
+        }
+    }
+    //=========================删除==========================
+
+    //=========================查找==========================
+    public V get(Object key) {
+        int i;
+        if ((i = indexOf(MyHashMap.hash(key), key)) < 0)
+            return null;
+        @SuppressWarnings("unchecked") V v = (V)values[i];
+        return v;
+    }
+    public boolean containsKey(Object key) {
+        return indexOf(MyHashMap.hash(key), key) >= 0;
+    }
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param h
+     * @param key
+     * @return  key所在的节点下标，没有返回-1
+     */
+    final int indexOf(int h, Object key) {
+        int[] tab;
+        if ((tab = table) == null)
+            return -1;
+        int[] hs = hashes, nx = next;
+        Object[] ks = keys;
+        for (int e = tab[h & (tab.length - 1)]; e != NIL; e = nx[e]) {
+            Object k;
+            if (hs[e] == h &&
+                    ((k = ks[e]) == key || (key != null && key.equals(k))))
+                return e;
+        }
+        return -1;
+    }
+    //=========================查找==========================
+
+    //=========================特色方法==========================
+    /**
+     * 与MyHashMap.resize()相同的容量计算
+     * 节点数组按新的阈值扩大，节点下标不变，只需要按hash重新串一遍桶的链表
+     * hash表已经是最大容量时，只扩大节点数组
+     */
+    final void resize() {
+        resize(0);
+    }
+
+    /**
+     * @param targetCap 直接扩容到这个容量(putAll()用，2^n并且大于当前容量)，0表示按默认规则扩大两倍
+     */
+    final void resize(int targetCap) {
+        int[] oldTab = table;
+        int oldCap = (oldTab == null) ? 0 : oldTab.length;
+        int oldThr = threshold;
+        int newCap, newThr = 0;
+        if (oldCap > 0) {
+            if (oldCap >= MyHashMap.MAXIMUM_CAPACITY) {
+                threshold = Integer.MAX_VALUE;
+                growEntries();
+                return;
+            }
+            else if (targetCap > oldCap)
+                //一次扩到位，阈值按负载因子重新算
+                newCap = targetCap;
+            else if ((newCap = oldCap << 1) < MyHashMap.MAXIMUM_CAPACITY &&
+                    oldCap >= MyHashMap.DEFAULT_INITIAL_CAPACITY)
+                newThr = oldThr << 1;
+        }
+        else if (oldThr > 0)
+            newCap = oldThr;
+        else {
+            newCap = MyHashMap.DEFAULT_INITIAL_CAPACITY;
+            newThr = (int)(loadFactor * MyHashMap.DEFAULT_INITIAL_CAPACITY);
+        }
+        if (newThr == 0) {
+            float ft = (float)newCap * loadFactor;
+            newThr = (newCap < MyHashMap.MAXIMUM_CAPACITY && ft < (float)MyHashMap.MAXIMUM_CAPACITY ?
+                    (int)ft : Integer.MAX_VALUE);
+        }
+        threshold = newThr;
+        //负载因子很大时阈值会超过数组上限，先按表长分配，满了再扩大节点数组
+        resizeEntries(Math.max(size + 1, Math.min(newThr, newCap)));
+        int[] tab = new int[newCap], hs = hashes, nx = next;
+        Arrays.fill(tab, NIL);
+        int mask = newCap - 1;
+        //倒着挂到链表头，链表里的节点按下标从小到大
+        for (int i = size - 1; i >= 0; --i) {
+            int b = hs[i] & mask;
+            nx[i] = tab[b];
+            tab[b] = i;
+        }
+        table = tab;
+    }
+
+    /**
+     * 只扩大节点数组(阈值超过了表长)
+     */
+    final void growEntries() {
+        int n = size + (size >> 1) + 1;
+        resizeEntries(n < 0 ? Integer.MAX_VALUE - 8 : n);
+    }
+
+    final void resizeEntries(int n) {
+        if (hashes == null) {
+            hashes = new int[n];
+            next = new int[n];
+            keys = new Object[n];
+            values = new Object[n];
+        }
+        else if (n != hashes.length) {
+            hashes = Arrays.copyOf(hashes, n);
+            next = Arrays.copyOf(next, n);
+            keys = Arrays.copyOf(keys, n);
+            values = Arrays.copyOf(values, n);
+        }
+    }
+    //=========================特色方法==========================
+
+    //=========================视图==========================
+    /**
+     * 节点没有对象，视图里的Map.Entry是遍历时创建的
+     * setValue()会写回map
+     * @return
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        Set<Map.Entry<K,V>> es;
+        return (es = entrySetView) == null ? (entrySetView = new EntrySet()) : es;
+    }
+    public Set<K> keySet() {
+        Set<K> ks;
+        return (ks = keySetView) == null ? (keySetView = new KeySet()) : ks;
+    }
+    public Collection<V> values() {
+        Collection<V> vs;
+        return (vs = valuesView) == null ? (valuesView = new Values()) : vs;
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public final int size()                 { return size; }
+        public final Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator();
+        }
+        public final boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+            Object key = e.getKey();
+            int i = indexOf(MyHashMap.hash(key), key);
+            return i >= 0 && Objects.equals(values[i], e.getValue());
+        }
+        public final boolean remove(Object o) {
+            if (o instanceof Map.Entry) {
+                Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+                Object key = e.getKey();
+                int i = indexOf(MyHashMap.hash(key), key);
+                if (i >= 0 && Objects.equals(values[i], e.getValue())) {
+                    removeEntry(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    final class KeySet extends AbstractSet<K> {
+        public final int size()                 { return size; }
+        public final Iterator<K> iterator()     { return new KeyIterator(); }
+        public final boolean contains(Object o) { return containsKey(o); }
+        public final boolean remove(Object key) {
+            int i;
+            if ((i = indexOf(MyHashMap.hash(key), key)) < 0)
+                return false;
+            removeEntry(i);
+            return true;
+        }
+    }
+
+    final class Values extends AbstractCollection<V> {
+        public final int size()                 { return size; }
+        public final Iterator<V> iterator()     { return new ValueIterator(); }
+    }
+
+    /**
+     * 从最后一个节点往前遍历
+     * 删除时是最后一个节点挪到当前位置，挪过来的节点已经遍历过了，不会重复也不会漏掉
+     */
+    abstract class HashIterator {
+        int index;             // next entry is index - 1
+        int current;           // current entry, NIL if none
+        int expectedModCount;  // for fast-fail
+
+        HashIterator() {
+            index = size;
+            current = NIL;
+            expectedModCount = modCount;
+        }
+
+        public final boolean hasNext() {
+            return index > 0;
+        }
+
+        final int nextIndex() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (index <= 0)
+                throw new NoSuchElementException();
+            return current = --index;
+        }
+
+        public final void remove() {
+            int i = current;
+            if (i == NIL)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            current = NIL;
+            removeEntry(i);
+            expectedModCount = modCount;
+        }
+    }
+
+    final class KeyIterator extends HashIterator
+            implements Iterator<K> {
+        @SuppressWarnings("unchecked")
+        public final K next() { return (K)keys[nextIndex()]; }
+    }
+
+    final class ValueIterator extends HashIterator
+            implements Iterator<V> {
+        @SuppressWarnings("unchecked")
+        public final V next() { return (V)values[nextIndex()]; }
+    }
+
+    final class EntryIterator extends HashIterator
+            implements Iterator<Map.Entry<K,V>> {
+        @SuppressWarnings("unchecked")
+        public final Map.Entry<K,V> next() {
+            int i = nextIndex();
+            return new Entry((K)keys[i], (V)values[i]);
+        }
+    }
+    //=========================视图==========================
+
+    //=========================使用到的节点结构==========================
+    /**
+     * 遍历时创建的节点，setValue()同时写回map
+     */
+    final class Entry extends AbstractMap.SimpleEntry<K,V> {
+        private static final long serialVersionUID = 4263813548306781412L;
+
+        Entry(K key, V value) {
+            super(key, value);
+        }
+        public V setValue(V value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+    //=========================使用到的节点结构==========================
+}
@@ -0,0 +1,577 @@
+package com.lilingyan;
+
+import com.lilingyan.MyHashMap.TreeNode;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程安全的MyHashMap
+ * 不用一把全局锁，而是:
+ *  1. 桶是空的时候，用CAS直接把新节点放进去
+ *  2. 桶不是空的时候，只锁住桶里的第一个节点(不同的桶互不影响)
+ *  3. 查询不加锁
+ *  4. 节点数量用LongAdder分段计数，多个线程同时增减不会争抢同一个变量
+ *
+ * 链表桶用自己的Node：hash和key是final，value和next是volatile
+ * 不加锁的读线程沿着next读到刚挂上的节点，也一定能看到它的hash/key/value
+ * (MyHashMap.Node为了节点池复用，hash和key不是final，不能直接拿来给并发读)
+ *
+ * 超过阈值转成红黑树，直接复用MyHashMap.TreeNode的方法，整棵树挂在一个TreeBin上放进桶
+ * 红黑树的修改都在一个长度为1的临时数组上完成(TreeNode的方法用(n - 1) & hash定位桶，长度为1时永远是0)
+ * 改完以后再把新的根节点写回TreeBin.root，这是volatile写，读线程读到root就能看到之前的所有修改
+ * 不加锁查询红黑树没找到时，加锁再查一次，读到改了一半的树也不会漏掉
+ *
+ * 扩容时由一个线程负责迁移，迁移完的旧桶放一个ForwardingNode，指向新表
+ * 迁移是复制节点，旧桶里的节点不变，正在读旧桶的线程不受影响
+ *
+ * 与java.util.concurrent.ConcurrentHashMap一样，key和value都不能为null
+ * @Author: lilingyan
+ * @Date 2026/10/17 16:40
+ */
+public class ConcurrentMyHashMap<K,V> {
+
+    /**
+     * hash表
+     */
+    volatile AtomicReferenceArray<Node<K,V>> table;
+
+    /**
+     * 扩容时的新表，只在迁移过程中不为null
+     */
+    volatile AtomicReferenceArray<Node<K,V>> nextTable;
+
+    /**
+     * 初始化和扩容的控制
+     * 大于0: 表还没初始化时是初始容量，初始化以后是扩容阈值
+     * -1: 正在初始化或者扩容
+     */
+    final AtomicInteger sizeCtl = new AtomicInteger();
+
+    /**
+     * 节点数量
+     */
+    final LongAdder count = new LongAdder();
+
+    final float loadFactor;
+
+    /**
+     * 只用来给TreeNode的方法创建节点(newTreeNode/replacementNode)，本身不存数据
+     */
+    final MyHashMap<K,V> nodes = new MyHashMap<>();
+
+    /**
+     * 不加锁查询红黑树时最多往下走的层数
+     * 红黑树的高度不超过2log(n+1)，超过说明树正在被修改，改成加锁查询
+     */
+    static final int MAX_TREE_DEPTH = 64;
+
+    //=========================构造器==========================
+    public ConcurrentMyHashMap() {
+        this.loadFactor = MyHashMap.DEFAULT_LOAD_FACTOR;
+    }
+    public ConcurrentMyHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        if (initialCapacity > MyHashMap.MAXIMUM_CAPACITY)
+            initialCapacity = MyHashMap.MAXIMUM_CAPACITY;
+        if (loadFactor <= 0 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                    loadFactor);
+        this.loadFactor = loadFactor;
+        this.sizeCtl.set(MyHashMap.tableSizeFor(initialCapacity));
+    }
+    //=========================构造器==========================
+
+    //=========================添加==========================
+    public V put(K key, V value) {
+        return putVal(key, value, false);
+    }
+    public V putIfAbsent(K key, V value) {
+        return putVal(key, value, true);
+    }
+    final V putVal(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        int hash = MyHashMap.hash(key);
+        int binCount;
+        for (AtomicReferenceArray<Node<K,V>> tab = table;;) {
+            Node<K,V> f; int i;
+            if (tab == null)
+                tab = initTable();
+            else if ((f = tab.get(i = (tab.length() - 1) & hash)) == null) {
+                //空桶，CAS放入，失败说明有别的线程先放了，重新来
+                if (tab.compareAndSet(i, null, new Node<>(hash, key, value, null))) {
+                    binCount = 0;
+                    break;
+                }
+            }
+            else if (f instanceof ForwardingNode)
+                //这个桶已经迁移到新表了
+                tab = ((ForwardingNode<K,V>)f).nextTable;
+            else {
+                V oldVal = null;
+                binCount = -1;
+                synchronized (f) {
+                    //加锁以后桶头没变，才能修改
+                    if (tab.get(i) == f) {
+                        if (f instanceof TreeBin) {
+                            //已经是红黑树，不需要再treeifyBin
+                            binCount = 2;
+                            TreeBin<K,V> t = (TreeBin<K,V>)f;
+                            MyHashMap.Node<K,V>[] bin = singleBin(t.root);
+                            TreeNode<K,V> p = t.root.putTreeVal(nodes, bin, hash, key, value);
+                            if (p != null) {
+                                oldVal = p.value;
+                                if (!onlyIfAbsent)
+                                    p.value = value;
+                            }
+                            t.root = (TreeNode<K,V>)bin[0];
+                        }
+                        else {
+                            binCount = 1;
+                            for (Node<K,V> e = f; ; ++binCount) {
+                                K ek;
+                                if (e.hash == hash &&
+                                        ((ek = e.key) == key || key.equals(ek))) {
+                                    oldVal = e.value;
+                                    if (!onlyIfAbsent)
+                                        e.value = value;
+                                    break;
+                                }
+                                Node<K,V> pred = e;
+                                if ((e = e.next) == null) {
+                                    //next是volatile，读线程读到新节点时它已经构造完了
+                                    pred.next = new Node<>(hash, key, value, null);
+                                    break;
+                                }
+                            }
+                        }
+                    }
+                }
+                if (binCount >= 0) {
+                    if (binCount >= MyHashMap.TREEIFY_THRESHOLD)
+                        treeifyBin(tab, i);
+                    if (oldVal != null)
+                        return oldVal;
+                    break;
+                }
+            }
+        }
+        addCount(1L);
+        return null;
+    }
+    //=========================添加==========================
+
+    //=========================删除==========================
+    public V remove(Object key) {
+        if (key == null)
+            throw new NullPointerException();
+        int hash = MyHashMap.hash(key);
+        for (AtomicReferenceArray<Node<K,V>> tab = table;;) {
+            Node<K,V> f; int i;
+            if (tab == null || (f = tab.get(i = (tab.length() - 1) & hash)) == null)
+                return null;
+            if (f instanceof ForwardingNode) {
+                tab = ((ForwardingNode<K,V>)f).nextTable;
+                continue;
+            }
+            boolean validated = false;
+            V oldVal = null;
+            synchronized (f) {
+                if (tab.get(i) == f) {
+                    validated = true;
+                    if (f instanceof TreeBin) {
+                        TreeBin<K,V> t = (TreeBin<K,V>)f;
+                        TreeNode<K,V> p;
+                        if ((p = t.root.getTreeNode(nodes, hash, key)) != null) {
+                            oldVal = p.value;
+                            MyHashMap.Node<K,V>[] bin = singleBin(t.root);
+                            p.removeTreeNode(nodes, bin, true);
+                            if (bin[0] instanceof TreeNode)
+                                t.root = (TreeNode<K,V>)bin[0];
+                            else
+                                //节点太少已经退化成MyHashMap.Node链表，换成自己的链表节点
+                                tab.set(i, copyNodes(bin[0], 0, 0));
+                        }
+                    }
+                    else {
+                        for (Node<K,V> e = f, pred = null; e != null; pred = e, e = e.next) {
+                            K ek;
+                            if (e.hash == hash &&
+                                    ((ek = e.key) == key || key.equals(ek))) {
+                                oldVal = e.value;
+                                if (pred == null)
+                                    tab.set(i, e.next);
+                                else
+                                    pred.next = e.next;
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+            if (validated) {
+                if (oldVal != null)
+                    addCount(-1L);
+                return oldVal;
+            }
+        }
+    }
+    //=========================删除==========================
+
+    //=========================查找==========================
+    public V get(Object key) {
+        int hash = MyHashMap.hash(key);
+        for (AtomicReferenceArray<Node<K,V>> tab = table;;) {
+            Node<K,V> f; int i;
+            if (tab == null || (f = tab.get(i = (tab.length() - 1) & hash)) == null)
+                return null;
+            if (f instanceof ForwardingNode) {
+                tab = ((ForwardingNode<K,V>)f).nextTable;
+                continue;
+            }
+            if (f instanceof TreeBin) {
+                TreeBin<K,V> t = (TreeBin<K,V>)f;
+                TreeNode<K,V> p;
+                if ((p = findTreeNode(nodes, t.root, hash, key)) != null)
+                    return p.value;
+                //不加锁没找到，不一定是真的没有(可能在旋转)，加锁再确认
+                synchronized (f) {
+                    if (tab.get(i) == f)
+                        return (p = t.root.getTreeNode(nodes, hash, key)) == null ? null : p.value;
+                }
+                tab = table;
+                continue;
+            }
+            for (Node<K,V> e = f; e != null; e = e.next) {
+                K ek;
+                if (e.hash == hash &&
+                        ((ek = e.key) == key || (key != null && key.equals(ek))))
+                    return e.value;
+            }
+            return null;
+        }
+    }
+    /**
+     * value不能为null，get()不为null就是存在
+     */
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+    public int size() {
+        long n = count.sum();
+        return (n < 0L) ? 0 : (n > (long)Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)n;
+    }
+
+    /**
+     * 不加锁在红黑树中查找
+     * 只走确定的方向(hash大小，或者Comparable的比较结果)，不确定或者太深就返回null交给加锁查找
+     * @param map   比较key的大小
+     * @param root
+     * @param h
+     * @param k
+     * @return
+     */
+    static <K,V> TreeNode<K,V> findTreeNode(MyHashMap<K,V> map, TreeNode<K,V> root, int h, Object k) {
+        TreeNode<K,V> p = root;
+        for (int depth = 0; p != null && depth < MAX_TREE_DEPTH; ++depth) {
+            int ph, dir; K pk;
+            if ((ph = p.hash) > h)
+                p = p.left;
+            else if (ph < h)
+                p = p.right;
+            else if ((pk = p.key) == k || (k != null && k.equals(pk)))
+                return p;
+            else if ((dir = map.compareTreeKeys(k, pk)) != 0)
+                p = (dir < 0) ? p.left : p.right;
+            else
+                return null;
+        }
+        return null;
+    }
+    //=========================查找==========================
+
+    //=========================特色方法==========================
+    final AtomicReferenceArray<Node<K,V>> initTable() {
+        AtomicReferenceArray<Node<K,V>> tab;
+        while ((tab = table) == null) {
+            int sc = sizeCtl.get();
+            if (sc < 0)
+                //别的线程正在初始化
+                Thread.yield();
+            else if (sizeCtl.compareAndSet(sc, -1)) {
+                try {
+                    if ((tab = table) == null) {
+                        int n = (sc > 0) ? sc : MyHashMap.DEFAULT_INITIAL_CAPACITY;
+                        table = tab = new AtomicReferenceArray<>(n);
+                        sc = thresholdFor(n);
+                    }
+                } finally {
+                    sizeCtl.set(sc);
+                }
+                break;
+            }
+        }
+        return tab;
+    }
+
+    /**
+     * 链表转红黑树
+     * 在复制出来的TreeNode上构建红黑树，最后一次性替换桶头，读线程看到的要么是旧链表要么是新树
+     * @param tab
+     * @param index
+     */
+    final void treeifyBin(AtomicReferenceArray<Node<K,V>> tab, int index) {
+        Node<K,V> b;
+        if (tab.length() < MyHashMap.MIN_TREEIFY_CAPACITY)
+            //与MyHashMap一样，表太小先扩容
+            tryResize(tab);
+        else if ((b = tab.get(index)) != null && !(b instanceof TreeBin) &&
+                !(b instanceof ForwardingNode)) {
+            synchronized (b) {
+                if (tab.get(index) == b)
+                    tab.set(index, newTreeBin(copyToTreeNodes(b)));
+            }
+        }
+    }
+
+    final void addCount(long x) {
+        count.add(x);
+        AtomicReferenceArray<Node<K,V>> tab;
+        if (x > 0 && (tab = table) != null) {
+            int sc = sizeCtl.get();
+            if (sc > 0 && count.sum() > sc)
+                tryResize(tab);
+        }
+    }
+
+    /**
+     * 抢到sizeCtl的线程负责把tab整个迁移到两倍大小的新表
+     * 其他线程不等待，碰到ForwardingNode就去新表里操作
+     * @param tab
+     */
+    final void tryResize(AtomicReferenceArray<Node<K,V>> tab) {
+        int sc, n;
+        if (table != tab || (sc = sizeCtl.get()) < 0 ||
+                (n = tab.length()) >= MyHashMap.MAXIMUM_CAPACITY ||
+                !sizeCtl.compareAndSet(sc, -1))
+            return;
+        int newSc = sc;
+        try {
+            if (table == tab) {
+                transfer(tab);
+                newSc = thresholdFor(n << 1);
+            }
+        } finally {
+            sizeCtl.set(newSc);
+        }
+    }
+
+    final void transfer(AtomicReferenceArray<Node<K,V>> tab) {
+        int n = tab.length();
+        AtomicReferenceArray<Node<K,V>> nextTab = new AtomicReferenceArray<>(n << 1);
+        nextTable = nextTab;
+        ForwardingNode<K,V> fwd = new ForwardingNode<>(nextTab);
+        for (int j = 0; j < n; ++j) {
+            for (;;) {
+                Node<K,V> f;
+                if ((f = tab.get(j)) == null) {
+                    if (tab.compareAndSet(j, null, fwd))
+                        break;
+                    continue;
+                }
+                synchronized (f) {
+                    if (tab.get(j) != f)
+                        continue;
+                    Node<K,V> lo, hi;
+                    if (f instanceof TreeBin) {
+                        //与TreeNode.split()一样拆成高低两部分，节点太少就退化成链表
+                        TreeNode<K,V> root = ((TreeBin<K,V>)f).root;
+                        lo = splitBin(root, n, 0);
+                        hi = splitBin(root, n, n);
+                    }
+                    else {
+                        lo = copyNodes(f, n, 0);
+                        hi = copyNodes(f, n, n);
+                    }
+                    nextTab.set(j, lo);
+                    nextTab.set(j + n, hi);
+                    //新表的两个桶准备好以后，旧桶才指向新表
+                    tab.set(j, fwd);
+                }
+                break;
+            }
+        }
+        table = nextTab;
+        nextTable = null;
+    }
+
+    /**
+     * 复制一个链表桶中(hash & bit) == want的节点，保持原来的顺序
+     * bit为0时复制全部节点
+     */
+    static <K,V> Node<K,V> copyNodes(Node<K,V> f, int bit, int want) {
+        Node<K,V> hd = null, tl = null;
+        for (Node<K,V> e = f; e != null; e = e.next) {
+            if ((e.hash & bit) == want) {
+                Node<K,V> p = new Node<>(e.hash, e.key, e.value, null);
+                if (tl == null)
+                    hd = p;
+                else
+                    tl.next = p;
+                tl = p;
+            }
+        }
+        return hd;
+    }
+
+    /**
+     * 把红黑树里(或者红黑树退化出来的)MyHashMap.Node链表复制成自己的链表节点
+     * 红黑树的根节点在最前面，next串起了树里的全部节点
+     */
+    static <K,V> Node<K,V> copyNodes(MyHashMap.Node<K,V> f, int bit, int want) {
+        Node<K,V> hd = null, tl = null;
+        for (MyHashMap.Node<K,V> e = f; e != null; e = e.next) {
+            if ((e.hash & bit) == want) {
+                Node<K,V> p = new Node<>(e.hash, e.key, e.value, null);
+                if (tl == null)
+                    hd = p;
+                else
+                    tl.next = p;
+                tl = p;
+            }
+        }
+        return hd;
+    }
+
+    /**
+     * 复制一个链表桶的全部节点，变成双向链表的TreeNode(还没有构建红黑树)
+     */
+    final TreeNode<K,V> copyToTreeNodes(Node<K,V> f) {
+        TreeNode<K,V> hd = null, tl = null;
+        for (Node<K,V> e = f; e != null; e = e.next) {
+            tl = appendTreeNode(tl, e.hash, e.key, e.value);
+            if (hd == null)
+                hd = tl;
+        }
+        return hd;
+    }
+
+    /**
+     * 复制红黑树中(hash & bit) == want的节点，变成双向链表的TreeNode(还没有构建红黑树)
+     */
+    final TreeNode<K,V> copyToTreeNodes(TreeNode<K,V> f, int bit, int want) {
+        TreeNode<K,V> hd = null, tl = null;
+        for (MyHashMap.Node<K,V> e = f; e != null; e = e.next) {
+            if ((e.hash & bit) == want)
+                tl = appendTreeNode(tl, e.hash, e.key, e.value);
+            if (hd == null)
+                hd = tl;
+        }
+        return hd;
+    }
+
+    /**
+     * 红黑树桶迁移时的拆分
+     * 节点数不超过UNTREEIFY_THRESHOLD就变成链表，否则重新构建红黑树
+     */
+    final Node<K,V> splitBin(TreeNode<K,V> f, int bit, int want) {
+        int c = 0;
+        for (MyHashMap.Node<K,V> e = f; e != null; e = e.next) {
+            if ((e.hash & bit) == want)
+                ++c;
+        }
+        if (c == 0)
+            return null;
+        if (c <= MyHashMap.UNTREEIFY_THRESHOLD)
+            return copyNodes(f, bit, want);
+        return newTreeBin(copyToTreeNodes(f, bit, want));
+    }
+
+    /**
+     * 在双向链表的TreeNode上构建红黑树，挂到一个新的TreeBin上
+     */
+    final TreeBin<K,V> newTreeBin(TreeNode<K,V> hd) {
+        MyHashMap.Node<K,V>[] bin = singleBin(hd);
+        hd.treeify(nodes, bin);
+        return new TreeBin<>((TreeNode<K,V>)bin[0]);
+    }
+    //=========================特色方法==========================
+
+    //=========================一些常用方法封装==========================
+    final int thresholdFor(int n) {
+        float ft = (float)n * loadFactor;
+        return (n < MyHashMap.MAXIMUM_CAPACITY && ft < (float)MyHashMap.MAXIMUM_CAPACITY ?
+                (int)ft : Integer.MAX_VALUE);
+    }
+
+    /**
+     * 长度为1的临时hash表，让TreeNode的方法只修改这个数组而不是真正的table
+     */
+    @SuppressWarnings({"rawtypes","unchecked"})
+    static <K,V> MyHashMap.Node<K,V>[] singleBin(MyHashMap.Node<K,V> head) {
+        MyHashMap.Node<K,V>[] bin = (MyHashMap.Node<K,V>[])new MyHashMap.Node[1];
+        bin[0] = head;
+        return bin;
+    }
+
+    /**
+     * 在tl后面接一个新的TreeNode，返回新的链表尾
+     */
+    final TreeNode<K,V> appendTreeNode(TreeNode<K,V> tl, int hash, K key, V value) {
+        TreeNode<K,V> p = nodes.newTreeNode(hash, key, value, null);
+        if (tl != null) {
+            p.prev = tl;
+            tl.next = p;
+        }
+        return p;
+    }
+    //=========================一些常用方法封装==========================
+
+    //=========================使用到的节点结构==========================
+    /**
+     * 链表节点
+     * hash和key是final，value和next是volatile，不加锁的读线程读到的节点总是完整的
+     */
+    static class Node<K,V> {
+        final int hash;
+        final K key;
+        volatile V value;
+        volatile Node<K,V> next;
+
+        Node(int hash, K key, V value, Node<K,V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * 放在红黑树桶的桶头，树的根节点在root里
+     * 加锁修改红黑树以后写回root，读线程从root开始查找
+     */
+    static final class TreeBin<K,V> extends Node<K,V> {
+        volatile TreeNode<K,V> root;
+        TreeBin(TreeNode<K,V> root) {
+            super(0, null, null, null);
+            this.root = root;
+        }
+    }
+
+    /**
+     * 扩容时放在已经迁移完的旧桶中，指向新表
+     */
+    static final class ForwardingNode<K,V> extends Node<K,V> {
+        final AtomicReferenceArray<Node<K,V>> nextTable;
+        ForwardingNode(AtomicReferenceArray<Node<K,V>> nextTable) {
+            super(0, null, null, null);
+            this.nextTable = nextTable;
+        }
+    }
+    //=========================使用到的节点结构==========================
+
+}
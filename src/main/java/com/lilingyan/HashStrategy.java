@@ -0,0 +1,110 @@
+package com.lilingyan;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * MyHashMap计算key的hash和比较key的策略
+ * 默认的hash()只把高16位异或到低16位，连续的long、拼起来的ID这类hashCode还是会挤在少数桶里
+ * 换成murmur3的fmix32，hashCode的每一位都会影响低位，链表会短很多
+ * 带随机种子的策略，外部猜不到key落在哪个桶，可以防止构造冲突的key攻击(hashCode本身相同的key仍然会冲突)
+ *
+ * 自己实现这个接口时，keyEquals()可以换成自定义的相等
+ * 自定义的相等不一定和Comparable的顺序一致，所以这种map的桶不会转红黑树
+ * @Author: lilingyan
+ * @Date 2026/10/17 20:10
+ */
+public interface HashStrategy {
+
+    /**
+     * @param key   不会是null(null的hash固定是0)
+     * @return      最终用来分桶的hash(用低位)
+     */
+    int hash(Object key);
+
+    /**
+     * @param key   要查找的key，不会是null
+     * @param k     map中的key
+     * @return
+     */
+    boolean keyEquals(Object key, Object k);
+
+    /**
+     * 和MyHashMap.hash()一样
+     */
+    HashStrategy DEFAULT = new Mixer(false, 0);
+
+    /**
+     * murmur3的fmix32
+     */
+    HashStrategy MURMUR3 = new Mixer(true, 0);
+
+    /**
+     * 每次调用生成一个随机种子，种子和hashCode异或以后再fmix32
+     * @return
+     */
+    static HashStrategy seeded() {
+        return new Mixer(true, ThreadLocalRandom.current().nextInt());
+    }
+
+    static HashStrategy seeded(int seed) {
+        return new Mixer(true, seed);
+    }
+
+    /**
+     * murmur3的最后一步，32位的每一位都会影响结果的每一位
+     * @param h
+     * @return
+     */
+    static int fmix32(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * murmur3的fmix64，64位的每一位都会影响结果的每一位
+     * @param h
+     * @return
+     */
+    static long fmix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 内置的策略，只换hash，相等还是Object.equals()，可以转红黑树
+     */
+    final class Mixer implements HashStrategy {
+        final boolean fmix;
+        final int seed;
+
+        Mixer(boolean fmix, int seed) {
+            this.fmix = fmix;
+            this.seed = seed;
+        }
+
+        public int hash(Object key) {
+            return mix(key.hashCode());
+        }
+
+        /**
+         * 对已经算好的hashCode做扰动(HashedKey用)
+         * @param h
+         * @return
+         */
+        int mix(int h) {
+            return fmix ? fmix32(h ^ seed) : MyHashMap.spread(h);
+        }
+
+        public boolean keyEquals(Object key, Object k) {
+            return key.equals(k);
+        }
+    }
+}
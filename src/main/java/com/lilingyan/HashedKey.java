@@ -0,0 +1,57 @@
+package com.lilingyan;
+
+/**
+ * 预先算好hashCode的key
+ * hashCode()和equals()很贵的key(长字符串、多个字段拼成的key)，同一个key经常要在好几个MyHashMap里查
+ * 每个map的get/put都会重新调用一次hashCode()
+ * 用HashedKey.of(key)包一次，hashCode()只调用一次，之后传给MyHashMap的getHashed/putHashed/removeHashed/containsHashedKey
+ * map按自己的hash策略把缓存的hashCode扰动一下就能直接分桶
+ *
+ * 存的是原始的hashCode，不是扰动后的hash，所以可以在hash策略不同的map之间共用
+ * (自定义相等的hash策略不认hashCode，这种map还是会调用策略的hash())
+ * key放进HashedKey以后不能再修改影响hashCode的字段
+ * @Author: lilingyan
+ * @Date 2026/10/17 22:50
+ */
+public final class HashedKey<K> {
+
+    final K key;
+
+    /**
+     * key.hashCode()，null是0
+     */
+    final int hash;
+
+    private HashedKey(K key, int hash) {
+        this.key = key;
+        this.hash = hash;
+    }
+
+    public static <K> HashedKey<K> of(K key) {
+        return new HashedKey<>(key, key == null ? 0 : key.hashCode());
+    }
+
+    public K key() {
+        return key;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof HashedKey))
+            return false;
+        HashedKey<?> other = (HashedKey<?>)o;
+        return hash == other.hash && (key == null ? other.key == null : key.equals(other.key));
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(key);
+    }
+}
@@ -0,0 +1,257 @@
+package com.lilingyan;
+
+/**
+ * key是int的MyHashMap
+ * key直接存在int[]里，不用装箱成Integer，也没有Node对象
+ * 冲突用线性探测解决(往后找空位)，所以put/get/remove都不需要分配内存
+ *
+ * hash表长度、tableSizeFor、负载因子和扩容时机都与MyHashMap一样
+ * hash不用MyHashMap.spread()：线性探测没有红黑树兜底，有规律的key(比如i*65537)会连成一长串，所以用fmix32
+ * 0用来表示空位，key为0的映射单独存放
+ * @Author: lilingyan
+ * @Date 2026/10/17 11:20
+ */
+public class IntObjMyHashMap<V> {
+
+    /**
+     * 空位的key
+     */
+    static final int FREE_KEY = 0;
+
+    /**
+     * key表，FREE_KEY表示空位
+     */
+    int[] keys;
+
+    /**
+     * 值表，与keys一一对应
+     */
+    Object[] values;
+
+    final float loadFactor;
+
+    /**
+     * 扩容阈值(capacity * load factor)
+     * 表还没分配的时候，存放初始容量
+     */
+    int threshold;
+
+    /**
+     * 节点数量(包括key为0的映射)
+     */
+    int size;
+
+    /**
+     * 是否有key为0的映射
+     */
+    boolean hasFreeKey;
+    Object freeValue;
+
+    //=========================构造器==========================
+    public IntObjMyHashMap() {
+        this.loadFactor = MyHashMap.DEFAULT_LOAD_FACTOR;
+    }
+    public IntObjMyHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        if (initialCapacity > MyHashMap.MAXIMUM_CAPACITY)
+            initialCapacity = MyHashMap.MAXIMUM_CAPACITY;
+        //线性探测必须留有空位，负载因子不能达到1
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                    loadFactor);
+        this.loadFactor = loadFactor;
+        this.threshold = MyHashMap.tableSizeFor(initialCapacity);
+    }
+    //=========================构造器==========================
+
+    //=========================添加==========================
+    public V put(int key, V value) {
+        if (key == FREE_KEY) {
+            V oldValue = freeValue();
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                ++size;
+            }
+            freeValue = value;
+            return oldValue;
+        }
+        int[] ks;
+        if ((ks = keys) == null)
+            ks = resize();
+        int mask = ks.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int k;
+            if ((k = ks[i]) == FREE_KEY) {
+                //找到空位，直接放
+                ks[i] = key;
+                values[i] = value;
+                if (++size > threshold)
+                    resize();
+                return null;
+            }
+            if (k == key) {
+                @SuppressWarnings("unchecked") V oldValue = (V)values[i];
+                values[i] = value;
+                return oldValue;
+            }
+        }
+    }
+    //=========================添加==========================
+
+    //=========================删除==========================
+    public V remove(int key) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey)
+                return null;
+            V oldValue = freeValue();
+            hasFreeKey = false;
+            freeValue = null;
+            --size;
+            return oldValue;
+        }
+        int i;
+        if ((i = indexOf(key)) < 0)
+            return null;
+        @SuppressWarnings("unchecked") V oldValue = (V)values[i];
+        shiftBack(i);
+        --size;
+        return oldValue;
+    }
+
+    /**
+     * 删除i位置的节点
+     * 线性探测不能直接把位置置空(会截断后面节点的探测序列)
+     * 所以把后面本该在i之前(或i处)的节点往前挪，填上这个空位
+     * @param i
+     */
+    final void shiftBack(int i) {
+        int[] ks = keys; Object[] vs = values;
+        int mask = ks.length - 1;
+        for (int j = (i + 1) & mask; ; j = (j + 1) & mask) {
+            int k;
+            if ((k = ks[j]) == FREE_KEY)
+                break;
+            //j节点原本应该在的位置，如果不在(i, j]之间，就可以挪到i
+            int home = hash(k) & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                ks[i] = k;
+                vs[i] = vs[j];
+                i = j;
+            }
+        }
+        ks[i] = FREE_KEY;
+        vs[i] = null;
+    }
+    //=========================删除==========================
+
+    //=========================查找==========================
+    public V get(int key) {
+        if (key == FREE_KEY)
+            return freeValue();
+        int i;
+        @SuppressWarnings("unchecked") V v = (i = indexOf(key)) < 0 ? null : (V)values[i];
+        return v;
+    }
+    public boolean containsKey(int key) {
+        return key == FREE_KEY ? hasFreeKey : indexOf(key) >= 0;
+    }
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param key   不能是FREE_KEY
+     * @return      key所在的位置，没有返回-1
+     */
+    final int indexOf(int key) {
+        int[] ks;
+        if ((ks = keys) == null)
+            return -1;
+        int mask = ks.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int k;
+            if ((k = ks[i]) == key)
+                return i;
+            if (k == FREE_KEY)
+                return -1;
+        }
+    }
+    //=========================查找==========================
+
+    //=========================特色方法==========================
+    /**
+     * 与MyHashMap.resize()相同的容量计算
+     * 第一次分配用构造时给的容量(或者默认16)，之后每次扩大两倍
+     * 线性探测的位置和表长有关，所以所有节点都要重新放一遍
+     * @return
+     */
+    final int[] resize() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        int oldCap = (oldKeys == null) ? 0 : oldKeys.length;
+        int oldThr = threshold;
+        int newCap, newThr = 0;
+        if (oldCap > 0) {
+            if (oldCap >= MyHashMap.MAXIMUM_CAPACITY) {
+                if (size >= oldCap - 1)
+                    throw new IllegalStateException("IntObjMyHashMap is full");
+                threshold = Integer.MAX_VALUE;
+                return oldKeys;
+            }
+            else if ((newCap = oldCap << 1) < MyHashMap.MAXIMUM_CAPACITY &&
+                    oldCap >= MyHashMap.DEFAULT_INITIAL_CAPACITY)
+                newThr = oldThr << 1;
+        }
+        else if (oldThr > 0)
+            newCap = oldThr;
+        else {
+            newCap = MyHashMap.DEFAULT_INITIAL_CAPACITY;
+            newThr = (int)(loadFactor * MyHashMap.DEFAULT_INITIAL_CAPACITY);
+        }
+        if (newThr == 0) {
+            float ft = (float)newCap * loadFactor;
+            newThr = (newCap < MyHashMap.MAXIMUM_CAPACITY && ft < (float)MyHashMap.MAXIMUM_CAPACITY ?
+                    (int)ft : Integer.MAX_VALUE);
+        }
+        threshold = newThr;
+        int[] newKeys = new int[newCap];
+        Object[] newValues = new Object[newCap];
+        keys = newKeys;
+        values = newValues;
+        if (oldKeys != null) {
+            int mask = newCap - 1;
+            for (int j = 0; j < oldCap; ++j) {
+                int k;
+                if ((k = oldKeys[j]) != FREE_KEY) {
+                    int i = hash(k) & mask;
+                    while (newKeys[i] != FREE_KEY)
+                        i = (i + 1) & mask;
+                    newKeys[i] = k;
+                    newValues[i] = oldValues[j];
+                }
+            }
+        }
+        return newKeys;
+    }
+    //=========================特色方法==========================
+
+    //=========================一些常用方法封装==========================
+    /**
+     * Integer.hashCode()就是值本身，再用murmur3的fmix32打散
+     * MyHashMap.spread()只把高16位异或到低16位，比如i*65537扰动以后低16位全是0，线性探测会退化成O(n)
+     * @param key
+     * @return
+     */
+    static int hash(int key) {
+        return HashStrategy.fmix32(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    final V freeValue() {
+        return (V)freeValue;
+    }
+    //=========================一些常用方法封装==========================
+
+}
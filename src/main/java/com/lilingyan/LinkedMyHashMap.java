@@ -0,0 +1,435 @@
+package com.lilingyan;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * 在MyHashMap的基础上，把所有节点再用一条双向链表串起来(before/after)
+ * 插入顺序: 新节点挂在链表尾部，遍历顺序就是插入顺序
+ * 访问顺序(accessOrder): 被put覆盖或者get命中的节点移到链表尾部，链表头就是最久没用的节点
+ * 访问顺序 + removeEldestEntry()，就是一个O(1)的LRU缓存
+ * 链表的维护都在MyHashMap的afterNodeAccess/afterNodeInsertion/afterNodeRemoval回调里
+ * @Author: lilingyan
+ * @Date 2026/10/17 18:10
+ */
+public class LinkedMyHashMap<K,V> extends MyHashMap<K,V> {
+
+    /**
+     * 双向链表的头(最老的节点)
+     */
+    transient LinkedMyHashMap.Entry<K,V> head;
+
+    /**
+     * 双向链表的尾(最新的节点)
+     */
+    transient LinkedMyHashMap.Entry<K,V> tail;
+
+    /**
+     * true:  按访问顺序
+     * false: 按插入顺序
+     */
+    final boolean accessOrder;
+
+    /**
+     * 节点数量超过这个值，插入新节点以后淘汰链表头的节点
+     * 0表示不限制
+     */
+    int maxEntries;
+
+    //=========================构造器==========================
+    public LinkedMyHashMap() {
+        super();
+        accessOrder = false;
+    }
+    public LinkedMyHashMap(int initialCapacity, float loadFactor) {
+        super(initialCapacity, loadFactor);
+        accessOrder = false;
+    }
+    public LinkedMyHashMap(int initialCapacity, float loadFactor, boolean accessOrder) {
+        super(initialCapacity, loadFactor);
+        this.accessOrder = accessOrder;
+    }
+
+    /**
+     * 创建一个LRU缓存
+     * 按访问顺序，节点数量超过maxEntries时淘汰最久没有访问的节点
+     * 初始容量按maxEntries算好，缓存装满也不会扩容
+     * @param maxEntries    最多缓存的节点数量
+     * @return
+     */
+    public static <K,V> LinkedMyHashMap<K,V> lruCache(int maxEntries) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("Illegal max entries: " +
+                    maxEntries);
+        //淘汰发生在插入以后，所以表要能放下maxEntries + 1个节点
+        LinkedMyHashMap<K,V> m = new LinkedMyHashMap<>(
+                capacityFor(maxEntries + 1, DEFAULT_LOAD_FACTOR), DEFAULT_LOAD_FACTOR, true);
+        m.maxEntries = maxEntries;
+        return m;
+    }
+    //=========================构造器==========================
+
+    //=========================配置==========================
+    /**
+     * 设置最多保存的节点数量
+     * 插入新节点以后如果超过了，淘汰链表头的节点
+     * @param maxEntries    0表示不限制
+     */
+    public void setMaxEntries(int maxEntries) {
+        if (maxEntries < 0)
+            throw new IllegalArgumentException("Illegal max entries: " +
+                    maxEntries);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 红黑树桶在扩容拆分时会用replacementNode()换节点，换节点要改前后节点的before/after
+     * 多个线程同时迁移的话，相邻节点的链表指针会互相覆盖，所以不支持并行扩容
+     * @param sizeThreshold 只能是0
+     */
+    @Override
+    public void setParallelResize(int sizeThreshold) {
+        if (sizeThreshold != 0)
+            throw new UnsupportedOperationException(
+                    "LinkedMyHashMap does not support parallel resize");
+        super.setParallelResize(sizeThreshold);
+    }
+
+    /**
+     * 节点要按插入/访问顺序串在双向链表里，节点池复用的节点没有维护before/after，所以不支持节点池
+     * @param capacity  只能是0
+     */
+    @Override
+    public void setNodePool(int capacity) {
+        if (capacity != 0)
+            throw new UnsupportedOperationException(
+                    "LinkedMyHashMap does not support node pooling");
+        super.setNodePool(capacity);
+    }
+    //=========================配置==========================
+
+    //=========================特色方法==========================
+    /**
+     * 插入新节点以后调用，返回true则删除eldest
+     * 默认按maxEntries判断，子类可以覆盖实现自己的淘汰策略
+     * @param eldest    链表头的节点(最老的或者最久没访问的)
+     * @return
+     */
+    protected boolean removeEldestEntry(Map.Entry<K,V> eldest) {
+        return maxEntries > 0 && size > maxEntries;
+    }
+    //=========================特色方法==========================
+
+    //=========================查找==========================
+    /**
+     * 按访问顺序时，命中的节点移到链表尾部
+     * @param key
+     * @return
+     */
+    @Override
+    public V get(Object key) {
+        Node<K,V> e;
+        if ((e = getNode(hashOf(key), key)) == null)
+            return null;
+        if (accessOrder)
+            afterNodeAccess(e);
+        return e.value;
+    }
+    @Override
+    public V getHashed(HashedKey<?> key) {
+        Node<K,V> e;
+        if ((e = getNode(cachedHashOf(key), key.key)) == null)
+            return null;
+        if (accessOrder)
+            afterNodeAccess(e);
+        return e.value;
+    }
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        Node<K,V> e;
+        if ((e = getNode(hashOf(key), key)) == null)
+            return defaultValue;
+        if (accessOrder)
+            afterNodeAccess(e);
+        return e.value;
+    }
+    //=========================查找==========================
+
+    //=========================视图==========================
+    /**
+     * 视图按双向链表的顺序遍历(插入顺序或者访问顺序)
+     * @return
+     */
+    @Override
+    public Set<Map.Entry<K,V>> entrySet() {
+        Set<Map.Entry<K,V>> es;
+        return (es = entrySet) == null ? (entrySet = new LinkedEntrySet()) : es;
+    }
+    @Override
+    public Set<K> keySet() {
+        Set<K> ks;
+        return (ks = keySet) == null ? (keySet = new LinkedKeySet()) : ks;
+    }
+    @Override
+    public Collection<V> values() {
+        Collection<V> vs;
+        return (vs = values) == null ? (values = new LinkedValues()) : vs;
+    }
+
+    final class LinkedEntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public final int size()                 { return size; }
+        public final Iterator<Map.Entry<K,V>> iterator() {
+            return new LinkedEntryIterator();
+        }
+        public final boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+            Object key = e.getKey();
+            Node<K,V> candidate = getNode(hashOf(key), key);
+            return candidate != null && candidate.equals(e);
+        }
+        public final boolean remove(Object o) {
+            if (o instanceof Map.Entry) {
+                Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+                Object key = e.getKey();
+                Object value = e.getValue();
+                return removeNode(hashOf(key), key, value, true, true) != null;
+            }
+            return false;
+        }
+        public final Spliterator<Map.Entry<K,V>> spliterator() {
+            return Spliterators.spliterator(this, Spliterator.SIZED |
+                    Spliterator.ORDERED | Spliterator.DISTINCT);
+        }
+        public final void forEach(Consumer<? super Map.Entry<K,V>> action) {
+            if (action == null)
+                throw new NullPointerException();
+            int mc = modCount;
+            for (LinkedMyHashMap.Entry<K,V> e = head; e != null; e = e.after)
+                action.accept(e);
+            if (modCount != mc)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    final class LinkedKeySet extends AbstractSet<K> {
+        public final int size()                 { return size; }
+        public final Iterator<K> iterator()     { return new LinkedKeyIterator(); }
+        public final boolean contains(Object o) { return containsKey(o); }
+        public final boolean remove(Object key) {
+            return removeNode(hashOf(key), key, null, false, true) != null;
+        }
+        public final Spliterator<K> spliterator() {
+            return Spliterators.spliterator(this, Spliterator.SIZED |
+                    Spliterator.ORDERED | Spliterator.DISTINCT);
+        }
+    }
+
+    final class LinkedValues extends AbstractCollection<V> {
+        public final int size()                 { return size; }
+        public final Iterator<V> iterator()     { return new LinkedValueIterator(); }
+        public final Spliterator<V> spliterator() {
+            return Spliterators.spliterator(this, Spliterator.SIZED |
+                    Spliterator.ORDERED);
+        }
+    }
+
+    /**
+     * 沿着after遍历
+     * 按访问顺序时get()也是结构修改，遍历过程中get()会让next()抛出ConcurrentModificationException
+     */
+    abstract class LinkedHashIterator {
+        LinkedMyHashMap.Entry<K,V> next;
+        LinkedMyHashMap.Entry<K,V> current;
+        int expectedModCount;
+
+        LinkedHashIterator() {
+            next = head;
+            expectedModCount = modCount;
+            current = null;
+        }
+
+        public final boolean hasNext() {
+            return next != null;
+        }
+
+        final LinkedMyHashMap.Entry<K,V> nextNode() {
+            LinkedMyHashMap.Entry<K,V> e = next;
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (e == null)
+                throw new NoSuchElementException();
+            current = e;
+            next = e.after;
+            return e;
+        }
+
+        public final void remove() {
+            Node<K,V> p = current;
+            if (p == null)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            current = null;
+            removeNode(p.hash, p.key, null, false, false);
+            expectedModCount = modCount;
+        }
+    }
+
+    final class LinkedKeyIterator extends LinkedHashIterator
+            implements Iterator<K> {
+        public final K next() { return nextNode().getKey(); }
+    }
+
+    final class LinkedValueIterator extends LinkedHashIterator
+            implements Iterator<V> {
+        public final V next() { return nextNode().value; }
+    }
+
+    final class LinkedEntryIterator extends LinkedHashIterator
+            implements Iterator<Map.Entry<K,V>> {
+        public final Map.Entry<K,V> next() { return nextNode(); }
+    }
+    //=========================视图==========================
+
+    //=========================一些常用方法封装==========================
+    /**
+     * 把新节点挂到链表尾部
+     * @param p
+     */
+    private void linkNodeLast(LinkedMyHashMap.Entry<K,V> p) {
+        LinkedMyHashMap.Entry<K,V> last = tail;
+        tail = p;
+        if (last == null)
+            head = p;
+        else {
+            p.before = last;
+            last.after = p;
+        }
+    }
+
+    /**
+     * 用dst替换链表中的src(链表节点和红黑树节点互相转换的时候)
+     * @param src
+     * @param dst
+     */
+    private void transferLinks(LinkedMyHashMap.Entry<K,V> src,
+                               LinkedMyHashMap.Entry<K,V> dst) {
+        LinkedMyHashMap.Entry<K,V> b = dst.before = src.before;
+        LinkedMyHashMap.Entry<K,V> a = dst.after = src.after;
+        if (b == null)
+            head = dst;
+        else
+            b.after = dst;
+        if (a == null)
+            tail = dst;
+        else
+            a.before = dst;
+    }
+
+    @Override
+    Node<K,V> newNode(int hash, K key, V value, Node<K,V> next) {
+        LinkedMyHashMap.Entry<K,V> p = new LinkedMyHashMap.Entry<>(hash, key, value, next);
+        linkNodeLast(p);
+        return p;
+    }
+    @Override
+    Node<K,V> replacementNode(Node<K,V> p, Node<K,V> next) {
+        LinkedMyHashMap.Entry<K,V> q = (LinkedMyHashMap.Entry<K,V>)p;
+        LinkedMyHashMap.Entry<K,V> t = new LinkedMyHashMap.Entry<>(q.hash, q.key, q.value, next);
+        transferLinks(q, t);
+        return t;
+    }
+    @Override
+    TreeNode<K,V> newTreeNode(int hash, K key, V value, Node<K,V> next) {
+        TreeNode<K,V> p = new TreeNode<>(hash, key, value, next);
+        linkNodeLast(p);
+        return p;
+    }
+    @Override
+    TreeNode<K,V> replacementTreeNode(Node<K,V> p, Node<K,V> next) {
+        LinkedMyHashMap.Entry<K,V> q = (LinkedMyHashMap.Entry<K,V>)p;
+        TreeNode<K,V> t = new TreeNode<>(q.hash, q.key, q.value, next);
+        transferLinks(q, t);
+        return t;
+    }
+
+    /**
+     * 删除节点以后，从链表中摘掉
+     * @param e
+     */
+    @Override
+    void afterNodeRemoval(Node<K,V> e) {
+        LinkedMyHashMap.Entry<K,V> p = (LinkedMyHashMap.Entry<K,V>)e;
+        LinkedMyHashMap.Entry<K,V> b = p.before, a = p.after;
+        p.before = p.after = null;
+        if (b == null)
+            head = a;
+        else
+            b.after = a;
+        if (a == null)
+            tail = b;
+        else
+            a.before = b;
+    }
+
+    /**
+     * 插入新节点以后，按removeEldestEntry()判断要不要淘汰链表头
+     * @param evict
+     */
+    @Override
+    void afterNodeInsertion(boolean evict) {
+        LinkedMyHashMap.Entry<K,V> first;
+        if (evict && (first = head) != null && removeEldestEntry(first)) {
+            removeNode(first.hash, first.key, null, false, true);
+        }
+    }
+
+    /**
+     * 按访问顺序时，把命中的节点移到链表尾部
+     * 链表顺序变了，所以也算一次结构修改
+     * @param e
+     */
+    @Override
+    void afterNodeAccess(Node<K,V> e) {
+        LinkedMyHashMap.Entry<K,V> last;
+        if (accessOrder && (last = tail) != e) {
+            LinkedMyHashMap.Entry<K,V> p = (LinkedMyHashMap.Entry<K,V>)e,
+                    b = p.before, a = p.after;
+            p.after = null;
+            if (b == null)
+                head = a;
+            else
+                b.after = a;
+            if (a != null)
+                a.before = b;
+            else
+                last = b;
+            if (last == null)
+                head = p;
+            else {
+                p.before = last;
+                last.after = p;
+            }
+            tail = p;
+            ++modCount;
+        }
+    }
+    //=========================一些常用方法封装==========================
+
+    //=========================使用到的节点结构==========================
+    /**
+     * 带before/after指针的节点
+     * MyHashMap.TreeNode也继承它，红黑树桶里的节点同样在双向链表上
+     * @param <K>
+     * @param <V>
+     */
+    static class Entry<K,V> extends MyHashMap.Node<K,V> {
+        Entry<K,V> before, after;
+        Entry(int hash, K key, V value, Node<K,V> next) {
+            super(hash, key, value, next);
+        }
+    }
+    //=========================使用到的节点结构==========================
+}
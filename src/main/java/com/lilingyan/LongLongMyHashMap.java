@@ -0,0 +1,293 @@
+package com.lilingyan;
+
+/**
+ * key和value都是long的MyHashMap，主要用来计数(id -> 次数)
+ * key和value直接存在两个long[]里，不用装箱成Long，也没有Node对象
+ * addTo()/incrementAndGet()直接在values[]上加，key已经存在时不分配任何内存
+ * 冲突用线性探测解决(往后找空位)，与LongObjMyHashMap相同
+ *
+ * hash表长度、tableSizeFor、负载因子和扩容时机都与MyHashMap一样
+ * 0用来表示空位，key为0的映射单独存放
+ * 没有映射时get()返回0，和计数器从0开始一致；要区分"没有"和"值是0"用containsKey()或者getOrDefault()
+ * @Author: lilingyan
+ * @Date 2026/10/17 23:30
+ */
+public class LongLongMyHashMap {
+
+    /**
+     * 空位的key
+     */
+    static final long FREE_KEY = 0L;
+
+    /**
+     * key表，FREE_KEY表示空位
+     */
+    long[] keys;
+
+    /**
+     * 值表，与keys一一对应
+     */
+    long[] values;
+
+    final float loadFactor;
+
+    /**
+     * 扩容阈值(capacity * load factor)
+     * 表还没分配的时候，存放初始容量
+     */
+    int threshold;
+
+    /**
+     * 节点数量(包括key为0的映射)
+     */
+    int size;
+
+    /**
+     * 是否有key为0的映射
+     */
+    boolean hasFreeKey;
+    long freeValue;
+
+    //=========================构造器==========================
+    public LongLongMyHashMap() {
+        this.loadFactor = MyHashMap.DEFAULT_LOAD_FACTOR;
+    }
+    public LongLongMyHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        if (initialCapacity > MyHashMap.MAXIMUM_CAPACITY)
+            initialCapacity = MyHashMap.MAXIMUM_CAPACITY;
+        //线性探测必须留有空位，负载因子不能达到1
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                    loadFactor);
+        this.loadFactor = loadFactor;
+        this.threshold = MyHashMap.tableSizeFor(initialCapacity);
+    }
+    //=========================构造器==========================
+
+    //=========================添加==========================
+    /**
+     * @return  原来的值，没有返回0
+     */
+    public long put(long key, long value) {
+        if (key == FREE_KEY) {
+            long oldValue = freeValue;
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                ++size;
+            }
+            freeValue = value;
+            return oldValue;
+        }
+        int i = slotFor(key);
+        long oldValue = values[i];
+        values[i] = value;
+        return oldValue;
+    }
+
+    /**
+     * 把delta加到key的值上，没有映射时从0开始加
+     * @return  加完以后的值
+     */
+    public long addTo(long key, long delta) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                ++size;
+            }
+            return freeValue += delta;
+        }
+        //先找位置再读values，插入时可能扩容换了数组
+        int i = slotFor(key);
+        return values[i] += delta;
+    }
+
+    public long incrementAndGet(long key) {
+        return addTo(key, 1L);
+    }
+
+    /**
+     * 找到key所在的位置，没有就插入一个值为0的映射
+     * 插入以后可能扩容，返回的是扩容后的位置
+     * @param key   不能是FREE_KEY
+     * @return
+     */
+    final int slotFor(long key) {
+        long[] ks;
+        if ((ks = keys) == null)
+            ks = resize();
+        int mask = ks.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            long k;
+            if ((k = ks[i]) == key)
+                return i;
+            if (k == FREE_KEY) {
+                //找到空位，直接放
+                ks[i] = key;
+                if (++size > threshold) {
+                    resize();
+                    return indexOf(key);
+                }
+                return i;
+            }
+        }
+    }
+    //=========================添加==========================
+
+    //=========================删除==========================
+    /**
+     * @return  原来的值，没有返回0
+     */
+    public long remove(long key) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey)
+                return 0L;
+            long oldValue = freeValue;
+            hasFreeKey = false;
+            freeValue = 0L;
+            --size;
+            return oldValue;
+        }
+        int i;
+        if ((i = indexOf(key)) < 0)
+            return 0L;
+        long oldValue = values[i];
+        shiftBack(i);
+        --size;
+        return oldValue;
+    }
+
+    /**
+     * 删除i位置的节点
+     * 线性探测不能直接把位置置空(会截断后面节点的探测序列)
+     * 所以把后面本该在i之前(或i处)的节点往前挪，填上这个空位
+     * @param i
+     */
+    final void shiftBack(int i) {
+        long[] ks = keys, vs = values;
+        int mask = ks.length - 1;
+        for (int j = (i + 1) & mask; ; j = (j + 1) & mask) {
+            long k;
+            if ((k = ks[j]) == FREE_KEY)
+                break;
+            //j节点原本应该在的位置，如果不在(i, j]之间，就可以挪到i
+            int home = hash(k) & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                ks[i] = k;
+                vs[i] = vs[j];
+                i = j;
+            }
+        }
+        ks[i] = FREE_KEY;
+        vs[i] = 0L;
+    }
+    //=========================删除==========================
+
+    //=========================查找==========================
+    /**
+     * @return  key的值，没有返回0
+     */
+    public long get(long key) {
+        return getOrDefault(key, 0L);
+    }
+    public long getOrDefault(long key, long defaultValue) {
+        if (key == FREE_KEY)
+            return hasFreeKey ? freeValue : defaultValue;
+        int i;
+        return (i = indexOf(key)) < 0 ? defaultValue : values[i];
+    }
+    public boolean containsKey(long key) {
+        return key == FREE_KEY ? hasFreeKey : indexOf(key) >= 0;
+    }
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param key   不能是FREE_KEY
+     * @return      key所在的位置，没有返回-1
+     */
+    final int indexOf(long key) {
+        long[] ks;
+        if ((ks = keys) == null)
+            return -1;
+        int mask = ks.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            long k;
+            if ((k = ks[i]) == key)
+                return i;
+            if (k == FREE_KEY)
+                return -1;
+        }
+    }
+    //=========================查找==========================
+
+    //=========================特色方法==========================
+    /**
+     * 与MyHashMap.resize()相同的容量计算
+     * 第一次分配用构造时给的容量(或者默认16)，之后每次扩大两倍
+     * 线性探测的位置和表长有关，所以所有节点都要重新放一遍
+     * @return
+     */
+    final long[] resize() {
+        long[] oldKeys = keys, oldValues = values;
+        int oldCap = (oldKeys == null) ? 0 : oldKeys.length;
+        int oldThr = threshold;
+        int newCap, newThr = 0;
+        if (oldCap > 0) {
+            if (oldCap >= MyHashMap.MAXIMUM_CAPACITY) {
+                if (size >= oldCap - 1)
+                    throw new IllegalStateException("LongLongMyHashMap is full");
+                threshold = Integer.MAX_VALUE;
+                return oldKeys;
+            }
+            else if ((newCap = oldCap << 1) < MyHashMap.MAXIMUM_CAPACITY &&
+                    oldCap >= MyHashMap.DEFAULT_INITIAL_CAPACITY)
+                newThr = oldThr << 1;
+        }
+        else if (oldThr > 0)
+            newCap = oldThr;
+        else {
+            newCap = MyHashMap.DEFAULT_INITIAL_CAPACITY;
+            newThr = (int)(loadFactor * MyHashMap.DEFAULT_INITIAL_CAPACITY);
+        }
+        if (newThr == 0) {
+            float ft = (float)newCap * loadFactor;
+            newThr = (newCap < MyHashMap.MAXIMUM_CAPACITY && ft < (float)MyHashMap.MAXIMUM_CAPACITY ?
+                    (int)ft : Integer.MAX_VALUE);
+        }
+        threshold = newThr;
+        long[] newKeys = new long[newCap], newValues = new long[newCap];
+        keys = newKeys;
+        values = newValues;
+        if (oldKeys != null) {
+            int mask = newCap - 1;
+            for (int j = 0; j < oldCap; ++j) {
+                long k;
+                if ((k = oldKeys[j]) != FREE_KEY) {
+                    int i = hash(k) & mask;
+                    while (newKeys[i] != FREE_KEY)
+                        i = (i + 1) & mask;
+                    newKeys[i] = k;
+                    newValues[i] = oldValues[j];
+                }
+            }
+        }
+        return newKeys;
+    }
+    //=========================特色方法==========================
+
+    //=========================一些常用方法封装==========================
+    /**
+     * 与LongObjMyHashMap.hash()相同，murmur3的fmix64取低32位
+     * @param key
+     * @return
+     */
+    static int hash(long key) {
+        return (int)HashStrategy.fmix64(key);
+    }
+    //=========================一些常用方法封装==========================
+
+}
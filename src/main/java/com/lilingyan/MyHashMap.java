@@ -4,6 +4,11 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.Map;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.*;
 
 /**
  * HashMap很多特色方法写在TreeNode里面
@@ -26,8 +31,9 @@ public class MyHashMap<K,V> {
     /**
      * HashMap整个容量的负载因子
      * 默认0.75
+     * 开启自适应负载因子以后，每次扩容会根据采样到的链表长度调整
      */
-    final float loadFactor;
+    float loadFactor;
     /**
      * The next size value at which to resize (capacity * load factor).
      * 整个HashMap容量阈值
@@ -65,6 +71,132 @@ public class MyHashMap<K,V> {
      */
     transient int size;
 
+    /**
+     * 结构修改(增加或者删除节点)的次数
+     * 迭代器用它判断遍历过程中map有没有被修改(fail-fast)
+     */
+    transient int modCount;
+
+    /**
+     * 视图，第一次使用时创建
+     */
+    transient Set<Map.Entry<K,V>> entrySet;
+    transient Set<K> keySet;
+    transient Collection<V> values;
+
+    /**
+     * 渐进式扩容时的旧hash表
+     * 不为null说明旧表里还有桶没有迁移到table
+     * 迁移完一个桶就把旧桶置空，所以旧桶不为null就是还没迁移
+     */
+    transient Node<K,V>[] oldTable;
+
+    /**
+     * 渐进式扩容时，下一个按顺序迁移的旧桶下标
+     */
+    transient int transferIndex;
+
+    /**
+     * 渐进式扩容时，这一轮每次操作实际顺序迁移的桶数量
+     * 不小于incrementalResizeStep，并且保证在下一次扩容之前迁移完
+     */
+    transient int transferStep;
+
+    /**
+     * 渐进式扩容时，每次put/get/remove最多顺序迁移的桶数量
+     * 0表示不使用渐进式扩容(resize()一次迁移完所有桶)
+     */
+    int incrementalResizeStep;
+
+    /**
+     * 节点数量达到这个值以后，resize()用ForkJoinPool并行迁移旧桶
+     * 0表示不使用并行扩容
+     */
+    int parallelResizeThreshold;
+
+    /**
+     * 并行扩容时，一个任务最少迁移的旧桶数量(少于这个数量不再拆分任务)
+     */
+    static final int MIN_TRANSFER_STRIDE = 1 << 12;
+
+    /**
+     * 删除节点后，节点数量降到扩容阈值的1/4以下就把hash表缩小一半
+     */
+    boolean shrinkOnRemove;
+
+    /**
+     * 运行统计，null表示没有开启
+     */
+    transient MyHashMapStats stats;
+
+    /**
+     * key的hash策略，null表示用hash()
+     */
+    transient HashStrategy hashStrategy;
+
+    /**
+     * 自定义相等的hash策略，null表示用key.equals()
+     * 不为null时桶不会转红黑树
+     */
+    transient HashStrategy equality;
+
+    /**
+     * 红黑树桶里hash相同的key的比较器，null表示用key的Comparable
+     */
+    transient Comparator<? super K> treeBinComparator;
+
+    /**
+     * comparableClassFor()的结果缓存，一个map里key的类型通常只有一种，不用每次比较都反射
+     * 两种结果分两个字段存，ConcurrentMyHashMap并发读写时也不会读到不一致的结果，最多多反射几次
+     */
+    transient Class<?> comparableKeyClass;
+    transient Class<?> nonComparableKeyClass;
+
+    /**
+     * 节点池最多保存的空闲节点数量(普通节点和树节点分开算)，0表示不复用节点
+     */
+    int nodePoolCapacity;
+
+    /**
+     * 空闲的普通节点/树节点，用next串起来
+     */
+    transient Node<K,V> freeNodes;
+    transient int freeNodeCount;
+    transient TreeNode<K,V> freeTreeNodes;
+    transient int freeTreeNodeCount;
+
+    /**
+     * 并行扩容时多个线程同时换节点，节点池不是线程安全的，这期间不取也不放
+     */
+    transient boolean poolSuspended;
+
+    /**
+     * 自适应负载因子的范围，maxLoadFactor为0表示不自适应
+     */
+    float minLoadFactor, maxLoadFactor;
+
+    /**
+     * 自适应负载因子的采样窗口(两次扩容之间)
+     * chainSum            每次插入新节点时，桶里已有的节点数量之和
+     * expectedChainSum    每次插入新节点时的size之和，除以容量就是均匀分布时桶里应有的节点数量之和
+     */
+    transient long chainSum, expectedChainSum;
+    transient int chainSamples;
+
+    /**
+     * 一个采样窗口最少的插入次数，太少了不调整
+     */
+    static final int MIN_ADAPT_SAMPLES = 64;
+
+    /**
+     * 实际链表长度/均匀分布的链表长度 超过这个值，负载因子乘ADAPT_SHRINK(提前扩容)
+     * 低于ADAPT_LOW，负载因子乘ADAPT_GROW(装得更满)
+     */
+    static final float ADAPT_HIGH = 1.5f;
+    static final float ADAPT_LOW = 1.1f;
+    static final float ADAPT_SHRINK = 0.75f;
+    static final float ADAPT_GROW = 1.25f;
+
     //=========================构造器==========================
     public MyHashMap() {
         this.loadFactor = DEFAULT_LOAD_FACTOR;
@@ -83,9 +215,178 @@ public class MyHashMap<K,V> {
     }
     //=========================构造器==========================
 
+    //=========================配置==========================
+    /**
+     * 设置渐进式扩容
+     * 开启后resize()只分配新表，旧表里的桶由之后的put/get/remove分批迁移
+     * 把一次O(n)的扩容停顿分摊到后续的操作上
+     * 下一次扩容之前至少还有(新阈值 - size)次插入，每次迁移的桶数量会调大到能在这些插入里迁移完
+     * (默认负载因子0.75时至少2个)，下一次扩容不会再一次迁移剩下的桶
+     * @param bucketsPerOperation   每次操作顺序迁移的桶数量，0表示关闭
+     */
+    public void setIncrementalResize(int bucketsPerOperation) {
+        if (bucketsPerOperation < 0)
+            throw new IllegalArgumentException("Illegal buckets per operation: " +
+                    bucketsPerOperation);
+        if (bucketsPerOperation == 0 && oldTable != null)
+            //关闭的时候把没迁移完的桶一次迁移掉
+            finishTransfer();
+        this.incrementalResizeStep = bucketsPerOperation;
+    }
+
+    /**
+     * 设置并行扩容
+     * 旧桶j只会迁移到新桶j和j+oldCap，不同范围的旧桶互不影响
+     * 所以可以把旧表按下标范围拆开，交给ForkJoinPool同时迁移
+     * 如果同时开启了渐进式扩容，以渐进式扩容为准
+     * @param sizeThreshold 节点数量达到这个值才并行扩容，0表示关闭
+     */
+    public void setParallelResize(int sizeThreshold) {
+        if (sizeThreshold < 0)
+            throw new IllegalArgumentException("Illegal size threshold: " +
+                    sizeThreshold);
+        this.parallelResizeThreshold = sizeThreshold;
+    }
+
+    /**
+     * 设置删除时自动缩容
+     * 节点数量降到扩容阈值的1/4以下时，hash表缩小一半(不会小于DEFAULT_INITIAL_CAPACITY)
+     * 缩小后节点数量最多是新阈值的一半，要再增加一倍才会扩容，再减少一半才会缩容，不会在阈值附近来回扩容缩容
+     * 通过迭代器删除时不缩容
+     * @param shrinkOnRemove
+     */
+    public void setShrinkOnRemove(boolean shrinkOnRemove) {
+        this.shrinkOnRemove = shrinkOnRemove;
+    }
+
+    /**
+     * 设置key的hash策略，只能在map还是空的时候设置
+     * HashStrategy的内置策略只换hash；自己实现的策略同时换了相等，桶不会再转红黑树
+     * @param strategy  null表示恢复默认
+     */
+    public void setHashStrategy(HashStrategy strategy) {
+        if (size > 0)
+            throw new IllegalStateException("Hash strategy can only be set on an empty map");
+        if (strategy == HashStrategy.DEFAULT)
+            strategy = null;
+        this.hashStrategy = strategy;
+        this.equality = (strategy == null || strategy instanceof HashStrategy.Mixer) ?
+                null : strategy;
+    }
+
+    /**
+     * 设置红黑树桶里hash相同的key的比较器，只能在map还是空的时候设置
+     * key没有实现Comparable时，红黑树桶里hash相同的key比较不出大小，查找要两边子树都找一遍，退化成O(n)
+     * 设置了比较器(并且和equals一致)，红黑树桶的查找一定是O(log n)
+     * 设置了以后，不是null的key都用比较器比较，不再看Comparable
+     * @param comparator    null表示恢复默认
+     */
+    public void setTreeBinComparator(Comparator<? super K> comparator) {
+        if (size > 0)
+            throw new IllegalStateException("Tree bin comparator can only be set on an empty map");
+        this.treeBinComparator = comparator;
+    }
+
+    /**
+     * 设置节点池
+     * 开启后删除的节点、转红黑树/转链表时换下来的节点放进池里，之后newNode()等优先从池里取
+     * put/remove频繁交替时，稳定以后基本不再分配节点
+     * 注意：开启后，从entrySet()拿到的Map.Entry在对应的key被删除以后不能再使用(节点可能已经被复用)
+     * 通过迭代器删除的节点不放回池里，迭代时拿到的Map.Entry在it.remove()以后还可以读
+     * keySet().remove()、entrySet().remove()和remove()一样放回池里
+     * entrySet().remove(e)的e就是被删除的节点本身时不放回，调用方手里的e还可以读
+     * values().remove()没有按key查找，是通过迭代器删除的，不放回池里
+     * @param capacity  普通节点和树节点各最多保存多少个，0表示关闭
+     */
+    public void setNodePool(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Illegal node pool capacity: " +
+                    capacity);
+        this.nodePoolCapacity = capacity;
+        //容量变小时丢掉多出来的空闲节点
+        while (freeNodeCount > capacity) {
+            freeNodes = freeNodes.next;
+            --freeNodeCount;
+        }
+        while (freeTreeNodeCount > capacity) {
+            freeTreeNodes = (TreeNode<K,V>)freeTreeNodes.next;
+            --freeTreeNodeCount;
+        }
+    }
+
+    /**
+     * 设置自适应负载因子
+     * 开启后每次插入新节点记录桶里已有的节点数量，扩容时和均匀分布的预期(size/容量)比较
+     * 链表明显比预期长(key分布不均匀)，降低负载因子，之后提前扩容；
+     * 和预期差不多或者更短(key分布均匀)，提高负载因子，少占一些内存
+     * 调整后的负载因子不会超出[min, max]，当前的负载因子也会先限制到这个范围里
+     * hash完全相同的key扩容也分不开，这种情况下负载因子会一直降到min，桶里还是靠红黑树
+     * @param min   最小负载因子
+     * @param max   最大负载因子，min和max都是0表示关闭(负载因子保持当前的值)
+     */
+    public void setAdaptiveLoadFactor(float min, float max) {
+        if (min == 0 && max == 0) {
+            this.minLoadFactor = this.maxLoadFactor = 0;
+            return;
+        }
+        if (!(min > 0) || !(max >= min) || Float.isInfinite(max))
+            throw new IllegalArgumentException("Illegal load factor range: " +
+                    min + ", " + max);
+        this.minLoadFactor = min;
+        this.maxLoadFactor = max;
+        float lf = Math.max(min, Math.min(max, loadFactor));
+        if (lf != loadFactor) {
+            loadFactor = lf;
+            Node<K,V>[] tab;
+            if ((tab = table) != null && tab.length < MAXIMUM_CAPACITY)
+                threshold = (int)Math.min((float)tab.length * lf, (float)Integer.MAX_VALUE);
+        }
+        chainSum = expectedChainSum = 0L;
+        chainSamples = 0;
+    }
+
+    /**
+     * 开启运行统计(遍历的节点数量、转红黑树、扩容次数和耗时)
+     * 已经开启则返回原来的统计
+     * 不开启时get/put只多一次stats是否为null的判断
+     * @return
+     */
+    public MyHashMapStats enableStats() {
+        MyHashMapStats st;
+        return (st = stats) == null ? (stats = new MyHashMapStats(this)) : st;
+    }
+
+    /**
+     * 关闭运行统计，如果注册了JMX也一起注销
+     */
+    public void disableStats() {
+        MyHashMapStats st;
+        if ((st = stats) != null) {
+            stats = null;
+            st.unregister();
+        }
+    }
+
+    /**
+     * @return  运行统计，没有开启返回null
+     */
+    public MyHashMapStats getStats() {
+        return stats;
+    }
+    //=========================配置==========================
+
     //=========================添加==========================
     public V put(K key, V value) {
-        return putVal(hash(key), key, value, false, true);
+        return putVal(hashOf(key), key, value, false, true);
+    }
+    /**
+     * 和put()一样，不再调用key.hashCode()
+     * @param key
+     * @param value
+     * @return
+     */
+    public V putHashed(HashedKey<? extends K> key, V value) {
+        return putVal(cachedHashOf(key), key.key, value, false, true);
     }
     final V putVal(int hash, K key, V value, boolean onlyIfAbsent,
                    boolean evict) {
@@ -95,12 +396,20 @@ public class MyHashMap<K,V> {
          * i
          */
         int n, i;
+        if (oldTable != null)
+            //渐进式扩容还没完成，先迁移这个hash所在的旧桶
+            helpTransfer(hash);
         if ((tab = table) == null || (n = tab.length) == 0)
             //如果表是空,则分配空间
             n = (tab = resize()).length;
-        if ((p = tab[i = (n - 1) & hash]) == null)
+        if ((p = tab[i = (n - 1) & hash]) == null) {
             //如果表当前桶没有节点，则直接添加(第一个)
             tab[i] = newNode(hash, key, value, null);
+            if (stats != null)
+                stats.recordPut(0);
+            if (maxLoadFactor > 0)
+                sampleChain(0);
+        }
         else {
             /**
              * 如果表的桶中有数据
@@ -108,18 +417,32 @@ public class MyHashMap<K,V> {
              */
             Node<K,V> e; K k;
             if (p.hash == hash &&
-                    ((k = p.key) == key || (key != null && key.equals(k))))
+                    ((k = p.key) == key || (key != null && (equality == null ?
+                            key.equals(k) : equality.keyEquals(key, k))))) {
                 //如果p的key与要插入的key一样
                 e = p;
-            else if (p instanceof TreeNode)
+                if (stats != null)
+                    stats.recordPut(1);
+            }
+            else if (p instanceof TreeNode) {
                 //如果是红黑树，则查找是否已有相同的key
                 e = ((TreeNode<K,V>)p).putTreeVal(this, tab, hash, key, value);
+                if (stats != null)
+                    stats.recordTreePut();
+                if (e == null && maxLoadFactor > 0)
+                    //红黑树桶至少有TREEIFY_THRESHOLD个节点，不去数了
+                    sampleChain(TREEIFY_THRESHOLD);
+            }
             else {
                 //普通链表节点
                 for (int binCount = 0; ; ++binCount) {
                     if ((e = p.next) == null) {
                         //先把新节点插入到链表最后
                         p.next = newNode(hash, key, value, null);
+                        if (stats != null)
+                            stats.recordPut(binCount + 1);
+                        if (maxLoadFactor > 0)
+                            sampleChain(binCount + 1);
                         /**
                          * 判断是否超过链表转红黑树阈值
                          * 超过则转换
@@ -129,9 +452,13 @@ public class MyHashMap<K,V> {
                         break;
                     }
                     if (e.hash == hash &&
-                            ((k = e.key) == key || (key != null && key.equals(k))))
+                            ((k = e.key) == key || (key != null && (equality == null ?
+                                    key.equals(k) : equality.keyEquals(key, k))))) {
                         //如果相等，则找到
+                        if (stats != null)
+                            stats.recordPut(binCount + 2);
                         break;
+                    }
                     //继续往下执行
                     p = e;
                 }
@@ -145,15 +472,444 @@ public class MyHashMap<K,V> {
                 V oldValue = e.value;
                 if (!onlyIfAbsent || oldValue == null)
                     e.value = value;
-//                afterNodeAccess(e);
+                afterNodeAccess(e);
                 return oldValue;
             }
         }
+        ++modCount;
         if (++size > threshold)
             resize();
-//        afterNodeInsertion(evict);
+        afterNodeInsertion(evict);
         return null;
     }
+
+    /**
+     * key不存在(或者value是null)时才放入
+     * @param key
+     * @param value
+     * @return  原来的value
+     */
+    public V putIfAbsent(K key, V value) {
+        return putVal(hashOf(key), key, value, true, true);
+    }
+
+    /**
+     * key不存在(或者value是null)时，用mappingFunction计算value放入
+     * 查找和插入只遍历一次桶：找不到时记下桶头(或者红黑树)，计算完直接插到桶头(或者putTreeVal)
+     * mappingFunction里不能修改map
+     * @param key
+     * @param mappingFunction   返回null时不放入
+     * @return  现在的value
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        if (mappingFunction == null)
+            throw new NullPointerException();
+        int hash = hashOf(key);
+        Node<K,V>[] tab; Node<K,V> first; int n, i;
+        int binCount = 0;
+        TreeNode<K,V> t = null;
+        Node<K,V> old = null;
+        if (size > threshold || (tab = table) == null || (n = tab.length) == 0)
+            //先扩容，插入以后不用再扩容(插入的位置不会变)
+            n = (tab = resize()).length;
+        if (oldTable != null) {
+            helpTransfer(hash);
+            n = (tab = table).length;
+        }
+        if ((first = tab[i = (n - 1) & hash]) != null) {
+            if (first instanceof TreeNode)
+                old = (t = (TreeNode<K,V>)first).getTreeNode(this, hash, key);
+            else {
+                Node<K,V> e = first; K k;
+                do {
+                    if (e.hash == hash &&
+                            ((k = e.key) == key || (key != null && (equality == null ?
+                                    key.equals(k) : equality.keyEquals(key, k))))) {
+                        old = e;
+                        break;
+                    }
+                    ++binCount;
+                } while ((e = e.next) != null);
+            }
+            V oldValue;
+            if (old != null && (oldValue = old.value) != null) {
+                afterNodeAccess(old);
+                return oldValue;
+            }
+        }
+        int mc = modCount;
+        V v = mappingFunction.apply(key);
+        if (mc != modCount)
+            throw new ConcurrentModificationException();
+        if (v == null)
+            return null;
+        else if (old != null) {
+            old.value = v;
+            afterNodeAccess(old);
+            return v;
+        }
+        insertAbsent(tab, i, first, t, binCount, hash, key, v);
+        return v;
+    }
+
+    /**
+     * key存在并且value不是null时，用remappingFunction计算新的value
+     * 只遍历一次桶，返回null时直接摘掉找到的节点
+     * @param key
+     * @param remappingFunction 返回null时删除这个key
+     * @return  新的value
+     */
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (remappingFunction == null)
+            throw new NullPointerException();
+        int hash = hashOf(key);
+        Node<K,V>[] tab; Node<K,V> first; int n, i;
+        Node<K,V> old = null, prev = null;
+        if (oldTable != null)
+            helpTransfer(hash);
+        if ((tab = table) == null || (n = tab.length) == 0 ||
+                (first = tab[i = (n - 1) & hash]) == null)
+            return null;
+        if (first instanceof TreeNode)
+            old = ((TreeNode<K,V>)first).getTreeNode(this, hash, key);
+        else {
+            Node<K,V> e = first; K k;
+            do {
+                if (e.hash == hash &&
+                        ((k = e.key) == key || (key != null && (equality == null ?
+                                key.equals(k) : equality.keyEquals(key, k))))) {
+                    old = e;
+                    break;
+                }
+                prev = e;
+            } while ((e = e.next) != null);
+        }
+        V oldValue;
+        if (old != null && (oldValue = old.value) != null) {
+            int mc = modCount;
+            V v = remappingFunction.apply(key, oldValue);
+            if (mc != modCount)
+                throw new ConcurrentModificationException();
+            if (v != null) {
+                old.value = v;
+                afterNodeAccess(old);
+                return v;
+            }
+            else
+                recycle(unlinkNode(tab, i, prev, old, true));
+        }
+        return null;
+    }
+
+    /**
+     * 用remappingFunction计算新的value(key不存在时oldValue是null)
+     * 和computeIfAbsent()一样只遍历一次桶
+     * @param key
+     * @param remappingFunction 返回null时删除这个key
+     * @return  新的value
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (remappingFunction == null)
+            throw new NullPointerException();
+        int hash = hashOf(key);
+        Node<K,V>[] tab; Node<K,V> first; int n, i;
+        int binCount = 0;
+        TreeNode<K,V> t = null;
+        Node<K,V> old = null, prev = null;
+        if (size > threshold || (tab = table) == null || (n = tab.length) == 0)
+            n = (tab = resize()).length;
+        if (oldTable != null) {
+            helpTransfer(hash);
+            n = (tab = table).length;
+        }
+        if ((first = tab[i = (n - 1) & hash]) != null) {
+            if (first instanceof TreeNode)
+                old = (t = (TreeNode<K,V>)first).getTreeNode(this, hash, key);
+            else {
+                Node<K,V> e = first; K k;
+                do {
+                    if (e.hash == hash &&
+                            ((k = e.key) == key || (key != null && (equality == null ?
+                                    key.equals(k) : equality.keyEquals(key, k))))) {
+                        old = e;
+                        break;
+                    }
+                    ++binCount;
+                    //删除时直接用前一个节点摘掉，不用再找一遍
+                    prev = e;
+                } while ((e = e.next) != null);
+            }
+        }
+        V oldValue = (old == null) ? null : old.value;
+        int mc = modCount;
+        V v = remappingFunction.apply(key, oldValue);
+        if (mc != modCount)
+            throw new ConcurrentModificationException();
+        if (old != null) {
+            if (v != null) {
+                old.value = v;
+                afterNodeAccess(old);
+            }
+            else
+                recycle(unlinkNode(tab, i, prev, old, true));
+        }
+        else if (v != null)
+            insertAbsent(tab, i, first, t, binCount, hash, key, v);
+        return v;
+    }
+
+    /**
+     * key不存在(或者value是null)时放入value，否则用remappingFunction合并旧value和value
+     * 计数、累加一类的聚合只需要一次hash、一次遍历桶
+     * 和computeIfAbsent()一样只遍历一次桶
+     * @param key
+     * @param value             不能是null
+     * @param remappingFunction 返回null时删除这个key
+     * @return  新的value
+     */
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        if (value == null || remappingFunction == null)
+            throw new NullPointerException();
+        int hash = hashOf(key);
+        Node<K,V>[] tab; Node<K,V> first; int n, i;
+        int binCount = 0;
+        TreeNode<K,V> t = null;
+        Node<K,V> old = null, prev = null;
+        if (size > threshold || (tab = table) == null || (n = tab.length) == 0)
+            n = (tab = resize()).length;
+        if (oldTable != null) {
+            helpTransfer(hash);
+            n = (tab = table).length;
+        }
+        if ((first = tab[i = (n - 1) & hash]) != null) {
+            if (first instanceof TreeNode)
+                old = (t = (TreeNode<K,V>)first).getTreeNode(this, hash, key);
+            else {
+                Node<K,V> e = first; K k;
+                do {
+                    if (e.hash == hash &&
+                            ((k = e.key) == key || (key != null && (equality == null ?
+                                    key.equals(k) : equality.keyEquals(key, k))))) {
+                        old = e;
+                        break;
+                    }
+                    ++binCount;
+                    //删除时直接用前一个节点摘掉，不用再找一遍
+                    prev = e;
+                } while ((e = e.next) != null);
+            }
+        }
+        if (old != null) {
+            V v;
+            if (old.value != null) {
+                int mc = modCount;
+                v = remappingFunction.apply(old.value, value);
+                if (mc != modCount)
+                    throw new ConcurrentModificationException();
+            }
+            else
+                v = value;
+            if (v != null) {
+                old.value = v;
+                afterNodeAccess(old);
+            }
+            else
+                recycle(unlinkNode(tab, i, prev, old, true));
+            return v;
+        }
+        insertAbsent(tab, i, first, t, binCount, hash, key, value);
+        return value;
+    }
+
+    /**
+     * compute系列方法找不到key时的插入
+     * 链表插到桶头(不用再遍历一次)，红黑树走putTreeVal
+     * 调用之前已经扩容过了，这里不再扩容
+     * @param tab
+     * @param i         桶下标
+     * @param first     查找时的桶头
+     * @param t         红黑树桶的根，链表桶是null
+     * @param binCount  链表长度
+     * @param hash
+     * @param key
+     * @param value
+     */
+    final void insertAbsent(Node<K,V>[] tab, int i, Node<K,V> first, TreeNode<K,V> t,
+                            int binCount, int hash, K key, V value) {
+        if (t != null) {
+            t.putTreeVal(this, tab, hash, key, value);
+            if (stats != null)
+                stats.recordTreePut();
+        }
+        else {
+            tab[i] = newNode(hash, key, value, first);
+            if (stats != null)
+                //查找时比较过的节点数量，和putVal()一样
+                stats.recordPut(binCount);
+            if (binCount >= TREEIFY_THRESHOLD - 1)
+                treeifyBin(tab, hash);
+        }
+        if (maxLoadFactor > 0)
+            sampleChain(t != null ? TREEIFY_THRESHOLD : binCount);
+        ++modCount;
+        ++size;
+        afterNodeInsertion(true);
+    }
+
+    /**
+     * 批量添加
+     * 先按最终的节点数量一次算好容量，避免一边添加一边扩容
+     * @param m
+     */
+    public void putAll(Map<? extends K, ? extends V> m) {
+        int s = m.size();
+        if (s > 0) {
+            presize(s);
+            for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+                K key = e.getKey();
+                putVal(hashOf(key), key, e.getValue(), false, true);
+            }
+        }
+    }
+    /**
+     * 批量添加，keys[i]对应values[i]
+     * @param keys
+     * @param values
+     */
+    public void putAll(K[] keys, V[] values) {
+        if (keys.length != values.length)
+            throw new IllegalArgumentException("Keys and values differ in length: " +
+                    keys.length + " != " + values.length);
+        int s = keys.length;
+        if (s > 0) {
+            presize(s);
+            for (int i = 0; i < s; i++) {
+                K key = keys[i];
+                putVal(hashOf(key), key, values[i], false, true);
+            }
+        }
+    }
+
+    /**
+     * 批量添加前，保证再放s个节点不会触发扩容
+     * 如果表还没分配，只要调大threshold，第一次resize()就直接分配最终大小的表(和构造时指定容量一样)
+     * 如果表已经分配了，一次算好最终容量，只分配一次新表、迁移一次，之后添加的节点直接放进最终的表里
+     * @param s 要添加的节点数量
+     */
+    final void presize(int s) {
+        Node<K,V>[] tab;
+        if ((tab = table) == null) {
+            int t = capacityFor(s, loadFactor);
+            if (t > threshold)
+                threshold = tableSizeFor(t);
+        }
+        else {
+            long expected = (long)size + s;
+            if (expected > threshold && tab.length < MAXIMUM_CAPACITY) {
+                int cap = tableSizeFor(capacityFor((int)Math.min(expected, Integer.MAX_VALUE), loadFactor));
+                resize(Math.max(cap, tab.length << 1));
+            }
+        }
+    }
+
+    /**
+     * 放下s个节点而不触发扩容需要的容量
+     * @param s
+     * @param loadFactor
+     * @return
+     */
+    static int capacityFor(int s, float loadFactor) {
+        float ft = ((float)s / loadFactor) + 1.0F;
+        return (ft < (float)MAXIMUM_CAPACITY) ? (int)ft : MAXIMUM_CAPACITY;
+    }
+
+    public static <K,V> Builder<K,V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * 先收集所有的节点，build()时按节点数量一次分配好hash表，再全部放进去
+     * 整个过程只分配一次hash表，不会resize()
+     * @param <K>
+     * @param <V>
+     */
+    public static final class Builder<K,V> {
+        Object[] keys = new Object[DEFAULT_INITIAL_CAPACITY];
+        Object[] values = new Object[DEFAULT_INITIAL_CAPACITY];
+        int count;
+        float loadFactor = DEFAULT_LOAD_FACTOR;
+        HashStrategy hashStrategy;
+        Comparator<? super K> treeBinComparator;
+
+        Builder() {
+        }
+
+        public Builder<K,V> loadFactor(float loadFactor) {
+            if (loadFactor <= 0 || Float.isNaN(loadFactor))
+                throw new IllegalArgumentException("Illegal load factor: " +
+                        loadFactor);
+            this.loadFactor = loadFactor;
+            return this;
+        }
+        public Builder<K,V> hashStrategy(HashStrategy hashStrategy) {
+            this.hashStrategy = hashStrategy;
+            return this;
+        }
+        public Builder<K,V> treeBinComparator(Comparator<? super K> treeBinComparator) {
+            this.treeBinComparator = treeBinComparator;
+            return this;
+        }
+        /**
+         * 预计的节点数量，只用来减少收集节点时的数组扩容
+         */
+        public Builder<K,V> expectedSize(int expectedSize) {
+            if (expectedSize < 0)
+                throw new IllegalArgumentException("Illegal expected size: " +
+                        expectedSize);
+            ensureCapacity(expectedSize);
+            return this;
+        }
+        public Builder<K,V> put(K key, V value) {
+            ensureCapacity(count + 1);
+            keys[count] = key;
+            values[count++] = value;
+            return this;
+        }
+        public Builder<K,V> putAll(Map<? extends K, ? extends V> m) {
+            ensureCapacity(count + m.size());
+            for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+                keys[count] = e.getKey();
+                values[count++] = e.getValue();
+            }
+            return this;
+        }
+        /**
+         * 相同的key后放的覆盖先放的
+         */
+        @SuppressWarnings("unchecked")
+        public MyHashMap<K,V> build() {
+            MyHashMap<K,V> map = new MyHashMap<>(capacityFor(count, loadFactor), loadFactor);
+            map.setHashStrategy(hashStrategy);
+            map.setTreeBinComparator(treeBinComparator);
+            for (int i = 0; i < count; i++) {
+                K key = (K)keys[i];
+                map.putVal(map.hashOf(key), key, (V)values[i], false, true);
+            }
+            return map;
+        }
+
+        void ensureCapacity(int minCapacity) {
+            if (minCapacity < 0)
+                throw new OutOfMemoryError("Required array size too large");
+            if (minCapacity > keys.length) {
+                int newCapacity = Math.max(minCapacity, keys.length + (keys.length >> 1));
+                if (newCapacity < 0)
+                    newCapacity = minCapacity;
+                keys = Arrays.copyOf(keys, newCapacity);
+                values = Arrays.copyOf(values, newCapacity);
+            }
+        }
+    }
     //=========================添加==========================
 
     //=========================特色方法==========================
@@ -170,17 +926,25 @@ public class MyHashMap<K,V> {
          * 如果hash表还没到设置的最小长度（MIN_TREEIFY_CAPACITY）
          * 则先扩展hash表
          */
-        if (tab == null || (n = tab.length) < MIN_TREEIFY_CAPACITY)
+        if (tab == null || (n = tab.length) < MIN_TREEIFY_CAPACITY) {
+            if (stats != null)
+                stats.recordTreeifyBin(0, tab == null ? 0 : tab.length);
             resize();
-        else if ((e = tab[index = (n - 1) & hash]) != null) {
-            //作用在增加数据的桶
+        }
+        else if (equality == null && (e = tab[index = (n - 1) & hash]) != null) {
+            //作用在增加数据的桶(自定义相等的hash策略不转红黑树)
             TreeNode<K,V> hd = null, tl = null; //hd 头节点
+            int binSize = 0;
+            Node<K,V> next;
             do {
+                ++binSize;
+                next = e.next;
                 /**
                  * 倒转了链表
                  * 并变成了双向链表
                  */
                 TreeNode<K,V> p = replacementTreeNode(e, null); //普通单项链表节点变成树节点
+                recycle(e);
                 if (tl == null)
                     hd = p;
                 else {
@@ -188,20 +952,66 @@ public class MyHashMap<K,V> {
                     tl.next = p;
                 }
                 tl = p;
-            } while ((e = e.next) != null);
+            } while ((e = next) != null);
             if ((tab[index] = hd) != null)  //新双向链表替换旧单向链表
-                hd.treeify(tab);    //构建红黑树
+                hd.treeify(this, tab);    //构建红黑树
+            if (stats != null)
+                stats.recordTreeifyBin(binSize, n);
         }
     }
+    /**
+     * 记录一次插入时桶里已有的节点数量
+     * size还没加1，均匀分布时桶里平均有size/容量个节点
+     * @param chain
+     */
+    final void sampleChain(int chain) {
+        chainSum += chain;
+        expectedChainSum += size;
+        ++chainSamples;
+    }
+
+    /**
+     * 扩容时根据这段时间的采样调整负载因子，然后开始新的采样窗口
+     * @param cap   扩容前的容量(采样时的容量)
+     */
+    final void adaptLoadFactor(int cap) {
+        if (chainSamples >= MIN_ADAPT_SAMPLES && expectedChainSum > 0L) {
+            //实际链表长度/均匀分布的链表长度
+            double ratio = (double)chainSum * cap / expectedChainSum;
+            float lf = loadFactor;
+            if (ratio > ADAPT_HIGH)
+                lf *= ADAPT_SHRINK;
+            else if (ratio < ADAPT_LOW)
+                lf *= ADAPT_GROW;
+            loadFactor = Math.max(minLoadFactor, Math.min(maxLoadFactor, lf));
+        }
+        chainSum = expectedChainSum = 0L;
+        chainSamples = 0;
+    }
+
     /**
      * 重新计算hash表长度
      * @return
      */
     final Node<K,V>[] resize() {
+        return resize(0);
+    }
+
+    /**
+     * @param targetCap 直接扩容到这个容量(presize()用，2^n并且大于当前容量)，0表示按默认规则扩大两倍
+     * @return
+     */
+    final Node<K,V>[] resize(int targetCap) {
+        MyHashMapStats st = stats;
+        long start = (st == null) ? 0L : System.nanoTime();
+        if (oldTable != null)
+            //按阈值扩容前一定已经迁移完了，presize()或者表太小不能转红黑树时提前扩容才会走到这里，先全部迁移掉
+            finishTransfer();
         Node<K,V>[] oldTab = table;
         int oldCap = (oldTab == null) ? 0 : oldTab.length;
         int oldThr = threshold;
-        int newCap, newThr = 0;
+        int newCap, newThr = 0, gap;
+        boolean parallel = false;
         if (oldCap > 0) {
             if (oldCap >= MAXIMUM_CAPACITY) {
                 /**
@@ -212,14 +1022,22 @@ public class MyHashMap<K,V> {
                 threshold = Integer.MAX_VALUE;
                 return oldTab;
             }
+            else if (targetCap > oldCap)
+                //一次扩到位，中间的容量不分配也不迁移，阈值按负载因子重新算
+                newCap = targetCap;
             else if ((newCap = oldCap << 1) < MAXIMUM_CAPACITY &&
-                    oldCap >= DEFAULT_INITIAL_CAPACITY)
+                    oldCap >= DEFAULT_INITIAL_CAPACITY) {
                 /**
                  * 表容量扩大两倍
                  * 如果表容量没超过最大阈值 并且 第一次就设置过大于默认最小hash表长或者已经扩容过了
                  * 则把容量阈值也扩大两倍
+                 * 自适应负载因子时按调整后的负载因子重新算
                  */
-                newThr = oldThr << 1; // double threshold
+                if (maxLoadFactor > 0)
+                    adaptLoadFactor(oldCap);
+                else
+                    newThr = oldThr << 1; // double threshold
+            }
         }
         else if (oldThr > 0) // initial capacity was placed in threshold
             //构造的时候，指定了大小
@@ -243,78 +1061,631 @@ public class MyHashMap<K,V> {
         Node<K,V>[] newTab = (Node<K,V>[])new Node[newCap];
         table = newTab;
         if (oldTab != null) {
+            if (incrementalResizeStep > 0 && (gap = newThr - size) > 0) {
+                /**
+                 * 渐进式扩容
+                 * 新表先挂上去，旧表留着由后面的操作分批迁移
+                 * 到下一次扩容前至少还有gap次插入，每次插入都会迁移，按gap算出每次最少迁移多少个桶
+                 */
+                oldTable = oldTab;
+                transferIndex = 0;
+                transferStep = Math.max(incrementalResizeStep, (oldCap - 1) / gap + 1);
+            }
+            else if (parallelResizeThreshold > 0 && size >= parallelResizeThreshold &&
+                    oldCap > MIN_TRANSFER_STRIDE) {
+                //并行扩容，期间暂停节点池
+                parallel = true;
+                poolSuspended = true;
+                try {
+                    ForkJoinPool.commonPool().invoke(
+                            new TransferTask<>(this, oldTab, newTab, 0, oldCap));
+                } finally {
+                    poolSuspended = false;
+                }
+            }
+            else {
+                /**
+                 * 遍历老hash表
+                 */
+                for (int j = 0; j < oldCap; ++j) {
+                    if (oldTab[j] != null)
+                        transferBin(oldTab, newTab, j, oldCap);
+                }
+            }
+        }
+        if (st != null)
+            st.recordResize(oldCap, newCap, System.nanoTime() - start, oldTable != null, parallel);
+        return newTab;
+    }
+
+    /**
+     * 把旧hash表中j位置的桶迁移到新hash表
+     * 旧桶j中的节点只会落到新桶j或者j+oldCap，所以每个桶的迁移是互相独立的
+     * @param oldTab    旧hash表
+     * @param newTab    新hash表
+     * @param j         旧桶下标
+     * @param oldCap    旧hash表长度
+     */
+    final void transferBin(Node<K,V>[] oldTab, Node<K,V>[] newTab, int j, int oldCap) {
+        Node<K,V> e = oldTab[j];
+        oldTab[j] = null;
+        if (e.next == null)
+            //如果老hash表只有一个头，直接复制到新hash表
+            newTab[e.hash & (newTab.length - 1)] = e;
+        else if (newTab.length != oldCap << 1)
+            //presize()一次扩大不止一倍
+            spreadBin(newTab, e, j, oldCap);
+        else if (e instanceof TreeNode)
+        /**
+         * 如果已经是红黑树了
+         * 与下面的链表处理同理(不过多了一个如果红黑树过短，拆成链表的操作)
+         */
+            ((TreeNode<K,V>)e).split(this, newTab, j, oldCap);
+        else { // preserve order
             /**
-             * 遍历老hash表
+             * 原桶中的链表转移到新桶中链表时
+             * 只可能出现两种情况
+             * 还是在原来的位置上，或者偏移一个原本hash表长度的位置
+             * （
+             *  ep:
+             *      1-32 & 16
+             *      0~0(16个) 16~16(16个)
+             * ）
+             *
+             * 所以这里纪录两个链表(高位和低位)
+             * 把原来的链表拆到这两个新链表里面
+             * 最后把这两个新链表挂到新hash表上
              */
-            for (int j = 0; j < oldCap; ++j) {
-                Node<K,V> e;
-                if ((e = oldTab[j]) != null) {
-                    oldTab[j] = null;
-                    if (e.next == null)
-                        //如果老hash表只有一个头，直接复制到新hash表
-                        newTab[e.hash & (newCap - 1)] = e;
-                    else if (e instanceof TreeNode)
-                    /**
-                     * 如果已经是红黑树了
-                     * 与下面的链表处理同理(不过多了一个如果红黑树过短，拆成链表的操作)
-                     */
-                        ((TreeNode<K,V>)e).split(this, newTab, j, oldCap);
-                    else { // preserve order
-                        /**
-                         * 原桶中的链表转移到新桶中链表时
-                         * 只可能出现两种情况
-                         * 还是在原来的位置上，或者偏移一个原本hash表长度的位置
-                         * （
-                         *  ep:
-                         *      1-32 & 16
-                         *      0~0(16个) 16~16(16个)
-                         * ）
-                         *
-                         * 所以这里纪录两个链表(高位和低位)
-                         * 把原来的链表拆到这两个新链表里面
-                         * 最后把这两个新链表挂到新hash表上
-                         */
-                        Node<K,V> loHead = null, loTail = null;
-                        Node<K,V> hiHead = null, hiTail = null;
-                        Node<K,V> next;
-                        do {
-                            next = e.next;
-                            if ((e.hash & oldCap) == 0) {
-                                if (loTail == null)
-                                    loHead = e;
-                                else
-                                    loTail.next = e;
-                                loTail = e;
-                            }
-                            else {
-                                if (hiTail == null)
-                                    hiHead = e;
-                                else
-                                    hiTail.next = e;
-                                hiTail = e;
-                            }
-                        } while ((e = next) != null);
-                        if (loTail != null) {
-                            loTail.next = null;
-                            newTab[j] = loHead;
-                        }
-                        if (hiTail != null) {
-                            hiTail.next = null;
-                            newTab[j + oldCap] = hiHead;
-                        }
+            Node<K,V> loHead = null, loTail = null;
+            Node<K,V> hiHead = null, hiTail = null;
+            Node<K,V> next;
+            do {
+                next = e.next;
+                if ((e.hash & oldCap) == 0) {
+                    if (loTail == null)
+                        loHead = e;
+                    else
+                        loTail.next = e;
+                    loTail = e;
+                }
+                else {
+                    if (hiTail == null)
+                        hiHead = e;
+                    else
+                        hiTail.next = e;
+                    hiTail = e;
+                }
+            } while ((e = next) != null);
+            if (loTail != null) {
+                loTail.next = null;
+                newTab[j] = loHead;
+            }
+            if (hiTail != null) {
+                hiTail.next = null;
+                newTab[j + oldCap] = hiHead;
+            }
+        }
+    }
+
+    /**
+     * 一次扩大不止一倍时，旧桶j的节点会落到新桶j + m*oldCap
+     * 按bit、bit<<1...逐位拆成高低两条链表(和transferBin()一样保持原来的顺序)，直到新表长度
+     * 红黑树桶拆完以后，每条链表再按节点数量转成红黑树或者普通链表(和TreeNode.split()一样)
+     * @param tab   新hash表
+     * @param e     要拆的链表头
+     * @param index 这条链表目前对应的新桶下标
+     * @param bit   下一个要看的hash位
+     */
+    final void spreadBin(Node<K,V>[] tab, Node<K,V> e, int index, int bit) {
+        if (bit == tab.length) {
+            if (e instanceof TreeNode) {
+                int n = 0;
+                TreeNode<K,V> prev = null;
+                for (Node<K,V> p = e; p != null; p = p.next, ++n) {
+                    TreeNode<K,V> t = (TreeNode<K,V>)p;
+                    t.prev = prev;
+                    prev = t;
+                }
+                if (n <= UNTREEIFY_THRESHOLD)
+                    tab[index] = ((TreeNode<K,V>)e).untreeify(this);
+                else {
+                    tab[index] = e;
+                    ((TreeNode<K,V>)e).treeify(this, tab);
+                    if (stats != null)
+                        stats.recordTreeify(n, tab.length);
+                }
+            }
+            else
+                tab[index] = e;
+            return;
+        }
+        Node<K,V> loHead = null, loTail = null;
+        Node<K,V> hiHead = null, hiTail = null;
+        Node<K,V> next;
+        do {
+            next = e.next;
+            if ((e.hash & bit) == 0) {
+                if (loTail == null)
+                    loHead = e;
+                else
+                    loTail.next = e;
+                loTail = e;
+            }
+            else {
+                if (hiTail == null)
+                    hiHead = e;
+                else
+                    hiTail.next = e;
+                hiTail = e;
+            }
+        } while ((e = next) != null);
+        if (loTail != null) {
+            loTail.next = null;
+            spreadBin(tab, loHead, index, bit << 1);
+        }
+        if (hiTail != null) {
+            hiTail.next = null;
+            spreadBin(tab, hiHead, index + bit, bit << 1);
+        }
+    }
+
+    /**
+     * 并行扩容的任务
+     * 负责迁移旧hash表[lo, hi)范围内的桶，范围太大就拆成两半
+     */
+    static final class TransferTask<K,V> extends RecursiveAction {
+        private static final long serialVersionUID = -5305383580567637512L;
+        final MyHashMap<K,V> map;
+        final Node<K,V>[] oldTab, newTab;
+        final int lo, hi;
+        TransferTask(MyHashMap<K,V> map, Node<K,V>[] oldTab, Node<K,V>[] newTab,
+                     int lo, int hi) {
+            this.map = map;
+            this.oldTab = oldTab;
+            this.newTab = newTab;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > MIN_TRANSFER_STRIDE) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new TransferTask<>(map, oldTab, newTab, lo, mid),
+                        new TransferTask<>(map, oldTab, newTab, mid, hi));
+            }
+            else {
+                int oldCap = oldTab.length;
+                for (int j = lo; j < hi; ++j) {
+                    if (oldTab[j] != null)
+                        map.transferBin(oldTab, newTab, j, oldCap);
+                }
+            }
+        }
+    }
+
+    /**
+     * 渐进式扩容时，每次put/get/remove之前调用
+     * 先迁移hash所在的旧桶(保证接下来只需要在新表里找)
+     * 再按顺序迁移transferStep个旧桶
+     * @param hash
+     */
+    final void helpTransfer(int hash) {
+        Node<K,V>[] oldTab = oldTable, newTab = table;
+        int oldCap = oldTab.length, j;
+        if (oldTab[j = hash & (oldCap - 1)] != null)
+            transferBin(oldTab, newTab, j, oldCap);
+        int i = transferIndex, bound = Math.min(oldCap, i + transferStep);
+        for (; i < bound; ++i) {
+            if (oldTab[i] != null)
+                transferBin(oldTab, newTab, i, oldCap);
+        }
+        if ((transferIndex = i) >= oldCap)
+            //全部迁移完了
+            oldTable = null;
+    }
+
+    /**
+     * 把渐进式扩容剩下的旧桶一次迁移完
+     */
+    final void finishTransfer() {
+        Node<K,V>[] oldTab = oldTable, newTab = table;
+        int oldCap = oldTab.length;
+        for (int i = transferIndex; i < oldCap; ++i) {
+            if (oldTab[i] != null)
+                transferBin(oldTab, newTab, i, oldCap);
+        }
+        transferIndex = oldCap;
+        oldTable = null;
+    }
+
+    /**
+     * 把hash表缩小到刚好放下现有节点的大小(不触发扩容的最小的2^n)
+     * 和删除时自动缩容一样，不会小于DEFAULT_INITIAL_CAPACITY
+     */
+    public void trimToSize() {
+        Node<K,V>[] tab;
+        if ((tab = table) == null)
+            return;
+        int cap = Math.max(DEFAULT_INITIAL_CAPACITY, tableSizeFor((int)Math.ceil(size / loadFactor)));
+        while (tab.length > cap) {
+            shrink();
+            tab = table;
+        }
+    }
+
+    /**
+     * hash表缩小一半，是扩容的反过程
+     * 扩容时旧桶j拆到新桶j和j+newCap，缩容时把旧桶j和j+newCap合并回新桶j
+     * 合并后节点超过TREEIFY_THRESHOLD的桶重新转红黑树，否则变成链表
+     * 缩到MIN_TREEIFY_CAPACITY以下时，和treeifyBin()一样不保留红黑树，直接搬过去的红黑树也变成链表
+     */
+    final void shrink() {
+        MyHashMapStats st = stats;
+        long start = (st == null) ? 0L : System.nanoTime();
+        if (oldTable != null)
+            finishTransfer();
+        Node<K,V>[] oldTab = table;
+        int oldCap = oldTab.length, newCap = oldCap >>> 1;
+        @SuppressWarnings({"rawtypes","unchecked"})
+        Node<K,V>[] newTab = (Node<K,V>[])new Node[newCap];
+        for (int j = 0; j < newCap; ++j) {
+            Node<K,V> lo = oldTab[j], hi = oldTab[j + newCap], b;
+            if (lo == null || hi == null) {
+                //只有一边有节点，整个桶(包括红黑树)直接搬过去
+                b = (lo == null) ? hi : lo;
+                if (b instanceof TreeNode && newCap < MIN_TREEIFY_CAPACITY)
+                    b = ((TreeNode<K,V>)b).untreeify(this);
+                newTab[j] = b;
+            }
+            else
+                mergeBins(newTab, j, lo, hi);
+        }
+        table = newTab;
+        threshold = (int)((float)newCap * loadFactor);
+        ++modCount;
+        if (st != null)
+            st.recordResize(oldCap, newCap, System.nanoTime() - start, false, false);
+    }
+
+    /**
+     * 把lo和hi两个桶合并成newTab[j]，lo的节点在前
+     * @param newTab
+     * @param j
+     * @param lo
+     * @param hi
+     */
+    final void mergeBins(Node<K,V>[] newTab, int j, Node<K,V> lo, Node<K,V> hi) {
+        //先把hi接到lo后面，变成一条链表
+        Node<K,V> t = lo;
+        int n = 1;
+        for (; t.next != null; t = t.next)
+            ++n;
+        t.next = hi;
+        for (Node<K,V> e = hi; e != null; e = e.next)
+            ++n;
+        Node<K,V> next;
+        if (n > TREEIFY_THRESHOLD && newTab.length >= MIN_TREEIFY_CAPACITY && equality == null) {
+            //全部变成树节点(原来就是树节点的直接用)，再转红黑树
+            TreeNode<K,V> hd = null, tl = null;
+            for (Node<K,V> e = lo; e != null; e = next) {
+                next = e.next;
+                TreeNode<K,V> p;
+                if (e instanceof TreeNode)
+                    p = (TreeNode<K,V>)e;
+                else {
+                    p = replacementTreeNode(e, null);
+                    recycle(e);
+                }
+                p.next = null;
+                if ((p.prev = tl) == null)
+                    hd = p;
+                else
+                    tl.next = p;
+                tl = p;
+            }
+            newTab[j] = hd;
+            hd.treeify(this, newTab);
+            if (stats != null)
+                stats.recordTreeify(n, newTab.length);
+        }
+        else {
+            //全部变成普通链表节点
+            Node<K,V> hd = null, tl = null;
+            for (Node<K,V> e = lo; e != null; e = next) {
+                next = e.next;
+                Node<K,V> p = e;
+                if (e instanceof TreeNode) {
+                    p = replacementNode(e, null);
+                    recycle(e);
+                }
+                p.next = null;
+                if (tl == null)
+                    hd = p;
+                else
+                    tl.next = p;
+                tl = p;
+            }
+            newTab[j] = hd;
+        }
+    }
+
+    /**
+     * 对每个节点执行action
+     * 节点数量达到parallelismThreshold时，把hash表按下标范围拆开，在ForkJoinPool上并行执行(action要线程安全)
+     * 直接遍历table和桶的next链(红黑树桶也一样)，不创建中间集合
+     * 执行期间不能修改map
+     * @param parallelismThreshold  并行执行需要的节点数量，Long.MAX_VALUE表示总是在当前线程执行
+     * @param action
+     */
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        if (action == null)
+            throw new NullPointerException();
+        bulk(parallelismThreshold, new ForEachTask<>(null, 0, 0, 0, action));
+    }
+
+    /**
+     * 找到一个searchFunction返回值不为null的节点就停止
+     * 并行执行时返回的不一定是遍历顺序上的第一个
+     * @param parallelismThreshold
+     * @param searchFunction
+     * @return  searchFunction第一个不为null的返回值，没有返回null
+     */
+    public <U> U search(long parallelismThreshold,
+                        BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        if (searchFunction == null)
+            throw new NullPointerException();
+        SearchTask<K,V,U> task = new SearchTask<>(null, 0, 0, 0, searchFunction,
+                new AtomicReference<U>());
+        bulk(parallelismThreshold, task);
+        return task.result.get();
+    }
+
+    /**
+     * 把每个节点transformer的结果用reducer合并
+     * transformer返回null的节点跳过
+     * @param parallelismThreshold
+     * @param transformer
+     * @param reducer               要满足结合律
+     * @return  合并结果，没有结果返回null
+     */
+    public <U> U reduce(long parallelismThreshold,
+                        BiFunction<? super K, ? super V, ? extends U> transformer,
+                        BiFunction<? super U, ? super U, ? extends U> reducer) {
+        if (transformer == null || reducer == null)
+            throw new NullPointerException();
+        return bulk(parallelismThreshold, new ReduceTask<>(null, 0, 0, 0, transformer, reducer));
+    }
+
+    /**
+     * 和reduce()一样，不装箱
+     * @param parallelismThreshold
+     * @param transformer
+     * @param basis                 reducer的单位元(比如求和是0)，每个拆分出来的任务都从basis开始
+     * @param reducer               要满足结合律
+     * @return
+     */
+    public long reduceToLong(long parallelismThreshold,
+                             ToLongBiFunction<? super K, ? super V> transformer,
+                             long basis, LongBinaryOperator reducer) {
+        if (transformer == null || reducer == null)
+            throw new NullPointerException();
+        return bulk(parallelismThreshold,
+                new ReduceToLongTask<>(null, 0, 0, 0, transformer, basis, reducer));
+    }
+
+    /**
+     * 批量操作的入口
+     * 节点数量没到parallelismThreshold，整个hash表在当前线程遍历
+     * 否则拆成 节点数量/parallelismThreshold 个范围(至少2个，最多并行度的4倍)，交给ForkJoinPool
+     * @param parallelismThreshold
+     * @param task  table和范围还没设置的任务，按计算出来的范围复制一个再执行
+     * @return
+     */
+    final <R> R bulk(long parallelismThreshold, BulkTask<K,V,R> task) {
+        if (parallelismThreshold <= 0)
+            throw new IllegalArgumentException("Illegal parallelism threshold: " +
+                    parallelismThreshold);
+        prepareIteration();
+        Node<K,V>[] tab;
+        if ((tab = table) == null || size == 0)
+            return task.scan(0, 0);
+        int n = tab.length, mc = modCount, p;
+        R r;
+        if (size < parallelismThreshold || (p = ForkJoinPool.getCommonPoolParallelism()) <= 1)
+            r = task.subTask(tab, 0, n, n).scan(0, n);
+        else {
+            long tasks = Math.max(2L, Math.min(size / parallelismThreshold, (long)p << 2));
+            int span = (int)Math.max(1L, (n + tasks - 1) / tasks);
+            r = ForkJoinPool.commonPool().invoke(task.subTask(tab, 0, n, span));
+        }
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+        return r;
+    }
+
+    /**
+     * 批量操作的任务
+     * 负责hash表[lo, hi)范围内的桶，范围超过span就拆成两半
+     * @param <R>   结果类型
+     */
+    abstract static class BulkTask<K,V,R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = -2812553150218283497L;
+        final Node<K,V>[] tab;
+        final int lo, hi, span;
+        BulkTask(Node<K,V>[] tab, int lo, int hi, int span) {
+            this.tab = tab;
+            this.lo = lo;
+            this.hi = hi;
+            this.span = span;
+        }
+
+        @Override
+        protected final R compute() {
+            if (hi - lo > span) {
+                int mid = (lo + hi) >>> 1;
+                BulkTask<K,V,R> right = subTask(tab, mid, hi, span);
+                right.fork();
+                R l = subTask(tab, lo, mid, span).compute();
+                return combine(l, right.join());
+            }
+            return scan(lo, hi);
+        }
+
+        /**
+         * 同样的操作，换一个范围
+         */
+        abstract BulkTask<K,V,R> subTask(Node<K,V>[] tab, int lo, int hi, int span);
+
+        /**
+         * 在当前线程遍历[lo, hi)范围内的桶
+         */
+        abstract R scan(int lo, int hi);
+
+        /**
+         * 合并两个范围的结果
+         */
+        abstract R combine(R a, R b);
+    }
+
+    static final class ForEachTask<K,V> extends BulkTask<K,V,Void> {
+        private static final long serialVersionUID = 7093128736421907364L;
+        final BiConsumer<? super K, ? super V> action;
+        ForEachTask(Node<K,V>[] tab, int lo, int hi, int span,
+                    BiConsumer<? super K, ? super V> action) {
+            super(tab, lo, hi, span);
+            this.action = action;
+        }
+        BulkTask<K,V,Void> subTask(Node<K,V>[] tab, int lo, int hi, int span) {
+            return new ForEachTask<>(tab, lo, hi, span, action);
+        }
+        Void scan(int lo, int hi) {
+            for (int j = lo; j < hi; ++j) {
+                for (Node<K,V> e = tab[j]; e != null; e = e.next)
+                    action.accept(e.key, e.value);
+            }
+            return null;
+        }
+        Void combine(Void a, Void b) {
+            return null;
+        }
+    }
+
+    static final class SearchTask<K,V,U> extends BulkTask<K,V,Void> {
+        private static final long serialVersionUID = -4578910032236612853L;
+        final BiFunction<? super K, ? super V, ? extends U> searchFunction;
+        /**
+         * 所有子任务共享，找到以后其它子任务每个桶检查一次，尽早停止
+         */
+        final AtomicReference<U> result;
+        SearchTask(Node<K,V>[] tab, int lo, int hi, int span,
+                   BiFunction<? super K, ? super V, ? extends U> searchFunction,
+                   AtomicReference<U> result) {
+            super(tab, lo, hi, span);
+            this.searchFunction = searchFunction;
+            this.result = result;
+        }
+        BulkTask<K,V,Void> subTask(Node<K,V>[] tab, int lo, int hi, int span) {
+            return new SearchTask<>(tab, lo, hi, span, searchFunction, result);
+        }
+        Void scan(int lo, int hi) {
+            for (int j = lo; j < hi && result.get() == null; ++j) {
+                for (Node<K,V> e = tab[j]; e != null; e = e.next) {
+                    U u;
+                    if ((u = searchFunction.apply(e.key, e.value)) != null) {
+                        result.compareAndSet(null, u);
+                        return null;
                     }
                 }
             }
+            return null;
+        }
+        Void combine(Void a, Void b) {
+            return null;
+        }
+    }
+
+    static final class ReduceTask<K,V,U> extends BulkTask<K,V,U> {
+        private static final long serialVersionUID = 3350815474028123601L;
+        final BiFunction<? super K, ? super V, ? extends U> transformer;
+        final BiFunction<? super U, ? super U, ? extends U> reducer;
+        ReduceTask(Node<K,V>[] tab, int lo, int hi, int span,
+                   BiFunction<? super K, ? super V, ? extends U> transformer,
+                   BiFunction<? super U, ? super U, ? extends U> reducer) {
+            super(tab, lo, hi, span);
+            this.transformer = transformer;
+            this.reducer = reducer;
+        }
+        BulkTask<K,V,U> subTask(Node<K,V>[] tab, int lo, int hi, int span) {
+            return new ReduceTask<>(tab, lo, hi, span, transformer, reducer);
+        }
+        U scan(int lo, int hi) {
+            U r = null;
+            for (int j = lo; j < hi; ++j) {
+                for (Node<K,V> e = tab[j]; e != null; e = e.next) {
+                    U u;
+                    if ((u = transformer.apply(e.key, e.value)) != null)
+                        r = (r == null) ? u : reducer.apply(r, u);
+                }
+            }
+            return r;
+        }
+        U combine(U a, U b) {
+            return (a == null) ? b : (b == null) ? a : reducer.apply(a, b);
+        }
+    }
+
+    static final class ReduceToLongTask<K,V> extends BulkTask<K,V,Long> {
+        private static final long serialVersionUID = -6130772458894514179L;
+        final ToLongBiFunction<? super K, ? super V> transformer;
+        final long basis;
+        final LongBinaryOperator reducer;
+        ReduceToLongTask(Node<K,V>[] tab, int lo, int hi, int span,
+                         ToLongBiFunction<? super K, ? super V> transformer,
+                         long basis, LongBinaryOperator reducer) {
+            super(tab, lo, hi, span);
+            this.transformer = transformer;
+            this.basis = basis;
+            this.reducer = reducer;
+        }
+        BulkTask<K,V,Long> subTask(Node<K,V>[] tab, int lo, int hi, int span) {
+            return new ReduceToLongTask<>(tab, lo, hi, span, transformer, basis, reducer);
+        }
+        Long scan(int lo, int hi) {
+            long r = basis;
+            for (int j = lo; j < hi; ++j) {
+                for (Node<K,V> e = tab[j]; e != null; e = e.next)
+                    r = reducer.applyAsLong(r, transformer.applyAsLong(e.key, e.value));
+            }
+            return r;
+        }
+        Long combine(Long a, Long b) {
+            return reducer.applyAsLong(a, b);
         }
-        return newTab;
     }
     //=========================特色方法==========================
 
     //=========================删除==========================
     public V remove(Object key) {
         Node<K,V> e;
-        return (e = removeNode(hash(key), key, null, false, true)) == null ?
-                null : e.value;
+        if ((e = removeNode(hashOf(key), key, null, false, true)) == null)
+            return null;
+        V oldValue = e.value;
+        recycle(e);
+        return oldValue;
+    }
+    /**
+     * 和remove()一样，不再调用key.hashCode()
+     * @param key
+     * @return
+     */
+    public V removeHashed(HashedKey<?> key) {
+        Node<K,V> e;
+        if ((e = removeNode(cachedHashOf(key), key.key, null, false, true)) == null)
+            return null;
+        V oldValue = e.value;
+        recycle(e);
+        return oldValue;
     }
     /**
      *
@@ -328,24 +1699,28 @@ public class MyHashMap<K,V> {
     final Node<K,V> removeNode(int hash, Object key, Object value,
                                boolean matchValue, boolean movable) {
         Node<K,V>[] tab; Node<K,V> p; int n, index;
+        if (oldTable != null)
+            helpTransfer(hash);
         if ((tab = table) != null && (n = tab.length) > 0 &&
                 (p = tab[index = (n - 1) & hash]) != null) {
             //如果桶中有这个hash
             Node<K,V> node = null, e; K k; V v;
             if (p.hash == hash &&
-                    ((k = p.key) == key || (key != null && key.equals(k))))
+                    ((k = p.key) == key || (key != null && (equality == null ?
+                            key.equals(k) : equality.keyEquals(key, k)))))
                 //桶中节点就是要删除的节点
                 node = p;
             else if ((e = p.next) != null) {
                 if (p instanceof TreeNode)
                     //在红黑树查找
-                    node = ((TreeNode<K,V>)p).getTreeNode(hash, key);
+                    node = ((TreeNode<K,V>)p).getTreeNode(this, hash, key);
                 else {
                     //在链表中查找
                     do {
                         if (e.hash == hash &&
                                 ((k = e.key) == key ||
-                                        (key != null && key.equals(k)))) {
+                                        (key != null && (equality == null ?
+                                                key.equals(k) : equality.keyEquals(key, k))))) {
                             node = e;
                             break;
                         }
@@ -354,42 +1729,65 @@ public class MyHashMap<K,V> {
                 }
             }
             if (node != null && (!matchValue || (v = node.value) == value ||
-                    (value != null && value.equals(v)))) {
-                if (node instanceof TreeNode)
-                    //如果是红黑树删除
-                    ((TreeNode<K,V>)node).removeTreeNode(this, tab, movable);
-                else if (node == p)
-                    //如果删除的是桶中的节点   hash表指针直接跳过他就行
-                    tab[index] = node.next;
-                else    //链表的话 也直接跳过就行
-                    p.next = node.next;
-                --size;
-//                    afterNodeRemoval(node);
-                return node;
-            }
+                    (value != null && value.equals(v))))
+                return unlinkNode(tab, index, (node == p) ? null : p, node, movable);
         }
         return null;
     }
+
+    /**
+     * 把已经找到的节点从桶里摘掉，removeNode()和compute系列方法共用，不用再查找一遍
+     * @param tab
+     * @param index     桶下标
+     * @param prev      链表桶里node的前一个节点，node是桶头时为null(红黑树桶不用)
+     * @param node
+     * @param movable
+     * @return  node
+     */
+    final Node<K,V> unlinkNode(Node<K,V>[] tab, int index, Node<K,V> prev,
+                               Node<K,V> node, boolean movable) {
+        if (node instanceof TreeNode)
+            //如果是红黑树删除
+            ((TreeNode<K,V>)node).removeTreeNode(this, tab, movable);
+        else if (prev == null)
+            //如果删除的是桶中的节点   hash表指针直接跳过他就行
+            tab[index] = node.next;
+        else    //链表的话 也直接跳过就行
+            prev.next = node.next;
+        ++modCount;
+        --size;
+        afterNodeRemoval(node);
+        if (movable && shrinkOnRemove && size <= (threshold >>> 2) &&
+                tab.length > DEFAULT_INITIAL_CAPACITY)
+            shrink();
+        return node;
+    }
     //=========================删除==========================
 
     //=========================查找==========================
     public V get(Object key) {
         Node<K,V> e;
-        return (e = getNode(hash(key), key)) == null ? null : e.value;
+        return (e = getNode(hashOf(key), key)) == null ? null : e.value;
     }
     final Node<K,V> getNode(int hash, Object key) {
         Node<K,V>[] tab; Node<K,V> first, e; int n; K k;
+        if (stats != null)
+            //开启了统计走另外一个方法，不影响这里的热点代码
+            return getNodeRecorded(stats, hash, key);
+        if (oldTable != null)
+            helpTransfer(hash);
         if ((tab = table) != null && (n = tab.length) > 0 &&
                 (first = tab[(n - 1) & hash]) != null) {
             //如果hash表不是空，并且当前桶位置有节点
             if (first.hash == hash && // always check first node
-                    ((k = first.key) == key || (key != null && key.equals(k))))
+                    ((k = first.key) == key || (key != null && (equality == null ?
+                            key.equals(k) : equality.keyEquals(key, k)))))
                 //如果key的hash相等，并且 key的地址或者值相等  就返回这个节点(所以可以用null做key)
                 return first;
             if ((e = first.next) != null) {
                 if (first instanceof TreeNode)
                     //如果是红黑树，则直接调用红黑树的查询方法
-                    return ((TreeNode<K,V>)first).getTreeNode(hash, key);
+                    return ((TreeNode<K,V>)first).getTreeNode(this, hash, key);
                 do {
                     /**
                      * 如果是链表
@@ -397,21 +1795,611 @@ public class MyHashMap<K,V> {
                      * 查一样的
                      */
                     if (e.hash == hash &&
-                            ((k = e.key) == key || (key != null && key.equals(k))))
+                            ((k = e.key) == key || (key != null && (equality == null ?
+                                    key.equals(k) : equality.keyEquals(key, k)))))
                         return e;
                 } while ((e = e.next) != null);
             }
         }
         return null;
     }
+    /**
+     * 与getNode()相同，多记录遍历了几个节点
+     * @param st
+     * @param hash
+     * @param key
+     * @return
+     */
+    private Node<K,V> getNodeRecorded(MyHashMapStats st, int hash, Object key) {
+        Node<K,V>[] tab; Node<K,V> first, e; int n; K k;
+        if (oldTable != null)
+            helpTransfer(hash);
+        if ((tab = table) == null || (n = tab.length) == 0 ||
+                (first = tab[(n - 1) & hash]) == null) {
+            st.recordGet(0);
+            return null;
+        }
+        if (first instanceof TreeNode) {
+            st.recordTreeGet();
+            return ((TreeNode<K,V>)first).getTreeNode(this, hash, key);
+        }
+        int probes = 0;
+        for (e = first; e != null; e = e.next) {
+            ++probes;
+            if (e.hash == hash &&
+                    ((k = e.key) == key || (key != null && (equality == null ?
+                            key.equals(k) : equality.keyEquals(key, k)))))
+                break;
+        }
+        st.recordGet(probes);
+        return e;
+    }
+    public V getOrDefault(Object key, V defaultValue) {
+        Node<K,V> e;
+        return (e = getNode(hashOf(key), key)) == null ? defaultValue : e.value;
+    }
     public boolean containsKey(Object key) {
-        return getNode(hash(key), key) != null;
+        return getNode(hashOf(key), key) != null;
+    }
+    /**
+     * 和get()一样，不再调用key.hashCode()
+     * @param key
+     * @return
+     */
+    public V getHashed(HashedKey<?> key) {
+        Node<K,V> e;
+        return (e = getNode(cachedHashOf(key), key.key)) == null ? null : e.value;
+    }
+    public boolean containsHashedKey(HashedKey<?> key) {
+        return getNode(cachedHashOf(key), key.key) != null;
+    }
+
+    /**
+     * 批量查找，results[i]是keys[i]对应的value(没有是null)
+     * 逐个get()时，每个key都要等上一个key的桶和节点从内存里读出来
+     * 这里分两轮做：先算出所有key的hash并读出桶头，再依次比较key
+     * 同一轮里的内存读取互不依赖，CPU可以同时发出多个读取
+     * (试过按桶下标排序后再读桶头，一批1000个key排序的开销比省下的还多，所以没有排序)
+     * 临时数组放在batch里，同一个batch可以反复使用，不会每次调用都分配
+     * 命中的key按keys的顺序回调afterNodeAccess()，访问顺序的LinkedMyHashMap和逐个get()的结果一样
+     * @param keys
+     * @param n         查找keys的前n个
+     * @param results   至少n个
+     * @param batch     临时数组，不能同时给多个线程使用
+     */
+    public void getAll(Object[] keys, int n, Object[] results, BatchLookup batch) {
+        if (n > keys.length || n > results.length)
+            throw new ArrayIndexOutOfBoundsException(n);
+        if (stats != null) {
+            //开启了统计，逐个查找才能记录遍历的节点数量
+            for (int i = 0; i < n; ++i)
+                results[i] = get(keys[i]);
+            return;
+        }
+        if (probeAll(keys, n, batch) == null) {
+            //map还是空的，batch.found可能比n短，不能用
+            for (int i = 0; i < n; ++i)
+                results[i] = null;
+            return;
+        }
+        Node<?,?>[] found = batch.found;
+        for (int i = 0; i < n; ++i) {
+            @SuppressWarnings("unchecked")
+            Node<K,V> e = (Node<K,V>)found[i];
+            if (e == null)
+                results[i] = null;
+            else {
+                results[i] = e.value;
+                //和get()命中一样，LinkedMyHashMap按访问顺序时移到链表尾
+                afterNodeAccess(e);
+            }
+            //不要让batch留着节点的引用
+            found[i] = null;
+        }
+    }
+
+    /**
+     * 批量判断key是否都存在，分轮查找的方式和getAll()一样
+     * @param keys
+     * @param n
+     * @param batch
+     * @return
+     */
+    public boolean containsAll(Object[] keys, int n, BatchLookup batch) {
+        if (n > keys.length)
+            throw new ArrayIndexOutOfBoundsException(n);
+        if (stats != null) {
+            for (int i = 0; i < n; ++i) {
+                if (!containsKey(keys[i]))
+                    return false;
+            }
+            return true;
+        }
+        if (n == 0)
+            return true;
+        Node<K,V>[] tab = probeAll(keys, n, batch);
+        if (tab == null)
+            return false;
+        Node<?,?>[] found = batch.found;
+        boolean all = true;
+        for (int i = 0; i < n; ++i) {
+            if (found[i] == null)
+                all = false;
+            found[i] = null;
+        }
+        return all;
+    }
+
+    /**
+     * 批量查找的主体，找到的节点放在batch.found[i]
+     * @return  查找用的hash表，null表示map还是空的(batch.found没有填)
+     */
+    final Node<K,V>[] probeAll(Object[] keys, int n, BatchLookup batch) {
+        Node<K,V>[] tab; int cap;
+        if ((tab = table) == null || (cap = tab.length) == 0)
+            return null;
+        batch.ensureCapacity(n);
+        int[] hashes = batch.hashes;
+        Node<?,?>[] found = batch.found;
+        int mask = cap - 1;
+        //第一轮：算hash，读桶头
+        for (int i = 0; i < n; ++i) {
+            int h = hashOf(keys[i]);
+            if (oldTable != null)
+                //和getNode()一样只迁移这个key的旧桶和几个顺序的桶，不一次迁移完整个旧表
+                helpTransfer(h);
+            hashes[i] = h;
+            found[i] = tab[h & mask];
+        }
+        //第二轮：比较key，桶头不是要找的再沿着链表(或者红黑树)找
+        for (int i = 0; i < n; ++i) {
+            int h = hashes[i];
+            @SuppressWarnings("unchecked")
+            Node<K,V> first = (Node<K,V>)found[i], e = null;
+            Object key = keys[i]; K k;
+            if (first != null) {
+                if (first.hash == h &&
+                        ((k = first.key) == key || (key != null && (equality == null ?
+                                key.equals(k) : equality.keyEquals(key, k)))))
+                    e = first;
+                else if ((e = first.next) != null) {
+                    if (first instanceof TreeNode)
+                        e = ((TreeNode<K,V>)first).getTreeNode(this, h, key);
+                    else {
+                        do {
+                            if (e.hash == h &&
+                                    ((k = e.key) == key || (key != null && (equality == null ?
+                                            key.equals(k) : equality.keyEquals(key, k)))))
+                                break;
+                        } while ((e = e.next) != null);
+                    }
+                }
+            }
+            found[i] = e;
+        }
+        return tab;
+    }
+
+    /**
+     * getAll()/containsAll()的临时数组
+     * 按需要的大小增长，之后一直复用
+     */
+    public static final class BatchLookup {
+        int[] hashes = new int[0];
+        Node<?,?>[] found = new Node<?,?>[0];
+
+        public BatchLookup() {
+        }
+
+        /**
+         * @param expectedBatchSize 预计一批的key数量
+         */
+        public BatchLookup(int expectedBatchSize) {
+            ensureCapacity(expectedBatchSize);
+        }
+
+        void ensureCapacity(int n) {
+            if (n > hashes.length) {
+                hashes = new int[n];
+                found = new Node<?,?>[n];
+            }
+        }
     }
     public int size() {
         return size;
     }
     //=========================查找==========================
 
+    //=========================视图==========================
+    /**
+     * 节点的Set视图
+     * 迭代器按hash表下标顺序遍历，红黑树桶沿着next遍历
+     * 通过视图删除节点会直接删除map中的节点
+     * @return
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        Set<Map.Entry<K,V>> es;
+        return (es = entrySet) == null ? (entrySet = new EntrySet()) : es;
+    }
+    public Set<K> keySet() {
+        Set<K> ks;
+        return (ks = keySet) == null ? (keySet = new KeySet()) : ks;
+    }
+    public Collection<V> values() {
+        Collection<V> vs;
+        return (vs = values) == null ? (values = new Values()) : vs;
+    }
+
+    /**
+     * 开始遍历之前，把渐进式扩容没迁移完的桶迁移掉，只需要遍历table
+     */
+    final void prepareIteration() {
+        if (oldTable != null)
+            finishTransfer();
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public final int size()                 { return size; }
+        public final Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator();
+        }
+        public final boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+            Object key = e.getKey();
+            Node<K,V> candidate = getNode(hashOf(key), key);
+            return candidate != null && candidate.equals(e);
+        }
+        public final boolean remove(Object o) {
+            if (o instanceof Map.Entry) {
+                Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+                Object key = e.getKey();
+                Object value = e.getValue();
+                Node<K,V> p;
+                if ((p = removeNode(hashOf(key), key, value, true, true)) == null)
+                    return false;
+                //e是迭代时拿到的节点本身，调用方还拿着，不能复用
+                if (p != e)
+                    recycle(p);
+                return true;
+            }
+            return false;
+        }
+        public final Spliterator<Map.Entry<K,V>> spliterator() {
+            prepareIteration();
+            return new EntrySpliterator<>(MyHashMap.this, 0, -1, 0, 0);
+        }
+    }
+
+    final class KeySet extends AbstractSet<K> {
+        public final int size()                 { return size; }
+        public final Iterator<K> iterator()     { return new KeyIterator(); }
+        public final boolean contains(Object o) { return containsKey(o); }
+        public final boolean remove(Object key) {
+            Node<K,V> e;
+            if ((e = removeNode(hashOf(key), key, null, false, true)) == null)
+                return false;
+            recycle(e);
+            return true;
+        }
+        public final Spliterator<K> spliterator() {
+            prepareIteration();
+            return new KeySpliterator<>(MyHashMap.this, 0, -1, 0, 0);
+        }
+    }
+
+    /**
+     * remove()用AbstractCollection的实现，通过迭代器删除，删掉的节点不放回节点池
+     */
+    final class Values extends AbstractCollection<V> {
+        public final int size()                 { return size; }
+        public final Iterator<V> iterator()     { return new ValueIterator(); }
+        public final Spliterator<V> spliterator() {
+            prepareIteration();
+            return new ValueSpliterator<>(MyHashMap.this, 0, -1, 0, 0);
+        }
+    }
+
+    /**
+     * 按hash表下标顺序遍历所有节点
+     * 创建以后如果map有结构修改(不是通过这个迭代器的remove)，next()抛出ConcurrentModificationException
+     */
+    abstract class HashIterator {
+        Node<K,V> next;        // next entry to return
+        Node<K,V> current;     // current entry
+        int expectedModCount;  // for fast-fail
+        int index;             // current slot
+
+        HashIterator() {
+            prepareIteration();
+            expectedModCount = modCount;
+            Node<K,V>[] t = table;
+            current = next = null;
+            index = 0;
+            if (t != null && size > 0) { // advance to first entry
+                do {} while (index < t.length && (next = t[index++]) == null);
+            }
+        }
+
+        public final boolean hasNext() {
+            return next != null;
+        }
+
+        final Node<K,V> nextNode() {
+            Node<K,V>[] t;
+            Node<K,V> e = next;
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (e == null)
+                throw new NoSuchElementException();
+            if ((next = (current = e).next) == null && (t = table) != null) {
+                do {} while (index < t.length && (next = t[index++]) == null);
+            }
+            return e;
+        }
+
+        public final void remove() {
+            Node<K,V> p = current;
+            if (p == null)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            current = null;
+            //movable为false，删除红黑树节点时不移动root，不打乱还没遍历的next顺序
+            removeNode(p.hash, p.key, null, false, false);
+            expectedModCount = modCount;
+        }
+    }
+
+    final class KeyIterator extends HashIterator
+            implements Iterator<K> {
+        public final K next() { return nextNode().key; }
+    }
+
+    final class ValueIterator extends HashIterator
+            implements Iterator<V> {
+        public final V next() { return nextNode().value; }
+    }
+
+    final class EntryIterator extends HashIterator
+            implements Iterator<Map.Entry<K,V>> {
+        public final Map.Entry<K,V> next() { return nextNode(); }
+    }
+
+    /**
+     * 按hash表下标范围拆分的Spliterator
+     * 拆分时需要知道每一半的准确节点数量(SIZED|SUBSIZED)
+     * 第一次拆分时数一遍每个桶的节点数，算出前缀和counts，之后拆分只要相减
+     * 不拆分(顺序流)就不会去数
+     */
+    static class HashSpliterator<K,V> {
+        final MyHashMap<K,V> map;
+        Node<K,V>[] tab;            // table at binding time
+        Node<K,V> current;          // current node
+        int index;                  // current index, modified on advance/split
+        int fence;                  // one past last index, -1 until first use
+        int est;                    // exact size of [index, fence)
+        int expectedModCount;       // for comodification checks
+        int[] counts;               // counts[i] = nodes in tab[0, i), shared by splits
+
+        HashSpliterator(MyHashMap<K,V> m, int origin, int fence, int est,
+                        int expectedModCount) {
+            this.map = m;
+            this.index = origin;
+            this.fence = fence;
+            this.est = est;
+            this.expectedModCount = expectedModCount;
+        }
+
+        final int getFence() { // initialize fence and size on first use
+            int hi;
+            if ((hi = fence) < 0) {
+                MyHashMap<K,V> m = map;
+                est = m.size;
+                expectedModCount = m.modCount;
+                tab = m.table;
+                hi = fence = (tab == null) ? 0 : tab.length;
+            }
+            return hi;
+        }
+
+        public final long estimateSize() {
+            getFence(); // force init
+            return (long) est;
+        }
+
+        /**
+         * 拆出[index, mid)交给新的Spliterator，自己保留[mid, fence)
+         * @return  新Spliterator的下标范围和准确大小，不能拆返回null
+         */
+        final int[] splitRange() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            if (lo >= mid || current != null)
+                return null;
+            int[] c;
+            if ((c = counts) == null)
+                counts = c = countNodes(tab);
+            int loSize = c[mid] - c[lo];
+            index = mid;
+            est = c[hi] - c[mid];
+            return new int[] { lo, mid, loSize };
+        }
+
+        /**
+         * 数出每个桶的节点数，返回前缀和
+         */
+        static <K,V> int[] countNodes(Node<K,V>[] tab) {
+            int n = tab.length;
+            int[] c = new int[n + 1];
+            int sum = 0;
+            for (int i = 0; i < n; ++i) {
+                for (Node<K,V> e = tab[i]; e != null; e = e.next)
+                    ++sum;
+                c[i + 1] = sum;
+            }
+            return c;
+        }
+
+        /**
+         * 拆出来的Spliterator和自己共用同一个table和counts
+         */
+        final <S extends HashSpliterator<K,V>> S shareWith(S s) {
+            s.tab = tab;
+            s.counts = counts;
+            return s;
+        }
+
+        /**
+         * 取下一个节点，没有返回null
+         */
+        final Node<K,V> advance() {
+            int hi = getFence();
+            Node<K,V>[] t = tab;
+            while (current != null || index < hi) {
+                if (current == null)
+                    current = t[index++];
+                else {
+                    Node<K,V> e = current;
+                    current = current.next;
+                    if (map.modCount != expectedModCount)
+                        throw new ConcurrentModificationException();
+                    return e;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 遍历剩下的所有节点，最后检查一次有没有被修改
+         */
+        final void forEachNode(Consumer<? super Node<K,V>> action) {
+            int hi = getFence(), i = index;
+            Node<K,V>[] t = tab;
+            Node<K,V> p = current;
+            index = hi;
+            current = null;
+            if (t != null) {
+                while (p != null || i < hi) {
+                    if (p == null)
+                        p = t[i++];
+                    else {
+                        action.accept(p);
+                        p = p.next;
+                    }
+                }
+                if (map.modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    static final class KeySpliterator<K,V>
+            extends HashSpliterator<K,V>
+            implements Spliterator<K> {
+        KeySpliterator(MyHashMap<K,V> m, int origin, int fence, int est,
+                       int expectedModCount) {
+            super(m, origin, fence, est, expectedModCount);
+        }
+
+        public KeySpliterator<K,V> trySplit() {
+            int[] r;
+            return (r = splitRange()) == null ? null :
+                    shareWith(new KeySpliterator<>(map, r[0], r[1], r[2], expectedModCount));
+        }
+
+        public void forEachRemaining(Consumer<? super K> action) {
+            if (action == null)
+                throw new NullPointerException();
+            forEachNode(e -> action.accept(e.key));
+        }
+
+        public boolean tryAdvance(Consumer<? super K> action) {
+            if (action == null)
+                throw new NullPointerException();
+            Node<K,V> e;
+            if ((e = advance()) == null)
+                return false;
+            action.accept(e.key);
+            return true;
+        }
+
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.DISTINCT;
+        }
+    }
+
+    static final class ValueSpliterator<K,V>
+            extends HashSpliterator<K,V>
+            implements Spliterator<V> {
+        ValueSpliterator(MyHashMap<K,V> m, int origin, int fence, int est,
+                         int expectedModCount) {
+            super(m, origin, fence, est, expectedModCount);
+        }
+
+        public ValueSpliterator<K,V> trySplit() {
+            int[] r;
+            return (r = splitRange()) == null ? null :
+                    shareWith(new ValueSpliterator<>(map, r[0], r[1], r[2], expectedModCount));
+        }
+
+        public void forEachRemaining(Consumer<? super V> action) {
+            if (action == null)
+                throw new NullPointerException();
+            forEachNode(e -> action.accept(e.value));
+        }
+
+        public boolean tryAdvance(Consumer<? super V> action) {
+            if (action == null)
+                throw new NullPointerException();
+            Node<K,V> e;
+            if ((e = advance()) == null)
+                return false;
+            action.accept(e.value);
+            return true;
+        }
+
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+
+    static final class EntrySpliterator<K,V>
+            extends HashSpliterator<K,V>
+            implements Spliterator<Map.Entry<K,V>> {
+        EntrySpliterator(MyHashMap<K,V> m, int origin, int fence, int est,
+                         int expectedModCount) {
+            super(m, origin, fence, est, expectedModCount);
+        }
+
+        public EntrySpliterator<K,V> trySplit() {
+            int[] r;
+            return (r = splitRange()) == null ? null :
+                    shareWith(new EntrySpliterator<>(map, r[0], r[1], r[2], expectedModCount));
+        }
+
+        public void forEachRemaining(Consumer<? super Map.Entry<K,V>> action) {
+            if (action == null)
+                throw new NullPointerException();
+            forEachNode(action);
+        }
+
+        public boolean tryAdvance(Consumer<? super Map.Entry<K,V>> action) {
+            if (action == null)
+                throw new NullPointerException();
+            Node<K,V> e;
+            if ((e = advance()) == null)
+                return false;
+            action.accept(e);
+            return true;
+        }
+
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.DISTINCT;
+        }
+    }
+    //=========================视图==========================
+
     //=========================一些常用方法封装==========================
     /**
      * 由于桶长一般不会太长(@DEFAULT_INITIAL_CAPACITY默认16 =》BIN 10000)
@@ -422,8 +2410,42 @@ public class MyHashMap<K,V> {
      * @return
      */
     static final int hash(Object key) {
-        int h;
-        return (key == null) ? 0 : (h = key.hashCode()) ^ (h >>> 16);
+        return (key == null) ? 0 : spread(key.hashCode());
+    }
+    /**
+     * 按这个map的hash策略计算hash
+     * 没有设置策略时和hash()一样
+     * @param key
+     * @return
+     */
+    final int hashOf(Object key) {
+        HashStrategy s;
+        return (key == null) ? 0 :
+                ((s = hashStrategy) == null ? spread(key.hashCode()) : s.hash(key));
+    }
+    /**
+     * 用HashedKey缓存的hashCode计算hash，结果和hashOf(key.key)一样
+     * 自定义的hash策略不一定用hashCode，只能重新算
+     * @param key
+     * @return
+     */
+    final int cachedHashOf(HashedKey<?> key) {
+        HashStrategy s;
+        if (key.key == null)
+            return 0;
+        if ((s = hashStrategy) == null)
+            return spread(key.hash);
+        return (s instanceof HashStrategy.Mixer) ?
+                ((HashStrategy.Mixer)s).mix(key.hash) : s.hash(key.key);
+    }
+    /**
+     * hash()中的扰动部分，高16位异或到低16位
+     * 不是Object做key的map(比如byte[]做key)也用这个扰动
+     * @param h hashCode
+     * @return
+     */
+    static int spread(int h) {
+        return h ^ (h >>> 16);
     }
     /**
      * 返回大于且最接近当前值的2^n数
@@ -474,18 +2496,114 @@ public class MyHashMap<K,V> {
         return (x == null || x.getClass() != kc ? 0 :
                 ((Comparable)k).compareTo(x));
     }
+    /**
+     * 带缓存的comparableClassFor()
+     * @param x
+     * @return
+     */
+    final Class<?> comparableClassOf(Object x) {
+        Class<?> c;
+        if (x == null)
+            return null;
+        if ((c = x.getClass()) == comparableKeyClass)
+            return c;
+        if (c == nonComparableKeyClass)
+            return null;
+        if (comparableClassFor(x) != null)
+            return comparableKeyClass = c;
+        nonComparableKeyClass = c;
+        return null;
+    }
+    /**
+     * 红黑树里hash相同的两个key比较大小
+     * 有比较器用比较器，没有用Comparable
+     * @param k     要查找的key
+     * @param x     当前的key
+     * @return  0表示比较不出大小
+     */
+    @SuppressWarnings("unchecked")
+    final int compareTreeKeys(Object k, Object x) {
+        Comparator<? super K> cmp; Class<?> kc;
+        if (k == null || x == null)
+            return 0;
+        if ((cmp = treeBinComparator) != null)
+            return cmp.compare((K)k, (K)x);
+        return (kc = comparableClassOf(k)) == null ? 0 : compareComparables(kc, k, x);
+    }
     Node<K,V> replacementNode(Node<K,V> p, Node<K,V> next) {
-        return new Node<>(p.hash, p.key, p.value, next);
+        return newNode(p.hash, p.key, p.value, next);
     }
+    /**
+     * 节点池里有空闲的树节点先用池里的
+     */
     TreeNode<K,V> newTreeNode(int hash, K key, V value, Node<K,V> next) {
-        return new TreeNode<>(hash, key, value, next);
+        TreeNode<K,V> p;
+        if ((p = freeTreeNodes) == null || poolSuspended)
+            return new TreeNode<>(hash, key, value, next);
+        freeTreeNodes = (TreeNode<K,V>)p.next;
+        --freeTreeNodeCount;
+        p.hash = hash;
+        p.key = key;
+        p.value = value;
+        p.next = next;
+        return p;
     }
+    /**
+     * 节点池里有空闲的节点先用池里的
+     */
     Node<K,V> newNode(int hash, K key, V value, Node<K,V> next) {
-        return new Node<>(hash, key, value, next);
+        Node<K,V> p;
+        if ((p = freeNodes) == null || poolSuspended)
+            return new Node<>(hash, key, value, next);
+        freeNodes = p.next;
+        --freeNodeCount;
+        p.hash = hash;
+        p.key = key;
+        p.value = value;
+        p.next = next;
+        return p;
     }
     TreeNode<K,V> replacementTreeNode(Node<K,V> p, Node<K,V> next) {
-        return new TreeNode<>(p.hash, p.key, p.value, next);
+        return newTreeNode(p.hash, p.key, p.value, next);
     }
+
+    /**
+     * 不再使用的节点放回节点池
+     * 池满了、没开启、或者正在并行扩容时直接丢掉
+     * @param p 已经从map里摘下来的节点，可以是null
+     */
+    final void recycle(Node<K,V> p) {
+        if (p == null || nodePoolCapacity == 0 || poolSuspended)
+            return;
+        p.key = null;
+        p.value = null;
+        if (p instanceof TreeNode) {
+            if (freeTreeNodeCount < nodePoolCapacity) {
+                TreeNode<K,V> t = (TreeNode<K,V>)p;
+                t.parent = t.left = t.right = t.prev = null;
+                t.before = t.after = null;
+                t.red = false;
+                t.next = freeTreeNodes;
+                freeTreeNodes = t;
+                ++freeTreeNodeCount;
+            }
+        }
+        else if (freeNodeCount < nodePoolCapacity) {
+            p.next = freeNodes;
+            freeNodes = p;
+            ++freeNodeCount;
+        }
+    }
+
+    /**
+     * 留给LinkedMyHashMap的回调，MyHashMap里什么都不做
+     * afterNodeAccess      命中已有的key(put覆盖/访问顺序下的get)
+     * afterNodeInsertion   插入了新节点，evict为true时可以淘汰最老的节点
+     * afterNodeRemoval     删除了节点
+     */
+    void afterNodeAccess(Node<K,V> p) { }
+    void afterNodeInsertion(boolean evict) { }
+    void afterNodeRemoval(Node<K,V> p) { }
     //=========================一些常用方法封装==========================
 
     //=========================使用到的节点结构==========================
@@ -495,8 +2613,12 @@ public class MyHashMap<K,V> {
      * @param <V>
      */
     static class Node<K,V> implements Map.Entry<K,V> {
-        final int hash;
-        final K key;
+        /**
+         * 节点池复用节点时要重新设置，所以不是final
+         * ConcurrentMyHashMap不加锁读链表，链表桶用的是它自己的Node(hash和key是final)
+         */
+        int hash;
+        K key;
         V value;
         Node<K,V> next;
 
@@ -536,10 +2658,11 @@ public class MyHashMap<K,V> {
     /**
      * HashMap中特有的树节点
      * 它在数节点结构上还支持双向链表
+     * 继承LinkedMyHashMap.Entry，这样红黑树桶里的节点也能挂在LinkedMyHashMap的双向链表上
      * @param <K>
      * @param <V>
      */
-    static final class TreeNode<K,V> extends Node<K,V> {
+    static final class TreeNode<K,V> extends LinkedMyHashMap.Entry<K,V> {
         TreeNode<K,V> parent;  // red-black tree links
         TreeNode<K,V> left;
         TreeNode<K,V> right;
@@ -598,12 +2721,12 @@ public class MyHashMap<K,V> {
 
         /**
          *
+         * @param map   比较key的大小(比较器/Comparable的缓存)
          * @param h
          * @param k
-         * @param kc    key的class 类型
          * @return
          */
-        final TreeNode<K,V> find(int h, Object k, Class<?> kc) {
+        final TreeNode<K,V> find(MyHashMap<K,V> map, int h, Object k) {
             TreeNode<K,V> p = this;
             do {
                 /**
@@ -623,7 +2746,7 @@ public class MyHashMap<K,V> {
                     return p;
                 /**
                  * 如果只有右子树或者左子树，那必定在那个树里
-                 * 如果有两个子树，则用key去比较(key需要实现Comparable接口)
+                 * 如果有两个子树，则用key去比较(比较器，或者key实现了Comparable接口)
                  * 如果key不能比较大小
                  * 最后只能先遍历有子树，如果没有，再去遍历左子树
                  */
@@ -631,11 +2754,9 @@ public class MyHashMap<K,V> {
                     p = pr;
                 else if (pr == null)
                     p = pl;
-                else if ((kc != null ||
-                        (kc = comparableClassFor(k)) != null) &&
-                        (dir = compareComparables(kc, k, pk)) != 0)
+                else if ((dir = map.compareTreeKeys(k, pk)) != 0)
                     p = (dir < 0) ? pl : pr;
-                else if ((q = pr.find(h, k, kc)) != null)
+                else if ((q = pr.find(map, h, k)) != null)
                     return q;
                 else
                     p = pl;
@@ -645,12 +2766,13 @@ public class MyHashMap<K,V> {
 
         /**
          *
+         * @param map
          * @param h 要查找的key的hash
          * @param k 要查找的key
          * @return
          */
-        final TreeNode<K,V> getTreeNode(int h, Object k) {
-            return ((parent != null) ? root() : this).find(h, k, null);
+        final TreeNode<K,V> getTreeNode(MyHashMap<K,V> map, int h, Object k) {
+            return ((parent != null) ? root() : this).find(map, h, k);
         }
 
         static int tieBreakOrder(Object a, Object b) {
@@ -665,9 +2787,10 @@ public class MyHashMap<K,V> {
 
         /**
          * 构建红黑树
+         * @param map
          * @param tab
          */
-        final void treeify(Node<K,V>[] tab) {
+        final void treeify(MyHashMap<K,V> map, Node<K,V>[] tab) {
             TreeNode<K,V> root = null;
             /**
              * 遍历链表
@@ -684,7 +2807,6 @@ public class MyHashMap<K,V> {
                 else {
                     K k = x.key;
                     int h = x.hash;
-                    Class<?> kc = null;
                     for (TreeNode<K,V> p = root;;) {
                         int dir, ph;
                         K pk = p.key;
@@ -692,9 +2814,7 @@ public class MyHashMap<K,V> {
                             dir = -1;
                         else if (ph < h)
                             dir = 1;
-                        else if ((kc == null &&
-                                (kc = comparableClassFor(k)) == null) ||
-                                (dir = compareComparables(kc, k, pk)) == 0)
+                        else if ((dir = map.compareTreeKeys(k, pk)) == 0)
                         /**
                          * 链表转红黑树
                          * 正常来说 应该不会执行到相等的情况 ？
@@ -725,12 +2845,16 @@ public class MyHashMap<K,V> {
          */
         final Node<K,V> untreeify(MyHashMap<K,V> map) {
             Node<K,V> hd = null, tl = null;
+            if (map.stats != null)
+                map.stats.recordUntreeify();
             /**
              * HashMap的红黑树也是双向链表
              * 把所有树节点遍历，然后变成单链表返回
              */
-            for (Node<K,V> q = this; q != null; q = q.next) {
+            for (Node<K,V> q = this, next; q != null; q = next) {
+                next = q.next;
                 Node<K,V> p = map.replacementNode(q, null);
+                map.recycle(q);
                 if (tl == null)
                     hd = p;
                 else
@@ -751,7 +2875,6 @@ public class MyHashMap<K,V> {
          */
         final TreeNode<K,V> putTreeVal(MyHashMap<K,V> map, Node<K,V>[] tab,
                                        int h, K k, V v) {
-            Class<?> kc = null;
             /**
              * 一颗树里
              * 有多个hash重复的可能
@@ -776,9 +2899,7 @@ public class MyHashMap<K,V> {
                     dir = 1;
                 else if ((pk = p.key) == k || (k != null && k.equals(pk)))
                     return p;
-                else if ((kc == null &&
-                        (kc = comparableClassFor(k)) == null) ||
-                        (dir = compareComparables(kc, k, pk)) == 0) {
+                else if ((dir = map.compareTreeKeys(k, pk)) == 0) {
                     /**
                      * 如果添加的节点hash值与已存在的有重复
                      * 则递归查询重复节点左右子树
@@ -788,9 +2909,9 @@ public class MyHashMap<K,V> {
                         TreeNode<K,V> q, ch;
                         searched = true;
                         if (((ch = p.left) != null &&
-                                (q = ch.find(h, k, kc)) != null) ||
+                                (q = ch.find(map, h, k)) != null) ||
                                 ((ch = p.right) != null &&
-                                        (q = ch.find(h, k, kc)) != null))
+                                        (q = ch.find(map, h, k)) != null))
                             return q;
                     }
                     dir = tieBreakOrder(k, pk);
@@ -935,6 +3056,9 @@ public class MyHashMap<K,V> {
          */
         final void split(MyHashMap<K,V> map, Node<K,V>[] tab, int index, int bit) {
             TreeNode<K,V> b = this;
+            MyHashMapStats st;
+            if ((st = map.stats) != null)
+                st.recordSplit();
             // Relink into lo and hi lists, preserving order
             TreeNode<K,V> loHead = null, loTail = null;
             TreeNode<K,V> hiHead = null, hiTail = null;
@@ -970,8 +3094,11 @@ public class MyHashMap<K,V> {
                     tab[index] = loHead.untreeify(map);
                 else {
                     tab[index] = loHead;
-                    if (hiHead != null) // (else is already treeified)
-                        loHead.treeify(tab);
+                    if (hiHead != null) { // (else is already treeified)
+                        loHead.treeify(map, tab);
+                        if (st != null)
+                            st.recordTreeify(lc, tab.length);
+                    }
                 }
             }
             if (hiHead != null) {
@@ -979,8 +3106,11 @@ public class MyHashMap<K,V> {
                     tab[index + bit] = hiHead.untreeify(map);
                 else {
                     tab[index + bit] = hiHead;
-                    if (loHead != null)
-                        hiHead.treeify(tab);
+                    if (loHead != null) {
+                        hiHead.treeify(map, tab);
+                        if (st != null)
+                            st.recordTreeify(hc, tab.length);
+                    }
                 }
             }
         }
@@ -0,0 +1,78 @@
+package com.lilingyan;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * MyHashMapStats发出的JFR事件
+ * 单独放一个类，只有MyHashMapStats.JFR为true时才会加载
+ * 在没有jdk.jfr的JDK(8u262以前)上，统计照常工作，只是不发事件
+ * @Author: lilingyan
+ * @Date 2026/10/17 19:00
+ */
+final class MyHashMapEvents {
+
+    private MyHashMapEvents() {
+    }
+
+    static void resize(MyHashMap<?,?> map, int oldCap, int newCap, long nanos,
+                       boolean incremental, boolean parallel) {
+        ResizeEvent event = new ResizeEvent();
+        if (event.shouldCommit()) {
+            event.mapId = System.identityHashCode(map);
+            event.oldCapacity = oldCap;
+            event.newCapacity = newCap;
+            event.size = map.size;
+            event.incremental = incremental;
+            event.parallel = parallel;
+            event.resizeNanos = nanos;
+            event.commit();
+        }
+    }
+
+    static void treeify(MyHashMap<?,?> map, int binSize, int capacity) {
+        TreeifyEvent event = new TreeifyEvent();
+        if (event.shouldCommit()) {
+            event.mapId = System.identityHashCode(map);
+            event.binSize = binSize;
+            event.capacity = capacity;
+            event.commit();
+        }
+    }
+
+    @Name("com.lilingyan.MyHashMapResize")
+    @Label("MyHashMap Resize")
+    @Category("MyHashMap")
+    static final class ResizeEvent extends Event {
+        @Label("Map Id")
+        int mapId;
+        @Label("Old Capacity")
+        int oldCapacity;
+        @Label("New Capacity")
+        int newCapacity;
+        @Label("Size")
+        int size;
+        @Label("Incremental")
+        boolean incremental;
+        @Label("Parallel")
+        boolean parallel;
+        @Label("Resize Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long resizeNanos;
+    }
+
+    @Name("com.lilingyan.MyHashMapTreeify")
+    @Label("MyHashMap Treeify")
+    @Category("MyHashMap")
+    static final class TreeifyEvent extends Event {
+        @Label("Map Id")
+        int mapId;
+        @Label("Bin Size")
+        int binSize;
+        @Label("Capacity")
+        int capacity;
+    }
+}
@@ -0,0 +1,326 @@
+package com.lilingyan;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MyHashMap的二进制快照
+ * 写入时按桶的顺序把hash表原样写下来，加载时直接按最终容量分配hash表，把节点挂回原来的桶
+ * 不走put()/resize()，链表桶也不用重新比较key，只有红黑树桶要重新构建一次红黑树(TreeNode.treeify)
+ *
+ * 文件结构(大端)
+ *      | magic(4) | version(4) | loadFactor(4) | capacity(4) | threshold(4) | size(4) | bins(4) |
+ * 后面是bins个非空桶，每个桶
+ *      | index(4) | count(4) | tree(1) | length(4) | count个节点(共length字节) |
+ * 每个节点按next顺序
+ *      | flags(1) | hash(4) | key | value |
+ * flags表示key/value是不是null，不是null的key/value由Codec负责编码
+ *
+ * 加载时用FileChannel.map()按窗口映射文件(一个窗口最大1GB)，一个桶不会跨窗口，20GB级的文件也可以加载
+ * hash是按MyHashMap.hash()算的，设置了HashStrategy的map不能写快照(比如随机种子，重启以后就变了)
+ * 加载时每个key都会重新算一次hash和文件里的比较：hashCode每次运行都不一样的key(枚举、没有重写hashCode()的对象、Class等)
+ * 和文件里的hash对不上，这些节点不按文件里的桶放，等其他节点加载完以后重新put，不会因为放错桶而查不到
+ * (position/limit都转成Buffer调用，JDK9以上编译出来的class在JDK8上也能运行)
+ * @Author: lilingyan
+ * @Date 2026/10/17 21:30
+ */
+public final class MyHashMapSnapshot {
+
+    static final int MAGIC = 0x4D59484D; // "MYHM"
+    static final int VERSION = 1;
+    static final int HEADER = 28;
+    static final int BIN_HEADER = 13;
+
+    static final byte NULL_KEY = 1;
+    static final byte NULL_VALUE = 2;
+
+    /**
+     * 写文件的缓冲区大小
+     */
+    static final int WRITE_BUFFER = 1 << 20;
+
+    /**
+     * 加载时一个映射窗口的大小
+     */
+    static final int MAP_WINDOW = 1 << 30;
+
+    private MyHashMapSnapshot() {
+    }
+
+    /**
+     * key/value的编码
+     * 不会传入null
+     * @param <T>
+     */
+    public interface Codec<T> {
+        /**
+         * @return  编码后的字节数
+         */
+        int sizeOf(T value);
+        void write(T value, ByteBuffer buf);
+        T read(ByteBuffer buf);
+    }
+
+    public static final Codec<Integer> INT = new Codec<Integer>() {
+        public int sizeOf(Integer value)                { return 4; }
+        public void write(Integer value, ByteBuffer buf) { buf.putInt(value); }
+        public Integer read(ByteBuffer buf)             { return buf.getInt(); }
+    };
+
+    public static final Codec<Long> LONG = new Codec<Long>() {
+        public int sizeOf(Long value)                   { return 8; }
+        public void write(Long value, ByteBuffer buf)   { buf.putLong(value); }
+        public Long read(ByteBuffer buf)                { return buf.getLong(); }
+    };
+
+    /**
+     * | length(4) | UTF-16字符 |
+     * 长度按字符直接算出来，不用先编码一遍
+     */
+    public static final Codec<String> STRING = new Codec<String>() {
+        public int sizeOf(String value) {
+            return 4 + (value.length() << 1);
+        }
+        public void write(String value, ByteBuffer buf) {
+            int n = value.length();
+            buf.putInt(n);
+            for (int i = 0; i < n; ++i)
+                buf.putChar(value.charAt(i));
+        }
+        public String read(ByteBuffer buf) {
+            char[] cs = new char[buf.getInt()];
+            for (int i = 0; i < cs.length; ++i)
+                cs[i] = buf.getChar();
+            return new String(cs);
+        }
+    };
+
+    public static final Codec<byte[]> BYTES = new Codec<byte[]>() {
+        public int sizeOf(byte[] value)                 { return 4 + value.length; }
+        public void write(byte[] value, ByteBuffer buf) { buf.putInt(value.length).put(value); }
+        public byte[] read(ByteBuffer buf) {
+            byte[] bs = new byte[buf.getInt()];
+            buf.get(bs);
+            return bs;
+        }
+    };
+
+    //=========================写入==========================
+    /**
+     * 把map写成快照，文件已存在则覆盖
+     * @param map
+     * @param file
+     * @param keyCodec
+     * @param valueCodec
+     * @throws IOException
+     */
+    public static <K,V> void write(MyHashMap<K,V> map, Path file,
+                                   Codec<? super K> keyCodec, Codec<? super V> valueCodec)
+            throws IOException {
+        if (map.hashStrategy != null)
+            throw new IllegalArgumentException("Cannot snapshot a map with a custom hash strategy");
+        //渐进式扩容没迁移完的桶先迁移掉
+        map.prepareIteration();
+        MyHashMap.Node<K,V>[] tab = map.table;
+        int bins = 0;
+        if (tab != null) {
+            for (MyHashMap.Node<K,V> e : tab) {
+                if (e != null)
+                    ++bins;
+            }
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(WRITE_BUFFER);
+            buf.putInt(MAGIC).putInt(VERSION).putFloat(map.loadFactor)
+                    .putInt(tab == null ? 0 : tab.length)
+                    .putInt(map.threshold).putInt(map.size).putInt(bins);
+            if (tab != null) {
+                for (int i = 0; i < tab.length; ++i) {
+                    MyHashMap.Node<K,V> first;
+                    if ((first = tab[i]) == null)
+                        continue;
+                    int count = 0;
+                    long length = 0L;
+                    for (MyHashMap.Node<K,V> e = first; e != null; e = e.next) {
+                        ++count;
+                        length += 5;
+                        if (e.key != null)
+                            length += keyCodec.sizeOf(e.key);
+                        if (e.value != null)
+                            length += valueCodec.sizeOf(e.value);
+                    }
+                    if (length > MAP_WINDOW - BIN_HEADER)
+                        throw new IllegalArgumentException("Bin " + i + " is too large: " + length);
+                    int need = BIN_HEADER + (int)length;
+                    if (buf.remaining() < need) {
+                        flush(ch, buf);
+                        if (buf.capacity() < need)
+                            buf = ByteBuffer.allocateDirect(need);
+                    }
+                    buf.putInt(i).putInt(count)
+                            .put((byte)(first instanceof MyHashMap.TreeNode ? 1 : 0))
+                            .putInt((int)length);
+                    for (MyHashMap.Node<K,V> e = first; e != null; e = e.next) {
+                        K k = e.key; V v = e.value;
+                        buf.put((byte)((k == null ? NULL_KEY : 0) | (v == null ? NULL_VALUE : 0)));
+                        buf.putInt(e.hash);
+                        if (k != null)
+                            keyCodec.write(k, buf);
+                        if (v != null)
+                            valueCodec.write(v, buf);
+                    }
+                }
+            }
+            flush(ch, buf);
+        }
+    }
+
+    private static void flush(FileChannel ch, ByteBuffer buf) throws IOException {
+        ((Buffer)buf).flip();
+        while (buf.hasRemaining())
+            ch.write(buf);
+        ((Buffer)buf).clear();
+    }
+    //=========================写入==========================
+
+    //=========================加载==========================
+    /**
+     * 从快照加载
+     * hash表直接按快照里的容量分配，threshold也用快照里的
+     * @param file
+     * @param keyCodec
+     * @param valueCodec
+     * @return
+     * @throws IOException  文件不是快照或者已损坏
+     */
+    public static <K,V> MyHashMap<K,V> read(Path file, Codec<? extends K> keyCodec,
+                                            Codec<? extends V> valueCodec) throws IOException {
+        return read(file, keyCodec, valueCodec, MAP_WINDOW);
+    }
+
+    static <K,V> MyHashMap<K,V> read(Path file, Codec<? extends K> keyCodec,
+                                     Codec<? extends V> valueCodec, int window) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            Reader in = new Reader(ch, window);
+            ByteBuffer buf = in.require(HEADER);
+            if (buf.getInt() != MAGIC)
+                throw new IOException("Not a MyHashMap snapshot: " + file);
+            int version;
+            if ((version = buf.getInt()) != VERSION)
+                throw new IOException("Unsupported snapshot version: " + version);
+            float loadFactor = buf.getFloat();
+            int capacity = buf.getInt(), threshold = buf.getInt();
+            int size = buf.getInt(), bins = buf.getInt();
+            if (!(loadFactor > 0) || capacity < 0 || capacity > MyHashMap.MAXIMUM_CAPACITY ||
+                    (capacity & (capacity - 1)) != 0 || size < 0 || bins < 0 || bins > capacity)
+                throw new IOException("Corrupt snapshot header: " + file);
+            MyHashMap<K,V> map = new MyHashMap<>(capacity, loadFactor);
+            if (capacity == 0)
+                return map;
+            @SuppressWarnings({"rawtypes","unchecked"})
+            MyHashMap.Node<K,V>[] tab = (MyHashMap.Node<K,V>[])new MyHashMap.Node[capacity];
+            int mask = capacity - 1, total = 0;
+            //hash和这次运行算出来的不一样的节点，key和value交替存放
+            List<Object> misplaced = null;
+            for (int b = 0; b < bins; ++b) {
+                buf = in.require(BIN_HEADER);
+                int index = buf.getInt(), count = buf.getInt();
+                boolean tree = buf.get() != 0;
+                int length = buf.getInt();
+                if (index < 0 || index >= capacity || tab[index] != null || count <= 0 || length < 0)
+                    throw new IOException("Corrupt snapshot bin: " + index);
+                buf = in.require(length);
+                int end = buf.position() + length;
+                MyHashMap.Node<K,V> hd = null, tl = null;
+                for (int c = 0; c < count; ++c) {
+                    byte flags = buf.get();
+                    int hash = buf.getInt();
+                    if ((hash & mask) != index)
+                        throw new IOException("Corrupt snapshot: hash " + hash + " in bin " + index);
+                    K key = (flags & NULL_KEY) != 0 ? null : keyCodec.read(buf);
+                    V value = (flags & NULL_VALUE) != 0 ? null : valueCodec.read(buf);
+                    if (MyHashMap.hash(key) != hash) {
+                        if (misplaced == null)
+                            misplaced = new ArrayList<>();
+                        misplaced.add(key);
+                        misplaced.add(value);
+                        continue;
+                    }
+                    MyHashMap.Node<K,V> p;
+                    if (tree) {
+                        MyHashMap.TreeNode<K,V> t = map.newTreeNode(hash, key, value, null);
+                        t.prev = (MyHashMap.TreeNode<K,V>)tl;
+                        p = t;
+                    }
+                    else
+                        p = map.newNode(hash, key, value, null);
+                    if (tl == null)
+                        hd = p;
+                    else
+                        tl.next = p;
+                    tl = p;
+                }
+                if (buf.position() != end)
+                    throw new IOException("Corrupt snapshot bin: " + index);
+                tab[index] = hd;
+                if (tree && hd != null)
+                    //快照里的顺序就是原来的next顺序，重新平衡一次就行
+                    ((MyHashMap.TreeNode<K,V>)hd).treeify(map, tab);
+                total += count;
+            }
+            if (total != size)
+                throw new IOException("Corrupt snapshot: expected " + size + " entries, found " + total);
+            map.table = tab;
+            map.threshold = threshold;
+            if (misplaced == null)
+                map.size = size;
+            else {
+                map.size = size - (misplaced.size() >>> 1);
+                for (int i = 0; i < misplaced.size(); i += 2) {
+                    @SuppressWarnings("unchecked") K key = (K)misplaced.get(i);
+                    @SuppressWarnings("unchecked") V value = (V)misplaced.get(i + 1);
+                    map.putVal(MyHashMap.hash(key), key, value, false, true);
+                }
+            }
+            return map;
+        }
+    }
+
+    /**
+     * 按窗口映射文件
+     * require(n)保证当前窗口还有n个字节，不够就从当前位置重新映射一个窗口
+     */
+    static final class Reader {
+        final FileChannel ch;
+        final long fileSize;
+        final int window;
+        long base;
+        ByteBuffer buf;
+
+        Reader(FileChannel ch, int window) throws IOException {
+            this.ch = ch;
+            this.fileSize = ch.size();
+            this.window = window;
+        }
+
+        ByteBuffer require(int n) throws IOException {
+            ByteBuffer b;
+            if ((b = buf) != null && b.remaining() >= n)
+                return b;
+            long pos = (b == null) ? 0L : base + b.position();
+            if (pos + n > fileSize)
+                throw new IOException("Truncated snapshot");
+            long length = Math.max(n, Math.min(window, fileSize - pos));
+            base = pos;
+            return buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, length);
+        }
+    }
+    //=========================加载==========================
+}
@@ -0,0 +1,239 @@
+package com.lilingyan;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MyHashMap的运行统计
+ * 用MyHashMap.enableStats()开启，不开启时热点路径上只多一次字段是否为null的判断
+ * 计数用LongAdder，并行扩容时多个线程同时记录也没问题
+ * 扩容和转红黑树同时会发出JFR事件(只有JFR在录制并且开启了这两个事件才有开销)
+ * 事件在MyHashMapEvents里，没有jdk.jfr的JDK上不会加载它
+ * @Author: lilingyan
+ * @Date 2026/10/17 19:00
+ */
+public final class MyHashMapStats implements MyHashMapStatsMXBean {
+
+    /**
+     * 遍历节点数量直方图的桶数，最后一个桶是"9个及以上"
+     */
+    static final int PROBE_BUCKETS = 10;
+
+    /**
+     * 当前JDK有没有jdk.jfr
+     */
+    static final boolean JFR = jfrAvailable();
+
+    final MyHashMap<?,?> map;
+
+    final LongAdder[] getProbes = newAdders(PROBE_BUCKETS);
+    final LongAdder[] putProbes = newAdders(PROBE_BUCKETS);
+    final LongAdder treeBinGets = new LongAdder();
+    final LongAdder treeBinPuts = new LongAdder();
+
+    final LongAdder treeifyBins = new LongAdder();
+    final LongAdder treeifies = new LongAdder();
+    final LongAdder untreeifies = new LongAdder();
+    final LongAdder splits = new LongAdder();
+
+    final LongAdder resizes = new LongAdder();
+    final LongAdder parallelResizes = new LongAdder();
+    final LongAdder resizeNanos = new LongAdder();
+    final LongAccumulator resizeMaxNanos = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * 注册到MBeanServer时用的名字
+     */
+    ObjectName objectName;
+
+    MyHashMapStats(MyHashMap<?,?> map) {
+        this.map = map;
+    }
+
+    //=========================记录==========================
+    final void recordGet(int probes) {
+        getProbes[probes < PROBE_BUCKETS ? probes : PROBE_BUCKETS - 1].increment();
+    }
+    final void recordPut(int probes) {
+        putProbes[probes < PROBE_BUCKETS ? probes : PROBE_BUCKETS - 1].increment();
+    }
+    final void recordTreeGet() {
+        treeBinGets.increment();
+    }
+    final void recordTreePut() {
+        treeBinPuts.increment();
+    }
+
+    /**
+     * 链表长度超过阈值，调用了treeifyBin()
+     * 表太小时treeifyBin()只扩容，不会转红黑树
+     * @param binSize   桶里的节点数量，没有转红黑树时是0
+     * @param capacity  hash表长度
+     */
+    final void recordTreeifyBin(int binSize, int capacity) {
+        treeifyBins.increment();
+        if (binSize > 0)
+            recordTreeify(binSize, capacity);
+    }
+    final void recordTreeify(int binSize, int capacity) {
+        treeifies.increment();
+        if (JFR)
+            MyHashMapEvents.treeify(map, binSize, capacity);
+    }
+    final void recordUntreeify() {
+        untreeifies.increment();
+    }
+    final void recordSplit() {
+        splits.increment();
+    }
+
+    /**
+     * @param oldCap        扩容前hash表长度
+     * @param newCap        扩容后hash表长度
+     * @param nanos         resize()花的时间，渐进式扩容时不包括之后分批迁移的时间
+     * @param incremental   是否是渐进式扩容
+     * @param parallel      是否用ForkJoinPool并行迁移
+     */
+    final void recordResize(int oldCap, int newCap, long nanos, boolean incremental, boolean parallel) {
+        resizes.increment();
+        if (parallel)
+            parallelResizes.increment();
+        resizeNanos.add(nanos);
+        resizeMaxNanos.accumulate(nanos);
+        if (JFR)
+            MyHashMapEvents.resize(map, oldCap, newCap, nanos, incremental, parallel);
+    }
+    //=========================记录==========================
+
+    //=========================JMX==========================
+    /**
+     * 注册到平台MBeanServer
+     * ObjectName是com.lilingyan:type=MyHashMap,name=<name>
+     * 已经用别的名字注册过，先注销原来的名字；名字相同则什么都不做
+     * @param name
+     * @return
+     */
+    public synchronized ObjectName register(String name) {
+        try {
+            ObjectName on = new ObjectName("com.lilingyan:type=MyHashMap,name=" +
+                    ObjectName.quote(name));
+            if (on.equals(objectName))
+                return on;
+            //同一个MXBean不能注册两个名字，先注销原来的
+            unregister();
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+            return objectName = on;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register MyHashMap stats: " + name, e);
+        }
+    }
+
+    /**
+     * 从平台MBeanServer注销，没有注册过则什么都不做
+     */
+    public synchronized void unregister() {
+        ObjectName on;
+        if ((on = objectName) != null) {
+            objectName = null;
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                if (server.isRegistered(on))
+                    server.unregisterMBean(on);
+            } catch (JMException e) {
+                throw new IllegalStateException("Cannot unregister MyHashMap stats: " + on, e);
+            }
+        }
+    }
+
+    public long[] getGetProbeHistogram()    { return sums(getProbes); }
+    public long[] getPutProbeHistogram()    { return sums(putProbes); }
+    public long getTreeBinGets()            { return treeBinGets.sum(); }
+    public long getTreeBinPuts()            { return treeBinPuts.sum(); }
+    public long getTreeifyBinCount()        { return treeifyBins.sum(); }
+    public long getTreeifyCount()           { return treeifies.sum(); }
+    public long getUntreeifyCount()         { return untreeifies.sum(); }
+    public long getSplitCount()             { return splits.sum(); }
+    public long getResizeCount()            { return resizes.sum(); }
+    public long getParallelResizeCount()    { return parallelResizes.sum(); }
+    public long getResizeTotalNanos()       { return resizeNanos.sum(); }
+    public long getResizeMaxNanos()         { return resizeMaxNanos.get(); }
+    public int getSize()                    { return map.size; }
+
+    public int getCapacity() {
+        MyHashMap.Node<?,?>[] tab;
+        return (tab = map.table) == null ? 0 : tab.length;
+    }
+
+    /**
+     * 只读遍历table和渐进式扩容没迁移完的oldTable，不会帮忙迁移
+     * @return
+     */
+    public long getTreeBinEntries() {
+        return treeBinEntries(map.table) + treeBinEntries(map.oldTable);
+    }
+
+    public double getTreeBinShare() {
+        int s;
+        return (s = map.size) == 0 ? 0.0 : (double)getTreeBinEntries() / s;
+    }
+
+    public void reset() {
+        for (LongAdder a : getProbes)
+            a.reset();
+        for (LongAdder a : putProbes)
+            a.reset();
+        treeBinGets.reset();
+        treeBinPuts.reset();
+        treeifyBins.reset();
+        treeifies.reset();
+        untreeifies.reset();
+        splits.reset();
+        resizes.reset();
+        parallelResizes.reset();
+        resizeNanos.reset();
+        resizeMaxNanos.reset();
+    }
+    //=========================JMX==========================
+
+    //=========================一些常用方法封装==========================
+    private static long treeBinEntries(MyHashMap.Node<?,?>[] tab) {
+        long n = 0L;
+        if (tab != null) {
+            for (MyHashMap.Node<?,?> e : tab) {
+                if (e instanceof MyHashMap.TreeNode) {
+                    for (; e != null; e = e.next)
+                        ++n;
+                }
+            }
+        }
+        return n;
+    }
+
+    private static boolean jfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, MyHashMapStats.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static LongAdder[] newAdders(int n) {
+        LongAdder[] as = new LongAdder[n];
+        for (int i = 0; i < n; ++i)
+            as[i] = new LongAdder();
+        return as;
+    }
+
+    private static long[] sums(LongAdder[] as) {
+        long[] r = new long[as.length];
+        for (int i = 0; i < as.length; ++i)
+            r[i] = as[i].sum();
+        return r;
+    }
+    //=========================一些常用方法封装==========================
+}
@@ -0,0 +1,62 @@
+package com.lilingyan;
+
+/**
+ * MyHashMapStats的JMX接口
+ * 用MyHashMapStats.register()注册到平台MBeanServer以后，可以用jconsole/jmc查看
+ * @Author: lilingyan
+ * @Date 2026/10/17 19:00
+ */
+public interface MyHashMapStatsMXBean {
+
+    /**
+     * get时遍历的节点数量分布
+     * 下标0是空桶，下标1~8是遍历的节点数量，最后一个是9个及以上
+     * 红黑树桶不算在里面，见getTreeBinGets()
+     */
+    long[] getGetProbeHistogram();
+
+    /**
+     * put时遍历的节点数量分布，下标含义同getGetProbeHistogram()
+     */
+    long[] getPutProbeHistogram();
+
+    /**
+     * get/put落在红黑树桶上的次数
+     */
+    long getTreeBinGets();
+    long getTreeBinPuts();
+
+    long getTreeifyBinCount();
+    long getTreeifyCount();
+    long getUntreeifyCount();
+    long getSplitCount();
+
+    long getResizeCount();
+
+    /**
+     * 用ForkJoinPool并行迁移的扩容次数(包含在getResizeCount()里)
+     */
+    long getParallelResizeCount();
+    long getResizeTotalNanos();
+    long getResizeMaxNanos();
+
+    int getSize();
+    int getCapacity();
+
+    /**
+     * 在红黑树桶里的节点数量
+     * 监控线程读取时不加锁，是一个近似值
+     */
+    long getTreeBinEntries();
+
+    /**
+     * 在红黑树桶里的节点占全部节点的比例
+     * 比例高说明key的hashCode分布差
+     */
+    double getTreeBinShare();
+
+    /**
+     * 计数清零
+     */
+    void reset();
+}
@@ -0,0 +1,571 @@
+package com.lilingyan;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * 堆外版本的MyHashMap，key和value都是byte[]
+ * hash表和节点都不在java堆里，不管存多少数据，堆上只有这个对象和几个很小的数组，不会拖慢GC
+ *
+ * 一个ByteBuffer最大2GB，装不下几亿个节点，所以节点和hash表都分段存放
+ * 节点顺序追加在data段中(direct ByteBuffer，或者文件映射的MappedByteBuffer)，每段最大2^segmentShift字节(默认1GB)
+ * 节点用long地址表示：高位是段号，低segmentShift位是段内偏移(0表示空指针，0号段从DATA_START开始存)
+ * 一个节点不会跨段，最后一段放不下时开一个新段(上一段末尾剩下的空间不用)
+ * 节点结构为
+ *      | hash(4) | keyLength(4) | valueLength(4) | next(8) | key | value |
+ * next是同一个桶里下一个节点的地址，和Node.next一样组成单链表
+ *
+ * hash表存每个桶第一个节点的地址，拆成多个direct的LongBuffer，每块最多2^tableChunkShift个桶(默认2^27个，1GB)
+ *
+ * hash扰动(MyHashMap.spread())、2^n的表长、负载因子和扩容时机都与MyHashMap一样
+ * 删除或者替换成不同长度的value时，旧节点只是标记删除(keyLength取反)
+ * data空间不够时，如果标记删除的空间够多就先原地压缩，否则扩大最后一段(不超过段大小)或者开新段
+ * (position/limit都转成Buffer调用，JDK9以上编译出来的class在JDK8上也能运行)
+ * @Author: lilingyan
+ * @Date 2026/10/17 15:30
+ */
+public class OffHeapMyHashMap {
+
+    /**
+     * 节点中各字段的偏移
+     */
+    static final int HASH = 0;
+    static final int KEY_LENGTH = 4;
+    static final int VALUE_LENGTH = 8;
+    static final int NEXT = 12;
+    static final int HEADER = 20;
+
+    /**
+     * 0号段从这个位置开始存节点，地址0留着表示空指针
+     */
+    static final int DATA_START = 8;
+
+    /**
+     * 一个段的初始大小
+     */
+    static final int DEFAULT_DATA_CAPACITY = 1 << 16;
+
+    /**
+     * 默认一个段2^30字节
+     */
+    static final int SEGMENT_SHIFT = 30;
+
+    /**
+     * 默认hash表一块2^27个桶(每个桶8字节，1GB)
+     */
+    static final int TABLE_CHUNK_SHIFT = 27;
+
+    /**
+     * 段大小和hash表一块的大小
+     */
+    final int segmentShift;
+    final int tableChunkShift;
+
+    /**
+     * hash表，存每个桶第一个节点的地址
+     */
+    LongBuffer[] table;
+    int tableCapacity;
+
+    /**
+     * 节点存储，只有最后一段在追加
+     */
+    ByteBuffer[] segments;
+    /**
+     * 每一段已经写到的位置
+     */
+    int[] segmentEnds;
+    int segmentCount;
+
+    /**
+     * 所有节点占用的字节数(包括标记删除的)
+     */
+    long dataBytes;
+
+    /**
+     * 已经标记删除的字节数
+     */
+    long garbage;
+
+    /**
+     * 文件映射模式下的文件，direct模式为null
+     */
+    final FileChannel channel;
+
+    final float loadFactor;
+
+    /**
+     * 扩容阈值(capacity * load factor)
+     * 表还没分配的时候，存放初始容量
+     */
+    int threshold;
+
+    int size;
+
+    //=========================构造器==========================
+    public OffHeapMyHashMap() {
+        this(null, 0, MyHashMap.DEFAULT_LOAD_FACTOR);
+        this.threshold = 0;
+    }
+    public OffHeapMyHashMap(int initialCapacity, float loadFactor) {
+        this(null, initialCapacity, loadFactor);
+    }
+    /**
+     * 节点存在文件映射的内存里
+     * 第s段映射文件的[s << segmentShift, ...)，段扩大时重新映射更大的范围，文件由调用方负责关闭
+     * @param channel           可读写的文件，从头开始覆盖写
+     * @param initialCapacity
+     * @param loadFactor
+     */
+    public OffHeapMyHashMap(FileChannel channel, int initialCapacity, float loadFactor) {
+        this(channel, initialCapacity, loadFactor, SEGMENT_SHIFT, TABLE_CHUNK_SHIFT);
+    }
+    /**
+     * 测试用，可以把段和hash表的块设小
+     */
+    OffHeapMyHashMap(FileChannel channel, int initialCapacity, float loadFactor,
+                     int segmentShift, int tableChunkShift) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        if (initialCapacity > MyHashMap.MAXIMUM_CAPACITY)
+            initialCapacity = MyHashMap.MAXIMUM_CAPACITY;
+        if (loadFactor <= 0 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                    loadFactor);
+        if (segmentShift < 8 || segmentShift > SEGMENT_SHIFT ||
+                tableChunkShift < 0 || tableChunkShift > TABLE_CHUNK_SHIFT)
+            throw new IllegalArgumentException("Illegal segment/table chunk shift: " +
+                    segmentShift + ", " + tableChunkShift);
+        this.loadFactor = loadFactor;
+        this.threshold = MyHashMap.tableSizeFor(initialCapacity);
+        this.channel = channel;
+        this.segmentShift = segmentShift;
+        this.tableChunkShift = tableChunkShift;
+        this.segments = new ByteBuffer[4];
+        this.segmentEnds = new int[4];
+        addSegment(Math.min(DEFAULT_DATA_CAPACITY, 1 << segmentShift));
+        this.segmentEnds[0] = DATA_START;
+    }
+    //=========================构造器==========================
+
+    //=========================添加==========================
+    public byte[] put(byte[] key, byte[] value) {
+        int h = hash(key);
+        //先保证空间足够，压缩会移动节点，所以要在查找之前
+        ensureData((long)HEADER + key.length + value.length);
+        if (table == null)
+            resize();
+        LongBuffer[] tab = table;
+        int i = h & (tableCapacity - 1);
+        for (long e = bin(tab, i), p = 0L; e != 0L; p = e, e = getLong(e + NEXT)) {
+            if (getInt(e + HASH) == h && keyEquals(e, key)) {
+                byte[] oldValue = readValue(e);
+                if (oldValue.length == value.length) {
+                    //长度一样，直接覆盖
+                    writeBytes(segment(e), offset(e) + HEADER + key.length, value);
+                    return oldValue;
+                }
+                //长度不一样，追加一个新节点替换掉旧节点
+                long x = append(h, key, value, getLong(e + NEXT));
+                if (p == 0L)
+                    setBin(tab, i, x);
+                else
+                    putLong(p + NEXT, x);
+                markRemoved(e);
+                return oldValue;
+            }
+        }
+        //新节点放在链表头
+        setBin(tab, i, append(h, key, value, bin(tab, i)));
+        if (++size > threshold)
+            resize();
+        return null;
+    }
+
+    /**
+     * 在最后一段末尾追加一个节点(调用前已经保证空间足够)
+     * @return 节点地址
+     */
+    final long append(int h, byte[] key, byte[] value, long next) {
+        int s = segmentCount - 1;
+        ByteBuffer d = segments[s];
+        int e = segmentEnds[s];
+        int length = HEADER + key.length + value.length;
+        d.putInt(e + HASH, h);
+        d.putInt(e + KEY_LENGTH, key.length);
+        d.putInt(e + VALUE_LENGTH, value.length);
+        d.putLong(e + NEXT, next);
+        writeBytes(d, e + HEADER, key);
+        writeBytes(d, e + HEADER + key.length, value);
+        segmentEnds[s] = e + length;
+        dataBytes += length;
+        return address(s, e);
+    }
+    //=========================添加==========================
+
+    //=========================删除==========================
+    public byte[] remove(byte[] key) {
+        LongBuffer[] tab;
+        if ((tab = table) == null)
+            return null;
+        int h = hash(key);
+        int i = h & (tableCapacity - 1);
+        for (long e = bin(tab, i), p = 0L; e != 0L; p = e, e = getLong(e + NEXT)) {
+            if (getInt(e + HASH) == h && keyEquals(e, key)) {
+                byte[] oldValue = readValue(e);
+                if (p == 0L)
+                    setBin(tab, i, getLong(e + NEXT));
+                else
+                    putLong(p + NEXT, getLong(e + NEXT));
+                markRemoved(e);
+                --size;
+                return oldValue;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 标记删除，keyLength取反
+     * @param e
+     */
+    final void markRemoved(long e) {
+        int keyLength = getInt(e + KEY_LENGTH);
+        putInt(e + KEY_LENGTH, ~keyLength);
+        garbage += HEADER + keyLength + getInt(e + VALUE_LENGTH);
+    }
+    //=========================删除==========================
+
+    //=========================查找==========================
+    public byte[] get(byte[] key) {
+        long e;
+        return (e = getEntry(hash(key), key)) == 0L ? null : readValue(e);
+    }
+    public boolean containsKey(byte[] key) {
+        return getEntry(hash(key), key) != 0L;
+    }
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 节点地址，没有返回0
+     */
+    final long getEntry(int h, byte[] key) {
+        LongBuffer[] tab;
+        if ((tab = table) == null)
+            return 0L;
+        for (long e = bin(tab, h & (tableCapacity - 1)); e != 0L; e = getLong(e + NEXT)) {
+            if (getInt(e + HASH) == h && keyEquals(e, key))
+                return e;
+        }
+        return 0L;
+    }
+    //=========================查找==========================
+
+    //=========================特色方法==========================
+    /**
+     * 与MyHashMap.resize()相同的容量计算和链表拆分
+     * 节点不需要移动，只要改next指针和新表
+     * @return
+     */
+    final LongBuffer[] resize() {
+        LongBuffer[] oldTab = table;
+        int oldCap = (oldTab == null) ? 0 : tableCapacity;
+        int oldThr = threshold;
+        int newCap, newThr = 0;
+        if (oldCap > 0) {
+            if (oldCap >= MyHashMap.MAXIMUM_CAPACITY) {
+                threshold = Integer.MAX_VALUE;
+                return oldTab;
+            }
+            else if ((newCap = oldCap << 1) < MyHashMap.MAXIMUM_CAPACITY &&
+                    oldCap >= MyHashMap.DEFAULT_INITIAL_CAPACITY)
+                newThr = oldThr << 1;
+        }
+        else if (oldThr > 0)
+            newCap = oldThr;
+        else {
+            newCap = MyHashMap.DEFAULT_INITIAL_CAPACITY;
+            newThr = (int)(MyHashMap.DEFAULT_LOAD_FACTOR * MyHashMap.DEFAULT_INITIAL_CAPACITY);
+        }
+        if (newThr == 0) {
+            float ft = (float)newCap * loadFactor;
+            newThr = (newCap < MyHashMap.MAXIMUM_CAPACITY && ft < (float)MyHashMap.MAXIMUM_CAPACITY ?
+                    (int)ft : Integer.MAX_VALUE);
+        }
+        threshold = newThr;
+        LongBuffer[] newTab = allocateTable(newCap);
+        table = newTab;
+        tableCapacity = newCap;
+        if (oldTab != null) {
+            for (int j = 0; j < oldCap; ++j) {
+                long e;
+                if ((e = bin(oldTab, j)) == 0L)
+                    continue;
+                //与MyHashMap.transferBin()一样拆成高低两个链表
+                long loHead = 0L, loTail = 0L, hiHead = 0L, hiTail = 0L, next;
+                do {
+                    next = getLong(e + NEXT);
+                    if ((getInt(e + HASH) & oldCap) == 0) {
+                        if (loTail == 0L)
+                            loHead = e;
+                        else
+                            putLong(loTail + NEXT, e);
+                        loTail = e;
+                    }
+                    else {
+                        if (hiTail == 0L)
+                            hiHead = e;
+                        else
+                            putLong(hiTail + NEXT, e);
+                        hiTail = e;
+                    }
+                } while ((e = next) != 0L);
+                if (loTail != 0L) {
+                    putLong(loTail + NEXT, 0L);
+                    setBin(newTab, j, loHead);
+                }
+                if (hiTail != 0L) {
+                    putLong(hiTail + NEXT, 0L);
+                    setBin(newTab, j + oldCap, hiHead);
+                }
+            }
+        }
+        return newTab;
+    }
+
+    /**
+     * 分配cap个桶的hash表，超过一块的大小就拆成多块
+     * allocateDirect分配的内存都是0，即所有桶都是空的
+     * @param cap
+     * @return
+     */
+    final LongBuffer[] allocateTable(int cap) {
+        int chunk = Math.min(cap, 1 << tableChunkShift);
+        LongBuffer[] tab = new LongBuffer[cap / chunk];
+        for (int k = 0; k < tab.length; ++k)
+            tab[k] = ByteBuffer.allocateDirect(chunk << 3).asLongBuffer();
+        return tab;
+    }
+
+    /**
+     * 保证最后一段末尾还有need字节的空间
+     * 标记删除的空间超过一半就先压缩，还不够再扩大最后一段，最后一段已经到段大小就开新段
+     * @param need
+     */
+    final void ensureData(long need) {
+        int segmentSize = 1 << segmentShift;
+        if (need > segmentSize - DATA_START)
+            throw new IllegalArgumentException("Entry too large: " + need + " bytes");
+        int s = segmentCount - 1, end = segmentEnds[s];
+        if (end + need <= segments[s].capacity())
+            return;
+        if (garbage > (dataBytes >>> 1)) {
+            compact();
+            s = segmentCount - 1;
+            end = segmentEnds[s];
+            if (end + need <= segments[s].capacity())
+                return;
+        }
+        if (end + need <= segmentSize) {
+            int cap = segments[s].capacity();
+            segments[s] = growSegment(s, (int)Math.min(segmentSize,
+                    Math.max((long)cap << 1, end + need)));
+        }
+        else
+            addSegment((int)Math.min(segmentSize, Math.max(DEFAULT_DATA_CAPACITY, need)));
+    }
+
+    /**
+     * 原地压缩
+     * 从头扫描所有段的节点，把没删除的节点往前挪(可能挪到前面的段)，然后按hash重新挂到桶上
+     * 写的位置一定不在读的位置后面，不会覆盖还没扫描的节点
+     * 压缩后后面空出来的段直接丢掉
+     */
+    final void compact() {
+        LongBuffer[] tab = table;
+        int mask = (tab == null) ? 0 : tableCapacity - 1;
+        if (tab != null) {
+            for (LongBuffer chunk : tab) {
+                for (int j = 0, n = chunk.capacity(); j < n; ++j)
+                    chunk.put(j, 0L);
+            }
+        }
+        int count = segmentCount, ws = 0, w = DATA_START;
+        long live = 0L;
+        for (int s = 0; s < count; ++s) {
+            ByteBuffer d = segments[s];
+            for (int e = (s == 0) ? DATA_START : 0, end = segmentEnds[s]; e < end; ) {
+                int keyLength = d.getInt(e + KEY_LENGTH);
+                boolean removed = keyLength < 0;
+                if (removed)
+                    keyLength = ~keyLength;
+                int length = HEADER + keyLength + d.getInt(e + VALUE_LENGTH);
+                if (!removed) {
+                    if (w + length > segments[ws].capacity()) {
+                        //写的段放不下了，换到下一段(不会超过正在读的段)
+                        segmentEnds[ws++] = w;
+                        w = 0;
+                    }
+                    ByteBuffer wd = segments[ws];
+                    if (ws != s || w != e) {
+                        ByteBuffer src = d.duplicate();
+                        ((Buffer)src).limit(e + length).position(e);
+                        ByteBuffer dst = wd.duplicate();
+                        ((Buffer)dst).position(w);
+                        dst.put(src);
+                    }
+                    long x = address(ws, w);
+                    if (tab != null) {
+                        int i = wd.getInt(w + HASH) & mask;
+                        wd.putLong(w + NEXT, bin(tab, i));
+                        setBin(tab, i, x);
+                    }
+                    w += length;
+                    live += length;
+                }
+                e += length;
+            }
+        }
+        segmentEnds[ws] = w;
+        for (int s = ws + 1; s < count; ++s) {
+            segments[s] = null;
+            segmentEnds[s] = 0;
+        }
+        segmentCount = ws + 1;
+        dataBytes = live;
+        garbage = 0L;
+    }
+
+    /**
+     * 在最后面加一个段
+     * @param capacity
+     */
+    final void addSegment(int capacity) {
+        int s;
+        if ((s = segmentCount) == segments.length) {
+            segments = Arrays.copyOf(segments, s << 1);
+            segmentEnds = Arrays.copyOf(segmentEnds, s << 1);
+        }
+        segments[s] = allocateSegment(s, capacity);
+        segmentEnds[s] = 0;
+        segmentCount = s + 1;
+    }
+
+    final ByteBuffer allocateSegment(int s, int capacity) {
+        if (channel == null)
+            return ByteBuffer.allocateDirect(capacity);
+        try {
+            return channel.map(FileChannel.MapMode.READ_WRITE, (long)s << segmentShift, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 扩大第s段
+     * direct模式分配新的内存并复制这一段，文件映射模式直接映射更大的范围(内容还在文件里)
+     * @param s
+     * @param newCapacity
+     * @return
+     */
+    final ByteBuffer growSegment(int s, int newCapacity) {
+        ByteBuffer newData = allocateSegment(s, newCapacity);
+        if (channel == null) {
+            ByteBuffer src = segments[s].duplicate();
+            ((Buffer)src).limit(segmentEnds[s]).position(0);
+            newData.put(src);
+            ((Buffer)newData).clear();
+        }
+        return newData;
+    }
+    //=========================特色方法==========================
+
+    //=========================一些常用方法封装==========================
+    /**
+     * byte[]的hashCode再用MyHashMap相同的方式扰动
+     * @param key
+     * @return
+     */
+    static int hash(byte[] key) {
+        return MyHashMap.spread(Arrays.hashCode(key));
+    }
+
+    final long address(int s, int offset) {
+        return ((long)s << segmentShift) | offset;
+    }
+
+    /**
+     * 节点不跨段，节点地址加上字段偏移还在同一段里
+     */
+    final ByteBuffer segment(long x) {
+        return segments[(int)(x >>> segmentShift)];
+    }
+
+    final int offset(long x) {
+        return (int)x & ((1 << segmentShift) - 1);
+    }
+
+    final int getInt(long x) {
+        return segment(x).getInt(offset(x));
+    }
+
+    final void putInt(long x, int v) {
+        segment(x).putInt(offset(x), v);
+    }
+
+    final long getLong(long x) {
+        return segment(x).getLong(offset(x));
+    }
+
+    final void putLong(long x, long v) {
+        segment(x).putLong(offset(x), v);
+    }
+
+    final long bin(LongBuffer[] tab, int i) {
+        return tab[i >>> tableChunkShift].get(i & ((1 << tableChunkShift) - 1));
+    }
+
+    final void setBin(LongBuffer[] tab, int i, long x) {
+        tab[i >>> tableChunkShift].put(i & ((1 << tableChunkShift) - 1), x);
+    }
+
+    final boolean keyEquals(long e, byte[] key) {
+        ByteBuffer d = segment(e);
+        int o = offset(e);
+        if (d.getInt(o + KEY_LENGTH) != key.length)
+            return false;
+        for (int i = 0, p = o + HEADER; i < key.length; i++, p++) {
+            if (d.get(p) != key[i])
+                return false;
+        }
+        return true;
+    }
+
+    final byte[] readValue(long e) {
+        ByteBuffer d = segment(e).duplicate();
+        int o = offset(e);
+        byte[] value = new byte[d.getInt(o + VALUE_LENGTH)];
+        ((Buffer)d).position(o + HEADER + d.getInt(o + KEY_LENGTH));
+        d.get(value);
+        return value;
+    }
+
+    /**
+     * 用段内偏移写，不用地址：value为空并且节点正好写到段尾时，末尾的地址已经算到下一段了
+     */
+    static void writeBytes(ByteBuffer d, int p, byte[] bytes) {
+        d = d.duplicate();
+        ((Buffer)d).position(p);
+        d.put(bytes);
+    }
+    //=========================一些常用方法封装==========================
+
+}
@@ -0,0 +1,310 @@
+package com.lilingyan;
+
+/**
+ * 开放寻址版本的MyHashMap
+ * 不使用Node链表，hash存在int[]里，key和value交错存在同一个Object[]里(key在2i，value在2i+1)
+ * 查找时只在连续的数组上往后探测，不用跟着next指针跳，缓存更友好
+ * key和value放在一起，命中时读到key的那条缓存行里一般也有value
+ *
+ * 冲突用Robin Hood线性探测解决:
+ * 插入时如果当前位置的节点离自己本该在的位置(home)更近，就把位置抢过来，让它继续往后找
+ * 这样所有节点的探测长度都比较平均，查找不到时也能提前结束
+ * 删除时把后面的节点往前挪(backward shift)，不需要墓碑标记
+ *
+ * 与MyHashMap的红黑树类似，探测长度也有上限(MAX_PROBE_LENGTH)
+ * 超过上限的节点放到一个溢出的MyHashMap里(hash完全相同的key在那里会转成红黑树)
+ * 避免大量冲突的key把探测序列拉得很长
+ * @Author: lilingyan
+ * @Date 2026/10/17 14:02
+ */
+public class OpenAddressingMyHashMap<K,V> {
+
+    /**
+     * 空位的hash
+     */
+    static final int FREE_HASH = 0;
+
+    /**
+     * 真正hash是0的key存成这个值
+     * 低位全是0，在任何长度的表里home位置都和0一样，只影响hash比较(key还是用equals判断)
+     */
+    static final int ZERO_HASH = Integer.MIN_VALUE;
+
+    /**
+     * 一个节点离home位置最远的距离
+     * 超过的节点放到overflow里
+     */
+    static final int MAX_PROBE_LENGTH = 64;
+
+    /**
+     * hash表，FREE_HASH表示空位
+     */
+    int[] hashes;
+    /**
+     * 节点表，i位置的key在entries[2i]，value在entries[2i+1]
+     */
+    Object[] entries;
+
+    final float loadFactor;
+
+    /**
+     * 扩容阈值(capacity * load factor)
+     * 表还没分配的时候，存放初始容量
+     */
+    int threshold;
+
+    /**
+     * 节点数量(包括overflow里的)
+     */
+    int size;
+
+    /**
+     * 探测长度超过MAX_PROBE_LENGTH的节点
+     */
+    MyHashMap<K,V> overflow;
+
+    //=========================构造器==========================
+    public OpenAddressingMyHashMap() {
+        this.loadFactor = MyHashMap.DEFAULT_LOAD_FACTOR;
+    }
+    public OpenAddressingMyHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        if (initialCapacity > MyHashMap.MAXIMUM_CAPACITY)
+            initialCapacity = MyHashMap.MAXIMUM_CAPACITY;
+        //线性探测必须留有空位，负载因子不能达到1
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                    loadFactor);
+        this.loadFactor = loadFactor;
+        this.threshold = MyHashMap.tableSizeFor(initialCapacity);
+    }
+    //=========================构造器==========================
+
+    //=========================添加==========================
+    public V put(K key, V value) {
+        int h = hash(key), i;
+        if (hashes == null)
+            resize();
+        if ((i = indexOf(h, key)) >= 0) {
+            Object[] es = entries;
+            @SuppressWarnings("unchecked") V oldValue = (V)es[(i << 1) + 1];
+            es[(i << 1) + 1] = value;
+            return oldValue;
+        }
+        MyHashMap<K,V> of;
+        if ((of = overflow) != null && of.containsKey(key))
+            return of.put(key, value);
+        insert(h, key, value);
+        if (++size > threshold)
+            resize();
+        return null;
+    }
+
+    /**
+     * Robin Hood插入(调用前已经确认key不存在)
+     * 往后探测时，如果某个位置的节点离home比自己近，就和它交换
+     * 然后带着被换出来的节点继续往后找
+     * @param h
+     * @param key
+     * @param value
+     */
+    final void insert(int h, Object key, Object value) {
+        int[] hs = hashes; Object[] es = entries;
+        int mask = hs.length - 1;
+        for (int i = h & mask, dist = 0; ; i = (i + 1) & mask, ++dist) {
+            int eh;
+            if ((eh = hs[i]) == FREE_HASH) {
+                hs[i] = h;
+                es[i << 1] = key;
+                es[(i << 1) + 1] = value;
+                return;
+            }
+            int ed;
+            if ((ed = (i - (eh & mask)) & mask) < dist) {
+                //抢占这个位置，被换出来的节点继续往后找
+                Object ek = es[i << 1], ev = es[(i << 1) + 1];
+                hs[i] = h;
+                es[i << 1] = key;
+                es[(i << 1) + 1] = value;
+                h = eh;
+                key = ek;
+                value = ev;
+                dist = ed;
+            }
+            if (dist >= MAX_PROBE_LENGTH) {
+                //再往后就超过探测上限了，放到overflow里
+                spill(key, value);
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    final void spill(Object key, Object value) {
+        MyHashMap<K,V> of;
+        if ((of = overflow) == null)
+            overflow = of = new MyHashMap<>();
+        of.put((K)key, (V)value);
+    }
+    //=========================添加==========================
+
+    //=========================删除==========================
+    public V remove(Object key) {
+        int h = hash(key), i;
+        if ((i = indexOf(h, key)) >= 0) {
+            @SuppressWarnings("unchecked") V oldValue = (V)entries[(i << 1) + 1];
+            shiftBack(i);
+            --size;
+            return oldValue;
+        }
+        MyHashMap<K,V> of;
+        if ((of = overflow) != null && of.containsKey(key)) {
+            --size;
+            return of.remove(key);
+        }
+        return null;
+    }
+
+    /**
+     * 删除i位置的节点
+     * 把后面不在home位置上的节点依次往前挪一格，直到遇到空位或者在home位置上的节点
+     * @param i
+     */
+    final void shiftBack(int i) {
+        int[] hs = hashes; Object[] es = entries;
+        int mask = hs.length - 1;
+        for (int j = (i + 1) & mask; ; i = j, j = (j + 1) & mask) {
+            int eh;
+            if ((eh = hs[j]) == FREE_HASH || (eh & mask) == j)
+                break;
+            hs[i] = eh;
+            es[i << 1] = es[j << 1];
+            es[(i << 1) + 1] = es[(j << 1) + 1];
+        }
+        hs[i] = FREE_HASH;
+        es[i << 1] = null;
+        es[(i << 1) + 1] = null;
+    }
+    //=========================删除==========================
+
+    //=========================查找==========================
+    public V get(Object key) {
+        int h = hash(key), i;
+        if ((i = indexOf(h, key)) >= 0) {
+            @SuppressWarnings("unchecked") V v = (V)entries[(i << 1) + 1];
+            return v;
+        }
+        MyHashMap<K,V> of;
+        return (of = overflow) == null ? null : of.get(key);
+    }
+    public boolean containsKey(Object key) {
+        MyHashMap<K,V> of;
+        return indexOf(hash(key), key) >= 0 ||
+                ((of = overflow) != null && of.containsKey(key));
+    }
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 在hash表中查找(不包括overflow)
+     * Robin Hood的特点: 探测到的节点离home比自己当前的探测距离还近，说明key一定不在表里
+     * @param h
+     * @param key
+     * @return  key所在的位置，没有返回-1
+     */
+    final int indexOf(int h, Object key) {
+        int[] hs;
+        if ((hs = hashes) == null)
+            return -1;
+        Object[] es = entries;
+        int mask = hs.length - 1;
+        for (int i = h & mask, dist = 0; dist <= MAX_PROBE_LENGTH; i = (i + 1) & mask, ++dist) {
+            int eh; Object k;
+            if ((eh = hs[i]) == FREE_HASH || ((i - (eh & mask)) & mask) < dist)
+                return -1;
+            if (eh == h &&
+                    ((k = es[i << 1]) == key || (key != null && key.equals(k))))
+                return i;
+        }
+        return -1;
+    }
+    //=========================查找==========================
+
+    //=========================特色方法==========================
+    /**
+     * 与MyHashMap.resize()相同的容量计算
+     * 探测位置和表长有关，所有节点都要重新插入一遍
+     * overflow里的节点也会尝试放回新表
+     * @return
+     */
+    final int[] resize() {
+        int[] oldHashes = hashes;
+        Object[] oldEntries = entries;
+        int oldCap = (oldHashes == null) ? 0 : oldHashes.length;
+        int oldThr = threshold;
+        int newCap, newThr = 0;
+        if (oldCap > 0) {
+            if (oldCap >= MyHashMap.MAXIMUM_CAPACITY) {
+                threshold = Integer.MAX_VALUE;
+                return oldHashes;
+            }
+            else if ((newCap = oldCap << 1) < MyHashMap.MAXIMUM_CAPACITY &&
+                    oldCap >= MyHashMap.DEFAULT_INITIAL_CAPACITY)
+                newThr = oldThr << 1;
+        }
+        else if (oldThr > 0)
+            newCap = oldThr;
+        else {
+            newCap = MyHashMap.DEFAULT_INITIAL_CAPACITY;
+            newThr = (int)(loadFactor * MyHashMap.DEFAULT_INITIAL_CAPACITY);
+        }
+        if (newThr == 0) {
+            float ft = (float)newCap * loadFactor;
+            newThr = (newCap < MyHashMap.MAXIMUM_CAPACITY && ft < (float)MyHashMap.MAXIMUM_CAPACITY ?
+                    (int)ft : Integer.MAX_VALUE);
+        }
+        threshold = newThr;
+        hashes = new int[newCap];
+        entries = new Object[newCap << 1];
+        MyHashMap<K,V> of = overflow;
+        overflow = null;
+        if (oldHashes != null) {
+            for (int j = 0; j < oldCap; ++j) {
+                int h;
+                if ((h = oldHashes[j]) != FREE_HASH)
+                    insert(h, oldEntries[j << 1], oldEntries[(j << 1) + 1]);
+            }
+        }
+        if (of != null) {
+            MyHashMap.Node<K,V>[] tab;
+            if ((tab = of.table) != null) {
+                //红黑树节点也用next连着，直接按链表遍历
+                for (MyHashMap.Node<K,V> e : tab) {
+                    for (; e != null; e = e.next)
+                        insert(hash(e.key), e.key, e.value);
+                }
+            }
+        }
+        return hashes;
+    }
+    //=========================特色方法==========================
+
+    //=========================一些常用方法封装==========================
+    /**
+     * 在MyHashMap.hash()的基础上再乘一个黄金分割常数并扰动
+     * 链表只要求不同的key落到不同的桶，线性探测还要求相邻的hash不要挤在一起
+     * (比如"key-1","key-2"这种String的hashCode是连续的，会连成一大片，探测长度很长)
+     * 0换成ZERO_HASH(0表示空位)
+     * @param key
+     * @return
+     */
+    static int hash(Object key) {
+        int h = MyHashMap.hash(key) * 0x9E3779B9;
+        return (h ^= h >>> 16) == FREE_HASH ? ZERO_HASH : h;
+    }
+    //=========================一些常用方法封装==========================
+
+}
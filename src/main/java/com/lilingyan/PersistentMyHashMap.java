@@ -0,0 +1,564 @@
+package com.lilingyan;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * 持久化(结构共享)版本的MyHashMap，一个写线程 + 任意多个读线程
+ * 底层是hash array mapped trie(HAMT)，按MyHashMap.hash()的结果每5位分一层，每层最多32个分支
+ * 一个BitmapNode用bitmap记录32个分支里哪些有数据，数组里只存有数据的分支(key,value成对存放)
+ * key为null的位置，value是下一层的节点；32位hash完全相同的key放在CollisionNode里
+ *
+ * 每个节点记录创建它的写入令牌(edit)
+ * 写线程只原地修改令牌和自己当前令牌相同的节点，其它节点先复制再修改(只复制从根到这个key的路径)
+ * snapshot()把当前的根交给一个只读的Snapshot，然后换一个新令牌，O(1)
+ * 之后快照能看到的节点都不会再被修改，读线程不用加锁，也不用复制整个map
+ * 两次snapshot()之间的修改都是原地修改，不会产生多余的复制
+ *
+ * null key单独存放，和PersistentHashMap(Clojure)一样
+ * @Author: lilingyan
+ * @Date 2026/10/17 22:10
+ */
+public class PersistentMyHashMap<K,V> {
+
+    static final int BITS = 5;
+    static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * 查找不到时的返回值(value可以是null)
+     */
+    static final Object NOT_FOUND = new Object();
+
+    /**
+     * 当前的写入令牌，snapshot()以后换成新的
+     */
+    Object edit = new Object();
+
+    Node root;
+
+    int size;
+
+    boolean hasNull;
+
+    V nullValue;
+
+    /**
+     * 写操作的结果，只有一个写线程，所以可以复用
+     */
+    final Box box = new Box();
+
+    //=========================添加==========================
+    public V put(K key, V value) {
+        if (key == null) {
+            V oldValue = nullValue;
+            if (!hasNull) {
+                hasNull = true;
+                ++size;
+            }
+            nullValue = value;
+            return oldValue;
+        }
+        Box b = box.reset();
+        Node r = (root == null) ? BitmapNode.EMPTY : root;
+        root = r.assoc(edit, 0, MyHashMap.hash(key), key, value, b);
+        if (b.added)
+            ++size;
+        @SuppressWarnings("unchecked") V oldValue = (V)b.oldValue;
+        return oldValue;
+    }
+    //=========================添加==========================
+
+    //=========================删除==========================
+    public V remove(Object key) {
+        if (key == null) {
+            V oldValue = nullValue;
+            if (hasNull) {
+                hasNull = false;
+                nullValue = null;
+                --size;
+            }
+            return oldValue;
+        }
+        Node r;
+        if ((r = root) == null)
+            return null;
+        Box b = box.reset();
+        root = r.without(edit, 0, MyHashMap.hash(key), key, b);
+        if (!b.removed)
+            return null;
+        --size;
+        @SuppressWarnings("unchecked") V oldValue = (V)b.oldValue;
+        return oldValue;
+    }
+    //=========================删除==========================
+
+    //=========================查找==========================
+    public V get(Object key) {
+        return Snapshot.get(root, hasNull, nullValue, key);
+    }
+    public boolean containsKey(Object key) {
+        return key == null ? hasNull :
+                root != null && root.find(0, MyHashMap.hash(key), key) != NOT_FOUND;
+    }
+    public int size() {
+        return size;
+    }
+    //=========================查找==========================
+
+    //=========================特色方法==========================
+    /**
+     * 当前内容的只读快照，O(1)
+     * 换一个新的写入令牌，之后的修改都不会改动快照里的节点
+     * 快照可以交给任意线程读，快照的字段都是final的，发布以后其它线程能看到完整的节点
+     * @return
+     */
+    public Snapshot<K,V> snapshot() {
+        edit = new Object();
+        return new Snapshot<>(root, size, hasNull, nullValue);
+    }
+    //=========================特色方法==========================
+
+    //=========================使用到的节点结构==========================
+    /**
+     * put/remove的结果
+     */
+    static final class Box {
+        boolean added;
+        boolean removed;
+        Object oldValue;
+
+        Box reset() {
+            added = removed = false;
+            oldValue = null;
+            return this;
+        }
+    }
+
+    static abstract class Node {
+        /**
+         * 创建这个节点的写入令牌
+         */
+        final Object edit;
+
+        Node(Object edit) {
+            this.edit = edit;
+        }
+
+        /**
+         * @return  value，没有返回NOT_FOUND
+         */
+        abstract Object find(int shift, int hash, Object key);
+
+        /**
+         * 添加或者替换
+         * @return  修改后的节点，原地修改返回this
+         */
+        abstract Node assoc(Object edit, int shift, int hash, Object key, Object value, Box box);
+
+        /**
+         * 删除
+         * @return  修改后的节点，删空了返回null
+         */
+        abstract Node without(Object edit, int shift, int hash, Object key, Box box);
+
+        /**
+         * key,value成对存放的数组，遍历用
+         */
+        abstract Object[] array();
+
+        /**
+         * 数组里有效的(key,value)对数
+         */
+        abstract int pairs();
+    }
+
+    /**
+     * 按bitmap压缩的分支节点
+     * 第i个分支在数组里的下标是bitmap中比它低的1的个数
+     */
+    static final class BitmapNode extends Node {
+
+        static final BitmapNode EMPTY = new BitmapNode(null, 0, new Object[0]);
+
+        int bitmap;
+        Object[] array;
+
+        BitmapNode(Object edit, int bitmap, Object[] array) {
+            super(edit);
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        static int bitpos(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        final int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        Object[] array() { return array; }
+        int pairs()      { return Integer.bitCount(bitmap); }
+
+        Object find(int shift, int hash, Object key) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0)
+                return NOT_FOUND;
+            int i = index(bit) << 1;
+            Object k = array[i], v = array[i + 1];
+            if (k == null)
+                return ((Node)v).find(shift + BITS, hash, key);
+            return (k == key || key.equals(k)) ? v : NOT_FOUND;
+        }
+
+        Node assoc(Object edit, int shift, int hash, Object key, Object value, Box box) {
+            int bit = bitpos(hash, shift), i = index(bit) << 1;
+            if ((bitmap & bit) != 0) {
+                Object k = array[i], v = array[i + 1];
+                if (k == null) {
+                    //下一层
+                    Node n = ((Node)v).assoc(edit, shift + BITS, hash, key, value, box);
+                    return (n == v) ? this : editAndSet(edit, i + 1, n);
+                }
+                if (k == key || key.equals(k)) {
+                    //替换
+                    box.oldValue = v;
+                    return (v == value) ? this : editAndSet(edit, i + 1, value);
+                }
+                //同一个分支上已经有一个key了，往下再分一层
+                box.added = true;
+                BitmapNode e = ensureEditable(edit);
+                e.array[i] = null;
+                e.array[i + 1] = createNode(edit, shift + BITS, k, v, hash, key, value);
+                return e;
+            }
+            box.added = true;
+            int n = Integer.bitCount(bitmap);
+            BitmapNode e;
+            if (edit == this.edit && (n << 1) < array.length)
+                //自己的节点并且还有空位，原地插入
+                e = this;
+            else {
+                //复制一个，多留几个空位给之后的原地插入
+                Object[] a = new Object[(n + 4) << 1];
+                System.arraycopy(array, 0, a, 0, n << 1);
+                e = (edit == this.edit) ? this : new BitmapNode(edit, bitmap, a);
+                e.array = a;
+            }
+            System.arraycopy(e.array, i, e.array, i + 2, (n << 1) - i);
+            e.array[i] = key;
+            e.array[i + 1] = value;
+            e.bitmap |= bit;
+            return e;
+        }
+
+        Node without(Object edit, int shift, int hash, Object key, Box box) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0)
+                return this;
+            int i = index(bit) << 1;
+            Object k = array[i], v = array[i + 1];
+            if (k == null) {
+                Node n = ((Node)v).without(edit, shift + BITS, hash, key, box);
+                if (n == v)
+                    return this;
+                if (n != null)
+                    return editAndSet(edit, i + 1, n);
+            }
+            else if (k == key || key.equals(k)) {
+                box.removed = true;
+                box.oldValue = v;
+            }
+            else
+                return this;
+            //删除这个分支
+            if (bitmap == bit)
+                return null;
+            BitmapNode e = ensureEditable(edit);
+            int n = Integer.bitCount(bitmap) << 1;
+            System.arraycopy(e.array, i + 2, e.array, i, n - i - 2);
+            e.array[n - 2] = null;
+            e.array[n - 1] = null;
+            e.bitmap ^= bit;
+            return e;
+        }
+
+        final BitmapNode ensureEditable(Object edit) {
+            if (this.edit == edit)
+                return this;
+            int n = Integer.bitCount(bitmap);
+            Object[] a = new Object[(n + 1) << 1];
+            System.arraycopy(array, 0, a, 0, n << 1);
+            return new BitmapNode(edit, bitmap, a);
+        }
+
+        final BitmapNode editAndSet(Object edit, int i, Object o) {
+            BitmapNode e = ensureEditable(edit);
+            e.array[i] = o;
+            return e;
+        }
+    }
+
+    /**
+     * 32位hash完全相同的key，顺序存放
+     */
+    static final class CollisionNode extends Node {
+        final int hash;
+        int count;
+        Object[] array;
+
+        CollisionNode(Object edit, int hash, int count, Object[] array) {
+            super(edit);
+            this.hash = hash;
+            this.count = count;
+            this.array = array;
+        }
+
+        Object[] array() { return array; }
+        int pairs()      { return count; }
+
+        final int indexOf(Object key) {
+            for (int i = 0, n = count << 1; i < n; i += 2) {
+                Object k;
+                if ((k = array[i]) == key || key.equals(k))
+                    return i;
+            }
+            return -1;
+        }
+
+        Object find(int shift, int hash, Object key) {
+            int i;
+            return (hash == this.hash && (i = indexOf(key)) >= 0) ? array[i + 1] : NOT_FOUND;
+        }
+
+        Node assoc(Object edit, int shift, int hash, Object key, Object value, Box box) {
+            if (hash != this.hash) {
+                //hash不同，在上面加一层分支节点，把自己放进去
+                BitmapNode b = new BitmapNode(edit, BitmapNode.bitpos(this.hash, shift),
+                        new Object[] {null, this, null, null});
+                return b.assoc(edit, shift, hash, key, value, box);
+            }
+            int i;
+            if ((i = indexOf(key)) >= 0) {
+                Object v = array[i + 1];
+                box.oldValue = v;
+                if (v == value)
+                    return this;
+                CollisionNode e = ensureEditable(edit, array.length);
+                e.array[i + 1] = value;
+                return e;
+            }
+            box.added = true;
+            int n = count << 1;
+            CollisionNode e = ensureEditable(edit, Math.max(array.length, n + 2));
+            e.array[n] = key;
+            e.array[n + 1] = value;
+            ++e.count;
+            return e;
+        }
+
+        Node without(Object edit, int shift, int hash, Object key, Box box) {
+            int i;
+            if (hash != this.hash || (i = indexOf(key)) < 0)
+                return this;
+            box.removed = true;
+            box.oldValue = array[i + 1];
+            if (count == 1)
+                return null;
+            CollisionNode e = ensureEditable(edit, array.length);
+            int n = count << 1;
+            //最后一对挪到删除的位置
+            e.array[i] = e.array[n - 2];
+            e.array[i + 1] = e.array[n - 1];
+            e.array[n - 2] = null;
+            e.array[n - 1] = null;
+            --e.count;
+            return e;
+        }
+
+        final CollisionNode ensureEditable(Object edit, int length) {
+            if (this.edit == edit) {
+                if (length > array.length)
+                    array = Arrays.copyOf(array, length);
+                return this;
+            }
+            return new CollisionNode(edit, hash, count, Arrays.copyOf(array, length));
+        }
+    }
+
+    /**
+     * 在shift这一层开始，把(k1,v1)和(key2,value2)放到一个新节点里
+     */
+    static Node createNode(Object edit, int shift, Object k1, Object v1,
+                           int h2, Object k2, Object v2) {
+        int h1 = MyHashMap.hash(k1);
+        if (h1 == h2)
+            return new CollisionNode(edit, h1, 2, new Object[] {k1, v1, k2, v2});
+        Box b = new Box();
+        return BitmapNode.EMPTY
+                .assoc(edit, shift, h1, k1, v1, b)
+                .assoc(edit, shift, h2, k2, v2, b);
+    }
+    //=========================使用到的节点结构==========================
+
+    //=========================快照==========================
+    /**
+     * 只读快照
+     * 所有字段都是final，能看到的节点不会再被修改，可以在任意线程上不加锁读取和遍历
+     * @param <K>
+     * @param <V>
+     */
+    public static final class Snapshot<K,V> {
+        final Node root;
+        final int size;
+        final boolean hasNull;
+        final V nullValue;
+
+        transient Set<Map.Entry<K,V>> entrySet;
+
+        Snapshot(Node root, int size, boolean hasNull, V nullValue) {
+            this.root = root;
+            this.size = size;
+            this.hasNull = hasNull;
+            this.nullValue = nullValue;
+        }
+
+        public V get(Object key) {
+            return get(root, hasNull, nullValue, key);
+        }
+
+        static <V> V get(Node root, boolean hasNull, V nullValue, Object key) {
+            if (key == null)
+                return hasNull ? nullValue : null;
+            Object v;
+            if (root == null || (v = root.find(0, MyHashMap.hash(key), key)) == NOT_FOUND)
+                return null;
+            @SuppressWarnings("unchecked") V value = (V)v;
+            return value;
+        }
+
+        public boolean containsKey(Object key) {
+            return key == null ? hasNull :
+                    root != null && root.find(0, MyHashMap.hash(key), key) != NOT_FOUND;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * 递归遍历，比迭代器少创建Map.Entry
+         * @param action
+         */
+        @SuppressWarnings("unchecked")
+        public void forEach(BiConsumer<? super K, ? super V> action) {
+            if (action == null)
+                throw new NullPointerException();
+            if (hasNull)
+                action.accept(null, nullValue);
+            if (root != null)
+                forEach(root, (BiConsumer<Object,Object>)action);
+        }
+
+        static void forEach(Node node, BiConsumer<Object,Object> action) {
+            Object[] a = node.array();
+            for (int i = 0, n = node.pairs() << 1; i < n; i += 2) {
+                Object k = a[i], v = a[i + 1];
+                if (k == null)
+                    forEach((Node)v, action);
+                else
+                    action.accept(k, v);
+            }
+        }
+
+        /**
+         * 只读的节点视图
+         * @return
+         */
+        public Set<Map.Entry<K,V>> entrySet() {
+            Set<Map.Entry<K,V>> es;
+            return (es = entrySet) == null ? (entrySet = new EntrySet()) : es;
+        }
+
+        final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+            public final int size()                 { return size; }
+            public final Iterator<Map.Entry<K,V>> iterator() {
+                return new EntryIterator<>(root, hasNull, nullValue);
+            }
+            public final boolean contains(Object o) {
+                if (!(o instanceof Map.Entry))
+                    return false;
+                Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+                Object key = e.getKey();
+                return containsKey(key) && Objects.equals(get(key), e.getValue());
+            }
+        }
+    }
+
+    /**
+     * 用一个栈深度优先遍历
+     * 32位hash每层5位，最多7层分支节点，再加一层CollisionNode
+     */
+    static final class EntryIterator<K,V> implements Iterator<Map.Entry<K,V>> {
+        final Node[] nodes = new Node[8];
+        final int[] positions = new int[8];
+        int depth = -1;
+        boolean pendingNull;
+        final V nullValue;
+        Object nextKey, nextValue;
+        boolean hasNext;
+
+        EntryIterator(Node root, boolean hasNull, V nullValue) {
+            this.pendingNull = hasNull;
+            this.nullValue = nullValue;
+            if (root != null)
+                nodes[depth = 0] = root;
+            advance();
+        }
+
+        private void advance() {
+            if (pendingNull) {
+                pendingNull = false;
+                nextKey = null;
+                nextValue = nullValue;
+                hasNext = true;
+                return;
+            }
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                int i = positions[depth];
+                if (i >= node.pairs() << 1) {
+                    nodes[depth] = null;
+                    positions[depth--] = 0;
+                    continue;
+                }
+                positions[depth] = i + 2;
+                Object[] a = node.array();
+                Object k = a[i], v = a[i + 1];
+                if (k == null)
+                    nodes[++depth] = (Node)v;
+                else {
+                    nextKey = k;
+                    nextValue = v;
+                    hasNext = true;
+                    return;
+                }
+            }
+            hasNext = false;
+        }
+
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K,V> next() {
+            if (!hasNext)
+                throw new NoSuchElementException();
+            Map.Entry<K,V> e = new AbstractMap.SimpleImmutableEntry<>((K)nextKey, (V)nextValue);
+            advance();
+            return e;
+        }
+    }
+    //=========================快照==========================
+}
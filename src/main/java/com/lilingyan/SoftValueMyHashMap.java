@@ -0,0 +1,325 @@
+package com.lilingyan;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+
+/**
+ * value是软引用的MyHashMap
+ * 用来做可以重新计算的缓存：内存不够时GC回收value，对应的映射也跟着清掉，缓存变小而不是OOM
+ *
+ * Node直接继承SoftReference，引用的是value，注册在queue上；key是强引用
+ * value被回收以后Node会进入queue，之后的put/get/remove从queue里取出一批，把它们从table[]上摘掉
+ * hash扰动、tableSizeFor、扩容时机和链表拆分都与MyHashMap一样(不转红黑树)
+ *
+ * SoftReference的引用不能修改，所以put()覆盖value时换一个新节点
+ * null value用NULL_VALUE代替(永远不会被回收)
+ * value已经被回收、但还没清理的映射，get()/containsKey()当作不存在，size()还算在里面
+ * @Author: lilingyan
+ * @Date 2026/10/17 23:10
+ */
+public class SoftValueMyHashMap<K,V> {
+
+    /**
+     * 代替null value
+     */
+    static final Object NULL_VALUE = new Object();
+
+    /**
+     * put/get/remove每次最多从queue里清理的节点数量
+     * 大量value同时被回收时，清理的开销分摊到后续的操作上
+     * size()和扩容前会全部清理
+     */
+    static final int EXPUNGE_BATCH = 64;
+
+    static class Node<K> extends SoftReference<Object> {
+        final int hash;
+        final K key;
+        Node<K> next;
+
+        Node(int hash, K key, Object value, ReferenceQueue<Object> queue, Node<K> next) {
+            super(value, queue);
+            this.hash = hash;
+            this.key = key;
+            this.next = next;
+        }
+    }
+
+    Node<K>[] table;
+
+    /**
+     * value被回收的节点
+     */
+    final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+    final float loadFactor;
+
+    /**
+     * 扩容阈值(capacity * load factor)
+     * 表还没分配的时候，存放初始容量
+     */
+    int threshold;
+
+    int size;
+
+    //=========================构造器==========================
+    public SoftValueMyHashMap() {
+        this.loadFactor = MyHashMap.DEFAULT_LOAD_FACTOR;
+    }
+    public SoftValueMyHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        if (initialCapacity > MyHashMap.MAXIMUM_CAPACITY)
+            initialCapacity = MyHashMap.MAXIMUM_CAPACITY;
+        if (loadFactor <= 0 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                    loadFactor);
+        this.loadFactor = loadFactor;
+        this.threshold = MyHashMap.tableSizeFor(initialCapacity);
+    }
+    //=========================构造器==========================
+
+    //=========================添加==========================
+    /**
+     * @return  原来的value，原来的value已经被回收也返回null
+     */
+    public V put(K key, V value) {
+        expungeStaleEntries(EXPUNGE_BATCH);
+        return putVal(MyHashMap.hash(key), key, value);
+    }
+
+    final V putVal(int hash, K key, V value) {
+        Node<K>[] tab;
+        if ((tab = table) == null)
+            tab = resize();
+        int i = (tab.length - 1) & hash;
+        Object v = maskNull(value);
+        for (Node<K> e = tab[i], prev = null; e != null; prev = e, e = e.next) {
+            K k;
+            if (e.hash == hash &&
+                    ((k = e.key) == key || (key != null && key.equals(k)))) {
+                //换成新节点，原来的节点不再进queue
+                Node<K> p = new Node<>(hash, k, v, queue, e.next);
+                if (prev == null)
+                    tab[i] = p;
+                else
+                    prev.next = p;
+                Object oldValue = e.get();
+                e.clear();
+                e.next = null;
+                return unmaskNull(oldValue);
+            }
+        }
+        //新节点放在桶头，不用走到链表尾
+        tab[i] = new Node<>(hash, key, v, queue, tab[i]);
+        if (++size > threshold) {
+            //先把已经回收的全部清掉，清完还超过阈值才扩容
+            expungeStaleEntries(Integer.MAX_VALUE);
+            if (size > threshold)
+                resize();
+        }
+        return null;
+    }
+    //=========================添加==========================
+
+    //=========================删除==========================
+    /**
+     * @return  原来的value，原来的value已经被回收也返回null
+     */
+    public V remove(Object key) {
+        expungeStaleEntries(EXPUNGE_BATCH);
+        Node<K>[] tab;
+        if ((tab = table) == null)
+            return null;
+        int hash = MyHashMap.hash(key);
+        int i = (tab.length - 1) & hash;
+        for (Node<K> e = tab[i], prev = null; e != null; prev = e, e = e.next) {
+            K k;
+            if (e.hash == hash &&
+                    ((k = e.key) == key || (key != null && key.equals(k)))) {
+                unlink(tab, i, prev, e);
+                Object oldValue = e.get();
+                e.clear();
+                return unmaskNull(oldValue);
+            }
+        }
+        return null;
+    }
+
+    public void clear() {
+        Node<K>[] tab;
+        if ((tab = table) != null && size > 0) {
+            size = 0;
+            for (int i = 0; i < tab.length; ++i)
+                tab[i] = null;
+        }
+        //queue里剩下的节点已经不在表上了，直接丢掉
+        while (queue.poll() != null)
+            ;
+    }
+    //=========================删除==========================
+
+    //=========================查找==========================
+    public V get(Object key) {
+        Node<K> e; Object v;
+        return (e = getNode(key)) == null || (v = e.get()) == null ? null : unmaskNull(v);
+    }
+    public boolean containsKey(Object key) {
+        Node<K> e;
+        return (e = getNode(key)) != null && e.get() != null;
+    }
+
+    /**
+     * 已经清理过的映射数量
+     * 会先把queue里所有的节点清理掉
+     * @return
+     */
+    public int size() {
+        expungeStaleEntries(Integer.MAX_VALUE);
+        return size;
+    }
+
+    final Node<K> getNode(Object key) {
+        expungeStaleEntries(EXPUNGE_BATCH);
+        Node<K>[] tab;
+        if ((tab = table) == null)
+            return null;
+        int hash = MyHashMap.hash(key);
+        for (Node<K> e = tab[(tab.length - 1) & hash]; e != null; e = e.next) {
+            K k;
+            if (e.hash == hash &&
+                    ((k = e.key) == key || (key != null && key.equals(k))))
+                return e;
+        }
+        return null;
+    }
+    //=========================查找==========================
+
+    //=========================特色方法==========================
+    /**
+     * 从queue里取出value已经被回收的节点，从表上摘掉
+     * 节点可能已经被remove()/put()覆盖/扩容摘掉了，找不到就跳过
+     * @param max   最多清理的节点数量
+     */
+    @SuppressWarnings("unchecked")
+    final void expungeStaleEntries(int max) {
+        for (Object x; max > 0 && (x = queue.poll()) != null; --max) {
+            Node<K> stale = (Node<K>)x;
+            Node<K>[] tab;
+            if ((tab = table) == null)
+                continue;
+            int i = (tab.length - 1) & stale.hash;
+            for (Node<K> e = tab[i], prev = null; e != null; prev = e, e = e.next) {
+                if (e == stale) {
+                    unlink(tab, i, prev, e);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 与MyHashMap.resize()相同的容量计算
+     * 链表按(e.hash & oldCap)拆成低位/高位两条，保持原来的顺序
+     * value已经回收的节点顺便丢掉
+     * @return
+     */
+    final Node<K>[] resize() {
+        Node<K>[] oldTab = table;
+        int oldCap = (oldTab == null) ? 0 : oldTab.length;
+        int oldThr = threshold;
+        int newCap, newThr = 0;
+        if (oldCap > 0) {
+            if (oldCap >= MyHashMap.MAXIMUM_CAPACITY) {
+                threshold = Integer.MAX_VALUE;
+                return oldTab;
+            }
+            else if ((newCap = oldCap << 1) < MyHashMap.MAXIMUM_CAPACITY &&
+                    oldCap >= MyHashMap.DEFAULT_INITIAL_CAPACITY)
+                newThr = oldThr << 1;
+        }
+        else if (oldThr > 0)
+            newCap = oldThr;
+        else {
+            newCap = MyHashMap.DEFAULT_INITIAL_CAPACITY;
+            newThr = (int)(MyHashMap.DEFAULT_LOAD_FACTOR * MyHashMap.DEFAULT_INITIAL_CAPACITY);
+        }
+        if (newThr == 0) {
+            float ft = (float)newCap * loadFactor;
+            newThr = (newCap < MyHashMap.MAXIMUM_CAPACITY && ft < (float)MyHashMap.MAXIMUM_CAPACITY ?
+                    (int)ft : Integer.MAX_VALUE);
+        }
+        threshold = newThr;
+        @SuppressWarnings({"rawtypes","unchecked"})
+        Node<K>[] newTab = (Node<K>[])new Node[newCap];
+        table = newTab;
+        if (oldTab != null) {
+            for (int j = 0; j < oldCap; ++j) {
+                Node<K> e;
+                if ((e = oldTab[j]) == null)
+                    continue;
+                oldTab[j] = null;
+                Node<K> loHead = null, loTail = null;
+                Node<K> hiHead = null, hiTail = null;
+                Node<K> next;
+                do {
+                    next = e.next;
+                    if (e.get() == null) {
+                        //value已经回收，不再迁移(之后从queue里取出来时找不到，直接跳过)
+                        e.next = null;
+                        --size;
+                    }
+                    else if ((e.hash & oldCap) == 0) {
+                        if (loTail == null)
+                            loHead = e;
+                        else
+                            loTail.next = e;
+                        loTail = e;
+                    }
+                    else {
+                        if (hiTail == null)
+                            hiHead = e;
+                        else
+                            hiTail.next = e;
+                        hiTail = e;
+                    }
+                } while ((e = next) != null);
+                if (loTail != null) {
+                    loTail.next = null;
+                    newTab[j] = loHead;
+                }
+                if (hiTail != null) {
+                    hiTail.next = null;
+                    newTab[j + oldCap] = hiHead;
+                }
+            }
+        }
+        return newTab;
+    }
+    //=========================特色方法==========================
+
+    //=========================一些常用方法封装==========================
+    static Object maskNull(Object value) {
+        return (value == null) ? NULL_VALUE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> V unmaskNull(Object value) {
+        return (value == NULL_VALUE) ? null : (V)value;
+    }
+
+    /**
+     * 把e从i号桶的链表上摘掉
+     * @param prev  e的前一个节点，e是桶头时为null
+     */
+    final void unlink(Node<K>[] tab, int i, Node<K> prev, Node<K> e) {
+        if (prev == null)
+            tab[i] = e.next;
+        else
+            prev.next = e.next;
+        e.next = null;
+        --size;
+    }
+    //=========================一些常用方法封装==========================
+
+}
@@ -0,0 +1,308 @@
+package com.lilingyan;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * key是弱引用的MyHashMap
+ * 用来做以别人的对象为key的元数据缓存：key在外面没有强引用以后就会被GC回收，对应的映射也跟着清掉
+ *
+ * Node直接继承WeakReference，引用的就是key，注册在queue上
+ * key被回收以后Node会进入queue，之后的put/get/remove从queue里取出一批，把它们从table[]上摘掉
+ * hash扰动、tableSizeFor、扩容时机和链表拆分都与MyHashMap一样(不转红黑树)
+ *
+ * null key用NULL_KEY代替(永远不会被回收)
+ * value是强引用，value不能引用自己的key，否则key永远不会被回收
+ * size()是还没清理掉的映射数量，key已经回收、但还没进queue的映射也算在里面
+ * @Author: lilingyan
+ * @Date 2026/10/17 23:10
+ */
+public class WeakKeyMyHashMap<K,V> {
+
+    /**
+     * 代替null key
+     */
+    static final Object NULL_KEY = new Object();
+
+    /**
+     * put/get/remove每次最多从queue里清理的节点数量
+     * 大量key同时被回收时，清理的开销分摊到后续的操作上
+     * size()和扩容前会全部清理
+     */
+    static final int EXPUNGE_BATCH = 64;
+
+    static class Node<V> extends WeakReference<Object> {
+        final int hash;
+        V value;
+        Node<V> next;
+
+        Node(Object key, V value, ReferenceQueue<Object> queue, int hash, Node<V> next) {
+            super(key, queue);
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    Node<V>[] table;
+
+    /**
+     * key被回收的节点
+     */
+    final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+    final float loadFactor;
+
+    /**
+     * 扩容阈值(capacity * load factor)
+     * 表还没分配的时候，存放初始容量
+     */
+    int threshold;
+
+    int size;
+
+    //=========================构造器==========================
+    public WeakKeyMyHashMap() {
+        this.loadFactor = MyHashMap.DEFAULT_LOAD_FACTOR;
+    }
+    public WeakKeyMyHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                    initialCapacity);
+        if (initialCapacity > MyHashMap.MAXIMUM_CAPACITY)
+            initialCapacity = MyHashMap.MAXIMUM_CAPACITY;
+        if (loadFactor <= 0 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                    loadFactor);
+        this.loadFactor = loadFactor;
+        this.threshold = MyHashMap.tableSizeFor(initialCapacity);
+    }
+    //=========================构造器==========================
+
+    //=========================添加==========================
+    public V put(K key, V value) {
+        expungeStaleEntries(EXPUNGE_BATCH);
+        Object k = maskNull(key);
+        return putVal(MyHashMap.hash(k), k, value);
+    }
+
+    final V putVal(int hash, Object key, V value) {
+        Node<V>[] tab;
+        if ((tab = table) == null)
+            tab = resize();
+        int i = (tab.length - 1) & hash;
+        for (Node<V> e = tab[i]; e != null; e = e.next) {
+            Object k;
+            if (e.hash == hash && ((k = e.get()) == key || key.equals(k))) {
+                V oldValue = e.value;
+                e.value = value;
+                return oldValue;
+            }
+        }
+        //新节点放在桶头，不用走到链表尾
+        tab[i] = new Node<>(key, value, queue, hash, tab[i]);
+        if (++size > threshold) {
+            //先把已经回收的全部清掉，清完还超过阈值才扩容
+            expungeStaleEntries(Integer.MAX_VALUE);
+            if (size > threshold)
+                resize();
+        }
+        return null;
+    }
+    //=========================添加==========================
+
+    //=========================删除==========================
+    public V remove(Object key) {
+        expungeStaleEntries(EXPUNGE_BATCH);
+        Node<V>[] tab;
+        if ((tab = table) == null)
+            return null;
+        Object k = maskNull(key);
+        int hash = MyHashMap.hash(k);
+        int i = (tab.length - 1) & hash;
+        for (Node<V> e = tab[i], prev = null; e != null; prev = e, e = e.next) {
+            Object ek;
+            if (e.hash == hash && ((ek = e.get()) == k || k.equals(ek))) {
+                unlink(tab, i, prev, e);
+                //已经删掉了，key回收以后不用再进queue
+                e.clear();
+                return e.value;
+            }
+        }
+        return null;
+    }
+
+    public void clear() {
+        Node<V>[] tab;
+        if ((tab = table) != null && size > 0) {
+            size = 0;
+            for (int i = 0; i < tab.length; ++i)
+                tab[i] = null;
+        }
+        //queue里剩下的节点已经不在表上了，直接丢掉
+        while (queue.poll() != null)
+            ;
+    }
+    //=========================删除==========================
+
+    //=========================查找==========================
+    public V get(Object key) {
+        Node<V> e;
+        return (e = getNode(key)) == null ? null : e.value;
+    }
+    public boolean containsKey(Object key) {
+        return getNode(key) != null;
+    }
+
+    /**
+     * 已经清理过的映射数量
+     * 会先把queue里所有的节点清理掉
+     * @return
+     */
+    public int size() {
+        expungeStaleEntries(Integer.MAX_VALUE);
+        return size;
+    }
+
+    final Node<V> getNode(Object key) {
+        expungeStaleEntries(EXPUNGE_BATCH);
+        Node<V>[] tab;
+        if ((tab = table) == null)
+            return null;
+        Object k = maskNull(key);
+        int hash = MyHashMap.hash(k);
+        for (Node<V> e = tab[(tab.length - 1) & hash]; e != null; e = e.next) {
+            Object ek;
+            if (e.hash == hash && ((ek = e.get()) == k || k.equals(ek)))
+                return e;
+        }
+        return null;
+    }
+    //=========================查找==========================
+
+    //=========================特色方法==========================
+    /**
+     * 从queue里取出key已经被回收的节点，从表上摘掉
+     * 节点可能已经被remove()/扩容摘掉了，找不到就跳过
+     * @param max   最多清理的节点数量
+     */
+    @SuppressWarnings("unchecked")
+    final void expungeStaleEntries(int max) {
+        for (Object x; max > 0 && (x = queue.poll()) != null; --max) {
+            Node<V> stale = (Node<V>)x;
+            Node<V>[] tab;
+            if ((tab = table) == null)
+                continue;
+            int i = (tab.length - 1) & stale.hash;
+            for (Node<V> e = tab[i], prev = null; e != null; prev = e, e = e.next) {
+                if (e == stale) {
+                    unlink(tab, i, prev, e);
+                    //value可能引用了很大的对象，节点本身还在queue/调用方手里，先断开
+                    e.value = null;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 与MyHashMap.resize()相同的容量计算
+     * 链表按(e.hash & oldCap)拆成低位/高位两条，保持原来的顺序
+     * key已经回收的节点顺便丢掉
+     * @return
+     */
+    final Node<V>[] resize() {
+        Node<V>[] oldTab = table;
+        int oldCap = (oldTab == null) ? 0 : oldTab.length;
+        int oldThr = threshold;
+        int newCap, newThr = 0;
+        if (oldCap > 0) {
+            if (oldCap >= MyHashMap.MAXIMUM_CAPACITY) {
+                threshold = Integer.MAX_VALUE;
+                return oldTab;
+            }
+            else if ((newCap = oldCap << 1) < MyHashMap.MAXIMUM_CAPACITY &&
+                    oldCap >= MyHashMap.DEFAULT_INITIAL_CAPACITY)
+                newThr = oldThr << 1;
+        }
+        else if (oldThr > 0)
+            newCap = oldThr;
+        else {
+            newCap = MyHashMap.DEFAULT_INITIAL_CAPACITY;
+            newThr = (int)(MyHashMap.DEFAULT_LOAD_FACTOR * MyHashMap.DEFAULT_INITIAL_CAPACITY);
+        }
+        if (newThr == 0) {
+            float ft = (float)newCap * loadFactor;
+            newThr = (newCap < MyHashMap.MAXIMUM_CAPACITY && ft < (float)MyHashMap.MAXIMUM_CAPACITY ?
+                    (int)ft : Integer.MAX_VALUE);
+        }
+        threshold = newThr;
+        @SuppressWarnings({"rawtypes","unchecked"})
+        Node<V>[] newTab = (Node<V>[])new Node[newCap];
+        table = newTab;
+        if (oldTab != null) {
+            for (int j = 0; j < oldCap; ++j) {
+                Node<V> e;
+                if ((e = oldTab[j]) == null)
+                    continue;
+                oldTab[j] = null;
+                Node<V> loHead = null, loTail = null;
+                Node<V> hiHead = null, hiTail = null;
+                Node<V> next;
+                do {
+                    next = e.next;
+                    if (e.get() == null) {
+                        //key已经回收，不再迁移(之后从queue里取出来时找不到，直接跳过)
+                        e.next = null;
+                        e.value = null;
+                        --size;
+                    }
+                    else if ((e.hash & oldCap) == 0) {
+                        if (loTail == null)
+                            loHead = e;
+                        else
+                            loTail.next = e;
+                        loTail = e;
+                    }
+                    else {
+                        if (hiTail == null)
+                            hiHead = e;
+                        else
+                            hiTail.next = e;
+                        hiTail = e;
+                    }
+                } while ((e = next) != null);
+                if (loTail != null) {
+                    loTail.next = null;
+                    newTab[j] = loHead;
+                }
+                if (hiTail != null) {
+                    hiTail.next = null;
+                    newTab[j + oldCap] = hiHead;
+                }
+            }
+        }
+        return newTab;
+    }
+    //=========================特色方法==========================
+
+    //=========================一些常用方法封装==========================
+    static Object maskNull(Object key) {
+        return (key == null) ? NULL_KEY : key;
+    }
+
+    /**
+     * 把e从i号桶的链表上摘掉
+     * @param prev  e的前一个节点，e是桶头时为null
+     */
+    final void unlink(Node<V>[] tab, int i, Node<V> prev, Node<V> e) {
+        if (prev == null)
+            tab[i] = e.next;
+        else
+            prev.next = e.next;
+        e.next = null;
+        --size;
+    }
+    //=========================一些常用方法封装==========================
+
+}
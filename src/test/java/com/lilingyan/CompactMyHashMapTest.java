@@ -0,0 +1,125 @@
+package com.lilingyan;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @Author: lilingyan
+ * @Date 2026/10/17 20:50
+ */
+public class CompactMyHashMapTest {
+
+    private static Random random = new Random();
+
+    @Test
+    public void putAndRemoveAndGetTest(){
+        CompactMyHashMap<Integer,String> myHashMap = new CompactMyHashMap<>();
+        HashMap<Integer,String> hashMap = new HashMap<>();
+        for (int i = 0; i < 65535; i++) {
+            int key = random.nextInt(65535);
+            Assert.assertEquals(hashMap.put(key,String.valueOf(key)), myHashMap.put(key,String.valueOf(key)));
+        }
+        //null key和null value
+        Assert.assertEquals(hashMap.put(null,"null"), myHashMap.put(null,"null"));
+        Assert.assertEquals(hashMap.put(-1,null), myHashMap.put(-1,null));
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (int i = 0; i < 65535; i++) {
+            int key = random.nextInt(65535);
+            Assert.assertEquals(hashMap.containsKey(key), myHashMap.containsKey(key));
+            Assert.assertEquals(hashMap.remove(key), myHashMap.remove(key));
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        Assert.assertEquals(hashMap.get(null), myHashMap.get(null));
+        Assert.assertTrue(myHashMap.containsKey(-1));
+        for (int i = 0; i < 65535; i++)
+            Assert.assertEquals(hashMap.get(i), myHashMap.get(i));
+    }
+
+    /**
+     * 冲突严重的key在这里只有链表，删除时挪动的节点经常和被删除的节点在同一个桶里
+     */
+    @Test
+    public void collidingKeysTest(){
+        CompactMyHashMap<MyHashMapTest.BadKey,Integer> myHashMap = new CompactMyHashMap<>(0, 0.75f);
+        HashMap<MyHashMapTest.BadKey,Integer> hashMap = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            MyHashMapTest.BadKey key = new MyHashMapTest.BadKey((random.nextInt(16) << 16) | random.nextInt(1024));
+            if (random.nextInt(3) == 0)
+                Assert.assertEquals(hashMap.remove(key), myHashMap.remove(key));
+            else
+                Assert.assertEquals(hashMap.put(key,i), myHashMap.put(key,i));
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (Map.Entry<MyHashMapTest.BadKey,Integer> e : hashMap.entrySet())
+            Assert.assertEquals(e.getValue(), myHashMap.get(e.getKey()));
+    }
+
+    /**
+     * 已经有节点的map批量添加，一次扩到放得下全部节点的容量
+     */
+    @Test
+    public void putAllTest(){
+        CompactMyHashMap<Integer,Integer> myHashMap = new CompactMyHashMap<>();
+        HashMap<Integer,Integer> hashMap = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            myHashMap.put(-i - 1, i);
+            hashMap.put(-i - 1, i);
+        }
+        HashMap<Integer,Integer> more = new HashMap<>();
+        for (int i = 0; i < 10000; i++)
+            more.put(i, i);
+        myHashMap.putAll(more);
+        hashMap.putAll(more);
+        Assert.assertEquals(MyHashMap.tableSizeFor(MyHashMap.capacityFor(10010, 0.75f)), myHashMap.table.length);
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (Map.Entry<Integer,Integer> e : hashMap.entrySet())
+            Assert.assertEquals(e.getValue(), myHashMap.get(e.getKey()));
+    }
+
+    @Test
+    public void viewsTest(){
+        CompactMyHashMap<Integer,Integer> myHashMap = new CompactMyHashMap<>();
+        HashMap<Integer,Integer> hashMap = new HashMap<>();
+        for (int i = 0; i < 10000; i++)
+            hashMap.put(random.nextInt(100000), i);
+        myHashMap.putAll(hashMap);
+        Assert.assertEquals(hashMap.entrySet(), new HashSet<>(myHashMap.entrySet()));
+        Assert.assertEquals(hashMap.keySet(), myHashMap.keySet());
+
+        //setValue写回map
+        for (Map.Entry<Integer,Integer> e : myHashMap.entrySet())
+            e.setValue(-e.getKey());
+        for (Integer key : hashMap.keySet())
+            Assert.assertEquals(Integer.valueOf(-key), myHashMap.get(key));
+
+        //通过迭代器删除，不会漏掉也不会重复
+        int seen = 0, before = myHashMap.size();
+        for (Iterator<Integer> it = myHashMap.keySet().iterator(); it.hasNext(); ) {
+            Integer key = it.next();
+            ++seen;
+            if ((key & 1) == 0) {
+                it.remove();
+                hashMap.remove(key);
+            }
+        }
+        Assert.assertEquals(before, seen);
+        Assert.assertEquals(hashMap.keySet(), myHashMap.keySet());
+        Assert.assertTrue(myHashMap.entrySet().remove(
+                new java.util.AbstractMap.SimpleEntry<>(hashMap.keySet().iterator().next(),
+                        -hashMap.keySet().iterator().next())));
+
+        try {
+            for (Integer key : myHashMap.keySet())
+                myHashMap.put(-1 - key, 0);
+            Assert.fail();
+        } catch (ConcurrentModificationException expected) {
+        }
+    }
+
+}
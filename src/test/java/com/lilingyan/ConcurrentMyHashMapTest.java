@@ -0,0 +1,120 @@
+package com.lilingyan;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @Author: lilingyan
+ * @Date 2026/10/17 16:40
+ */
+public class ConcurrentMyHashMapTest {
+
+    private static final int THREADS = 4;
+    private static final int PER_THREAD = 50000;
+
+    /**
+     * 多个线程同时写各自的key，同时有线程不停地读
+     * BadKey的hash冲突严重，会经历链表转红黑树和扩容时红黑树的拆分
+     */
+    @Test
+    public void concurrentPutAndRemoveTest() throws Exception {
+        final ConcurrentMyHashMap<MyHashMapTest.BadKey,Integer> map = new ConcurrentMyHashMap<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> errors = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int base = t * PER_THREAD;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = base; i < base + PER_THREAD; i++)
+                        Assert.assertNull(map.put(key(i), i));
+                    for (int i = base; i < base + PER_THREAD; i++)
+                        Assert.assertEquals(Integer.valueOf(i), map.get(key(i)));
+                    //删除一半
+                    for (int i = base; i < base + PER_THREAD; i += 2)
+                        Assert.assertEquals(Integer.valueOf(i), map.remove(key(i)));
+                } catch (Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            }));
+        }
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            try {
+                start.await();
+                for (int i = 0; !done.get(); i = (i + 7919) % (THREADS * PER_THREAD)) {
+                    Integer v = map.get(key(i));
+                    if (v != null)
+                        Assert.assertEquals(i, v.intValue());
+                }
+            } catch (Throwable e) {
+                synchronized (errors) {
+                    errors.add(e);
+                }
+            }
+        });
+        reader.start();
+        for (Thread thread : threads)
+            thread.start();
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        done.set(true);
+        reader.join();
+        if (!errors.isEmpty())
+            throw new AssertionError(errors.get(0));
+        Assert.assertEquals(THREADS * PER_THREAD / 2, map.size());
+        for (int i = 0; i < THREADS * PER_THREAD; i++) {
+            Integer expected = (i % 2 == 0) ? null : i;
+            Assert.assertEquals(expected, map.get(key(i)));
+        }
+    }
+
+    /**
+     * 只有1024种不同的hash，每个hash有几百个key，桶都会转成红黑树
+     */
+    private static MyHashMapTest.BadKey key(int i) {
+        return new MyHashMapTest.BadKey((i << 10) | (i & 0x3FF));
+    }
+
+    @Test
+    public void putIfAbsentTest() {
+        ConcurrentMyHashMap<String,String> map = new ConcurrentMyHashMap<>();
+        Assert.assertNull(map.putIfAbsent("a", "1"));
+        Assert.assertEquals("1", map.putIfAbsent("a", "2"));
+        Assert.assertEquals("1", map.get("a"));
+        Assert.assertTrue(map.containsKey("a"));
+        Assert.assertEquals(1, map.size());
+    }
+
+    /**
+     * hash全部相同，桶转成红黑树，再删到退化成链表，之后还能继续插入、转回红黑树
+     */
+    @Test
+    public void treeBinTest() {
+        ConcurrentMyHashMap<MyHashMapTest.BadKey,Integer> map = new ConcurrentMyHashMap<>(64, 0.75f);
+        int hash = MyHashMap.hash(new MyHashMapTest.BadKey(5));
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 64; i++)
+                Assert.assertNull(map.put(new MyHashMapTest.BadKey((i << 16) | 5), i));
+            Assert.assertTrue(map.table.get(hash & (map.table.length() - 1)) instanceof ConcurrentMyHashMap.TreeBin);
+            for (int i = 2; i < 64; i++)
+                Assert.assertEquals(Integer.valueOf(i), map.remove(new MyHashMapTest.BadKey((i << 16) | 5)));
+            Assert.assertFalse(map.table.get(hash & (map.table.length() - 1)) instanceof ConcurrentMyHashMap.TreeBin);
+            Assert.assertEquals(2, map.size());
+            for (int i = 0; i < 64; i++)
+                Assert.assertEquals(i < 2 ? Integer.valueOf(i) : null, map.get(new MyHashMapTest.BadKey((i << 16) | 5)));
+            map.remove(new MyHashMapTest.BadKey(5));
+            map.remove(new MyHashMapTest.BadKey((1 << 16) | 5));
+            Assert.assertEquals(0, map.size());
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.lilingyan;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * @Author: lilingyan
+ * @Date 2026/10/17 11:20
+ */
+public class IntObjMyHashMapTest {
+
+    private static Random random = new Random();
+
+    @Test
+    public void putAndRemoveAndGetTest(){
+        IntObjMyHashMap<String> myHashMap = new IntObjMyHashMap<>();
+        HashMap<Integer,String> hashMap = new HashMap<>();
+        for (int i = 0; i < 65535; i++) {
+            //包含0和负数
+            int key = random.nextInt(65535) - 1024;
+            Assert.assertEquals(hashMap.put(key,String.valueOf(key)), myHashMap.put(key,String.valueOf(key)));
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (int i = 0; i < 65535; i++) {
+            int key = random.nextInt(65535) - 1024;
+            Assert.assertEquals(hashMap.containsKey(key), myHashMap.containsKey(key));
+            Assert.assertEquals(hashMap.remove(key), myHashMap.remove(key));
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (int i = -1024; i < 65535; i++)
+            Assert.assertEquals(hashMap.get(i), myHashMap.get(i));
+    }
+
+    /**
+     * i*65537用MyHashMap.spread()扰动以后低16位全是0，hash必须把它们打散
+     */
+    @Test
+    public void structuredKeysTest(){
+        IntObjMyHashMap<Integer> myHashMap = new IntObjMyHashMap<>();
+        for (int i = 1; i <= 50000; i++)
+            Assert.assertNull(myHashMap.put(i * 65537, i));
+        int mask = myHashMap.keys.length - 1, maxProbe = 0;
+        for (int i = 0; i <= mask; i++) {
+            int k;
+            if ((k = myHashMap.keys[i]) != IntObjMyHashMap.FREE_KEY)
+                maxProbe = Math.max(maxProbe, (i - IntObjMyHashMap.hash(k)) & mask);
+        }
+        Assert.assertTrue("max probe " + maxProbe, maxProbe < 64);
+        for (int i = 1; i <= 50000; i++)
+            Assert.assertEquals(Integer.valueOf(i), myHashMap.get(i * 65537));
+    }
+}
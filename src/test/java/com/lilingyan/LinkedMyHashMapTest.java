@@ -0,0 +1,140 @@
+package com.lilingyan;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @Author: lilingyan
+ * @Date 2026/10/17 18:10
+ */
+public class LinkedMyHashMapTest {
+
+    private static Random random = new Random();
+
+    @Test
+    public void insertionOrderTest(){
+        LinkedMyHashMap<Integer,String> myHashMap = new LinkedMyHashMap<>();
+        LinkedHashMap<Integer,String> hashMap = new LinkedHashMap<>();
+        for (int i = 0; i < 65535; i++) {
+            int key = random.nextInt(65535);
+            Assert.assertEquals(hashMap.put(key,String.valueOf(key)), myHashMap.put(key,String.valueOf(key)));
+        }
+        for (int i = 0; i < 30000; i++) {
+            int key = random.nextInt(65535);
+            Assert.assertEquals(hashMap.remove(key), myHashMap.remove(key));
+        }
+        assertSameOrder(hashMap, myHashMap);
+    }
+
+    /**
+     * 冲突的key会转红黑树，扩容时又会拆分/转回链表，节点替换以后链表顺序不能乱
+     */
+    @Test
+    public void accessOrderTest(){
+        LinkedMyHashMap<MyHashMapTest.BadKey,Integer> myHashMap = new LinkedMyHashMap<>(16, 0.75f, true);
+        myHashMap.setIncrementalResize(2);
+        LinkedHashMap<MyHashMapTest.BadKey,Integer> hashMap = new LinkedHashMap<>(16, 0.75f, true);
+        for (int i = 0; i < 100000; i++) {
+            MyHashMapTest.BadKey key = new MyHashMapTest.BadKey(random.nextInt(1 << 18));
+            switch (random.nextInt(6)) {
+                case 0:
+                    Assert.assertEquals(hashMap.put(key,i), myHashMap.put(key,i));
+                    break;
+                case 1:
+                    Assert.assertEquals(hashMap.get(key), myHashMap.get(key));
+                    break;
+                case 2:
+                    Assert.assertEquals(hashMap.getOrDefault(key,-1), myHashMap.getOrDefault(key,-1));
+                    break;
+                case 3:
+                    Assert.assertEquals(hashMap.computeIfAbsent(key,k -> k.value),
+                            myHashMap.computeIfAbsent(key,k -> k.value));
+                    break;
+                case 4:
+                    Assert.assertEquals(hashMap.merge(key,1,Integer::sum), myHashMap.merge(key,1,Integer::sum));
+                    break;
+                default:
+                    Assert.assertEquals(hashMap.remove(key), myHashMap.remove(key));
+            }
+        }
+        assertSameOrder(hashMap, myHashMap);
+    }
+
+    @Test
+    public void lruCacheTest(){
+        final int max = 1000;
+        LinkedMyHashMap<Integer,Integer> myHashMap = LinkedMyHashMap.lruCache(max);
+        LinkedHashMap<Integer,Integer> hashMap = new LinkedHashMap<Integer,Integer>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Integer,Integer> eldest) {
+                return size() > max;
+            }
+        };
+        myHashMap.put(-1, -1);
+        int capacity = myHashMap.table.length;
+        hashMap.put(-1, -1);
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextInt(4000);
+            if (random.nextBoolean())
+                Assert.assertEquals(hashMap.put(key,i), myHashMap.put(key,i));
+            else
+                Assert.assertEquals(hashMap.get(key), myHashMap.get(key));
+            Assert.assertTrue(myHashMap.size() <= max);
+        }
+        assertSameOrder(hashMap, myHashMap);
+        //容量按maxEntries预先算好，装满以后不会再扩容
+        Assert.assertEquals(capacity, myHashMap.table.length);
+
+        //自定义淘汰策略，按插入顺序只保留最后50个
+        LinkedMyHashMap<Integer,Integer> fifo = new LinkedMyHashMap<Integer,Integer>() {
+            protected boolean removeEldestEntry(Map.Entry<Integer,Integer> eldest) {
+                return size() > 50;
+            }
+        };
+        for (int i = 0; i < 100; i++)
+            fifo.put(i, i);
+        Assert.assertEquals(50, fifo.size());
+        Assert.assertNull(fifo.get(49));
+        Assert.assertEquals(Integer.valueOf(50), fifo.get(50));
+    }
+
+    @Test
+    public void iteratorRemoveTest(){
+        LinkedMyHashMap<Integer,Integer> myHashMap = new LinkedMyHashMap<>(16, 0.75f, true);
+        for (int i = 0; i < 1000; i++)
+            myHashMap.put(i, i);
+        for (Iterator<Integer> it = myHashMap.keySet().iterator(); it.hasNext(); ) {
+            if (it.next() % 3 == 0)
+                it.remove();
+        }
+        Assert.assertEquals(666, myHashMap.size());
+        Iterator<Integer> it = myHashMap.values().iterator();
+        it.next();
+        //访问顺序下get也是结构修改(999已经在链表尾部，用1)
+        myHashMap.get(1);
+        try {
+            it.next();
+            Assert.fail();
+        } catch (java.util.ConcurrentModificationException expected) {
+        }
+    }
+
+    private static <K,V> void assertSameOrder(LinkedHashMap<K,V> hashMap, LinkedMyHashMap<K,V> myHashMap){
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        List<Map.Entry<K,V>> expected = new ArrayList<>(hashMap.entrySet());
+        List<Map.Entry<K,V>> actual = new ArrayList<>();
+        for (Map.Entry<K,V> e : myHashMap.entrySet())
+            actual.add(e);
+        Assert.assertEquals(expected, actual);
+        //forEach和迭代器顺序一样
+        List<Map.Entry<K,V>> forEach = new ArrayList<>();
+        myHashMap.entrySet().forEach(forEach::add);
+        Assert.assertEquals(expected, forEach);
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.lilingyan;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @Author: lilingyan
+ * @Date 2026/10/17 23:30
+ */
+public class LongLongMyHashMapTest {
+
+    private static Random random = new Random();
+
+    @Test
+    public void putAndRemoveAndGetTest(){
+        LongLongMyHashMap myHashMap = new LongLongMyHashMap();
+        HashMap<Long,Long> hashMap = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            //包含0和负数
+            long key = random.nextInt(65535) - 1024 + ((long)random.nextInt(4) << 32);
+            long value = random.nextLong();
+            if (random.nextInt(3) == 0) {
+                Long old = hashMap.remove(key);
+                Assert.assertEquals(old == null ? 0L : old, myHashMap.remove(key));
+            }
+            else {
+                Long old = hashMap.put(key, value);
+                Assert.assertEquals(old == null ? 0L : old, myHashMap.put(key, value));
+            }
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (int i = 0; i < 65535; i++) {
+            long key = random.nextInt(65535) - 1024 + ((long)random.nextInt(4) << 32);
+            Assert.assertEquals(hashMap.containsKey(key), myHashMap.containsKey(key));
+            Assert.assertEquals(hashMap.getOrDefault(key, -7L).longValue(), myHashMap.getOrDefault(key, -7L));
+            Assert.assertEquals(hashMap.getOrDefault(key, 0L).longValue(), myHashMap.get(key));
+        }
+    }
+
+    @Test
+    public void addToTest(){
+        LongLongMyHashMap myHashMap = new LongLongMyHashMap(4, 0.5f);
+        HashMap<Long,Long> hashMap = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            long key = random.nextInt(20000) - 100;
+            if (random.nextBoolean()) {
+                long delta = random.nextInt(1000) - 500;
+                Assert.assertEquals(hashMap.merge(key, delta, Long::sum).longValue(), myHashMap.addTo(key, delta));
+            }
+            else
+                Assert.assertEquals(hashMap.merge(key, 1L, Long::sum).longValue(), myHashMap.incrementAndGet(key));
+            if (random.nextInt(10) == 0)
+                Assert.assertEquals(hashMap.remove(key).longValue(), myHashMap.remove(key));
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (Map.Entry<Long,Long> e : hashMap.entrySet()) {
+            Assert.assertTrue(myHashMap.containsKey(e.getKey()));
+            Assert.assertEquals(e.getValue().longValue(), myHashMap.get(e.getKey()));
+        }
+        //加到0也还是一个映射
+        myHashMap.put(5L, 3L);
+        Assert.assertEquals(0L, myHashMap.addTo(5L, -3L));
+        Assert.assertTrue(myHashMap.containsKey(5L));
+        Assert.assertEquals(hashMap.getOrDefault(0L, 0L).longValue(), myHashMap.remove(0L));
+        Assert.assertFalse(myHashMap.containsKey(0L));
+        Assert.assertEquals(1L, myHashMap.incrementAndGet(0L));
+        Assert.assertEquals(1L, myHashMap.remove(0L));
+        Assert.assertEquals(-1L, myHashMap.getOrDefault(0L, -1L));
+    }
+
+    /**
+     * i*(2^32+1)这样高低32位相同的key，高32位异或低32位以后全是0
+     * hash要把64位都打散，线性探测的距离才不会越来越长
+     */
+    @Test
+    public void structuredKeysTest(){
+        LongLongMyHashMap myHashMap = new LongLongMyHashMap();
+        for (long i = 1; i <= 50000; i++)
+            Assert.assertEquals(1L, myHashMap.incrementAndGet(i * ((1L << 32) + 1)));
+        int mask = myHashMap.keys.length - 1, maxProbe = 0;
+        for (int i = 0; i <= mask; i++) {
+            long k;
+            if ((k = myHashMap.keys[i]) != LongLongMyHashMap.FREE_KEY)
+                maxProbe = Math.max(maxProbe, (i - LongLongMyHashMap.hash(k)) & mask);
+        }
+        Assert.assertTrue("max probe " + maxProbe, maxProbe < 64);
+        for (long i = 1; i <= 50000; i++)
+            Assert.assertEquals(1L, myHashMap.get(i * ((1L << 32) + 1)));
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.lilingyan;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * @Author: lilingyan
+ * @Date 2026/10/17 11:20
+ */
+public class LongObjMyHashMapTest {
+
+    private static Random random = new Random();
+
+    @Test
+    public void putAndRemoveAndGetTest(){
+        LongObjMyHashMap<String> myHashMap = new LongObjMyHashMap<>();
+        HashMap<Long,String> hashMap = new HashMap<>();
+        for (int i = 0; i < 65535; i++) {
+            //包含0和负数
+            long key = random.nextInt(65535) - 1024 + ((long)random.nextInt(4) << 32);
+            Assert.assertEquals(hashMap.put(key,String.valueOf(key)), myHashMap.put(key,String.valueOf(key)));
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (int i = 0; i < 65535; i++) {
+            long key = random.nextInt(65535) - 1024 + ((long)random.nextInt(4) << 32);
+            Assert.assertEquals(hashMap.containsKey(key), myHashMap.containsKey(key));
+            Assert.assertEquals(hashMap.remove(key), myHashMap.remove(key));
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (Long key : hashMap.keySet())
+            Assert.assertEquals(hashMap.get(key), myHashMap.get(key));
+        for (int i = 0; i < 65535; i++) {
+            long key = random.nextInt(65535) - 1024 + ((long)random.nextInt(4) << 32);
+            Assert.assertEquals(hashMap.get(key), myHashMap.get(key));
+        }
+    }
+
+    /**
+     * i*(2^32+1)的高32位和低32位相同，Long.hashCode()全部是0，hash必须把它们打散
+     */
+    @Test
+    public void structuredKeysTest(){
+        LongObjMyHashMap<Long> myHashMap = new LongObjMyHashMap<>();
+        for (long i = 1; i <= 50000; i++)
+            Assert.assertNull(myHashMap.put(i * ((1L << 32) + 1), i));
+        int mask = myHashMap.keys.length - 1, maxProbe = 0;
+        for (int i = 0; i <= mask; i++) {
+            long k;
+            if ((k = myHashMap.keys[i]) != LongObjMyHashMap.FREE_KEY)
+                maxProbe = Math.max(maxProbe, (i - LongObjMyHashMap.hash(k)) & mask);
+        }
+        Assert.assertTrue("max probe " + maxProbe, maxProbe < 64);
+        for (long i = 1; i <= 50000; i++)
+            Assert.assertEquals(Long.valueOf(i), myHashMap.get(i * ((1L << 32) + 1)));
+    }
+}
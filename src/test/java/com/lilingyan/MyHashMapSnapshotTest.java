@@ -0,0 +1,166 @@
+package com.lilingyan;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @Author: lilingyan
+ * @Date 2026/10/17 21:30
+ */
+public class MyHashMapSnapshotTest {
+
+    private static Random random = new Random();
+
+    private static final MyHashMapSnapshot.Codec<MyHashMapTest.BadKey> BAD_KEY =
+            new MyHashMapSnapshot.Codec<MyHashMapTest.BadKey>() {
+                public int sizeOf(MyHashMapTest.BadKey value)                 { return 4; }
+                public void write(MyHashMapTest.BadKey value, ByteBuffer buf) { buf.putInt(value.value); }
+                public MyHashMapTest.BadKey read(ByteBuffer buf) {
+                    return new MyHashMapTest.BadKey(buf.getInt());
+                }
+            };
+
+    @Test
+    public void writeAndReadTest() throws IOException {
+        MyHashMap<Integer,String> myHashMap = new MyHashMap<>();
+        HashMap<Integer,String> hashMap = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(1 << 20);
+            String value = random.nextInt(10) == 0 ? null : "v" + key;
+            myHashMap.put(key, value);
+            hashMap.put(key, value);
+        }
+        myHashMap.put(null, "null");
+        hashMap.put(null, "null");
+        File file = File.createTempFile("snapshot", ".bin");
+        file.deleteOnExit();
+        MyHashMapSnapshot.write(myHashMap, file.toPath(), MyHashMapSnapshot.INT, MyHashMapSnapshot.STRING);
+
+        //窗口设小一点，覆盖重新映射的逻辑
+        MyHashMap<Integer,String> loaded = MyHashMapSnapshot.read(file.toPath(),
+                MyHashMapSnapshot.INT, MyHashMapSnapshot.STRING, 4096);
+        Assert.assertEquals(myHashMap.table.length, loaded.table.length);
+        Assert.assertEquals(myHashMap.threshold, loaded.threshold);
+        Assert.assertEquals(hashMap.size(), loaded.size());
+        for (Map.Entry<Integer,String> e : hashMap.entrySet()) {
+            Assert.assertTrue(loaded.containsKey(e.getKey()));
+            Assert.assertEquals(e.getValue(), loaded.get(e.getKey()));
+        }
+        //加载后还能正常添加(会正常扩容)
+        for (int i = 0; i < 100000; i++)
+            loaded.put(-1 - i, "n");
+        Assert.assertEquals(hashMap.size() + 100000, loaded.size());
+    }
+
+    @Test
+    public void treeBinTest() throws IOException {
+        MyHashMap<MyHashMapTest.BadKey,Long> myHashMap = new MyHashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            int key = (random.nextInt(64) << 16) | random.nextInt(512);
+            myHashMap.put(new MyHashMapTest.BadKey(key), (long)key);
+        }
+        File file = File.createTempFile("snapshot", ".bin");
+        file.deleteOnExit();
+        MyHashMapSnapshot.write(myHashMap, file.toPath(), BAD_KEY, MyHashMapSnapshot.LONG);
+        MyHashMap<MyHashMapTest.BadKey,Long> loaded = MyHashMapSnapshot.read(file.toPath(),
+                BAD_KEY, MyHashMapSnapshot.LONG);
+        Assert.assertEquals(myHashMap.size(), loaded.size());
+        for (int i = 0; i < myHashMap.table.length; i++) {
+            MyHashMap.Node<MyHashMapTest.BadKey,Long> e = myHashMap.table[i];
+            Assert.assertEquals(e instanceof MyHashMap.TreeNode, loaded.table[i] instanceof MyHashMap.TreeNode);
+        }
+        for (MyHashMap.Node<MyHashMapTest.BadKey,Long> first : myHashMap.table) {
+            for (MyHashMap.Node<MyHashMapTest.BadKey,Long> e = first; e != null; e = e.next)
+                Assert.assertEquals(e.value, loaded.get(e.key));
+        }
+        Assert.assertNull(loaded.get(new MyHashMapTest.BadKey(1 << 30)));
+    }
+
+    /**
+     * hashCode每次运行都不一样的key(用salt模拟另一个JVM)
+     */
+    static final class SaltedKey {
+        static int salt;
+        final int id;
+        SaltedKey(int id) {
+            this.id = id;
+        }
+        @Override
+        public int hashCode() {
+            return HashStrategy.fmix32(id ^ salt);
+        }
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SaltedKey && ((SaltedKey)o).id == id;
+        }
+    }
+
+    private static final MyHashMapSnapshot.Codec<SaltedKey> SALTED_KEY =
+            new MyHashMapSnapshot.Codec<SaltedKey>() {
+                public int sizeOf(SaltedKey value)                 { return 4; }
+                public void write(SaltedKey value, ByteBuffer buf) { buf.putInt(value.id); }
+                public SaltedKey read(ByteBuffer buf)              { return new SaltedKey(buf.getInt()); }
+            };
+
+    @Test
+    public void unstableHashTest() throws IOException {
+        MyHashMap<SaltedKey,Integer> myHashMap = new MyHashMap<>();
+        for (int i = 0; i < 10000; i++)
+            myHashMap.put(new SaltedKey(i), i);
+        myHashMap.put(null, -1);
+        File file = File.createTempFile("snapshot", ".bin");
+        file.deleteOnExit();
+        MyHashMapSnapshot.write(myHashMap, file.toPath(), SALTED_KEY, MyHashMapSnapshot.INT);
+        SaltedKey.salt = 0x5bd1e995;
+        try {
+            MyHashMap<SaltedKey,Integer> loaded = MyHashMapSnapshot.read(file.toPath(),
+                    SALTED_KEY, MyHashMapSnapshot.INT);
+            Assert.assertEquals(10001, loaded.size());
+            for (int i = 0; i < 10000; i++)
+                Assert.assertEquals(Integer.valueOf(i), loaded.get(new SaltedKey(i)));
+            Assert.assertEquals(Integer.valueOf(-1), loaded.get(null));
+            int n = 0;
+            for (MyHashMap.Node<SaltedKey,Integer> first : loaded.table) {
+                for (MyHashMap.Node<SaltedKey,Integer> e = first; e != null; e = e.next, ++n)
+                    Assert.assertEquals(MyHashMap.hash(e.key), e.hash);
+            }
+            Assert.assertEquals(10001, n);
+        } finally {
+            SaltedKey.salt = 0;
+        }
+    }
+
+    @Test
+    public void corruptTest() throws IOException {
+        MyHashMap<Integer,Integer> myHashMap = new MyHashMap<>();
+        for (int i = 0; i < 1000; i++)
+            myHashMap.put(i, i);
+        File file = File.createTempFile("snapshot", ".bin");
+        file.deleteOnExit();
+        MyHashMapSnapshot.write(myHashMap, file.toPath(), MyHashMapSnapshot.INT, MyHashMapSnapshot.INT);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        try {
+            MyHashMapSnapshot.read(file.toPath(), MyHashMapSnapshot.INT, MyHashMapSnapshot.INT);
+            Assert.fail();
+        } catch (IOException expected) {
+        }
+
+        MyHashMap<Integer,Integer> seeded = new MyHashMap<>();
+        seeded.setHashStrategy(HashStrategy.seeded());
+        try {
+            MyHashMapSnapshot.write(seeded, file.toPath(), MyHashMapSnapshot.INT, MyHashMapSnapshot.INT);
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+}
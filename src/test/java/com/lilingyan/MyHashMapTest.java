@@ -2,8 +2,26 @@ package com.lilingyan;
 
 import org.junit.Assert;
 import org.junit.Test;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @Author: lilingyan
@@ -43,4 +61,892 @@ public class MyHashMapTest {
         }
     }
 
+    @Test
+    public void incrementalResizeTest(){
+        MyHashMap<Integer,String> myHashMap = new MyHashMap<>();
+        myHashMap.setIncrementalResize(1);
+        HashMap<Integer,String> hashMap = new HashMap<>();
+        int resizes = 0;
+        for (int i = 0; i < 65535; i++) {
+            int key = random.nextInt(65535);
+            if (!hashMap.containsKey(key) && myHashMap.size >= myHashMap.threshold) {
+                //这次put会扩容，上一次扩容的旧桶必须已经迁移完
+                Assert.assertNull(myHashMap.oldTable);
+                ++resizes;
+            }
+            myHashMap.put(key,String.valueOf(key));
+            hashMap.put(key,String.valueOf(key));
+            int probe = random.nextInt(65535);
+            Assert.assertEquals(hashMap.get(probe), myHashMap.get(probe));
+            if (i % 3 == 0)
+                Assert.assertEquals(hashMap.remove(probe), myHashMap.remove(probe));
+        }
+        Assert.assertTrue(resizes > 5);
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (Integer key : hashMap.keySet())
+            Assert.assertEquals(hashMap.get(key), myHashMap.get(key));
+        myHashMap.setIncrementalResize(0);
+        Assert.assertNull(myHashMap.oldTable);
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+
+        //只有插入，没有get/remove帮忙迁移，每次迁移1个桶也要在下一次扩容前迁移完
+        MyHashMap<Integer,Integer> putOnly = new MyHashMap<>();
+        putOnly.setIncrementalResize(1);
+        HashSet<Integer> keys = new HashSet<>();
+        boolean sawTransfer = false;
+        for (int i = 0; i < 1 << 18; i++) {
+            int key = random.nextInt();
+            if (keys.add(key) && putOnly.size >= putOnly.threshold)
+                Assert.assertNull(putOnly.oldTable);
+            putOnly.put(key, i);
+            sawTransfer |= putOnly.oldTable != null;
+        }
+        Assert.assertTrue(sawTransfer);
+    }
+
+    @Test
+    public void parallelResizeTest(){
+        MyHashMap<BadKey,Integer> myHashMap = new MyHashMap<>();
+        myHashMap.setParallelResize(1);
+        HashMap<BadKey,Integer> hashMap = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextInt(1 << 20);
+            myHashMap.put(new BadKey(key),key);
+            hashMap.put(new BadKey(key),key);
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (int i = 0; i < 200000; i++) {
+            BadKey key = new BadKey(random.nextInt(1 << 20));
+            Assert.assertEquals(hashMap.get(key), myHashMap.get(key));
+        }
+
+        //key = (m << 13) | t，hash()以后第13位往上是m的低位
+        //容量2^17时每个桶16个节点(红黑树)，扩容到2^18时按m的第4位拆成两棵各8个节点的红黑树
+        MyHashMap<Integer,Integer> trees = new MyHashMap<>();
+        trees.setParallelResize(1);
+        MyHashMapStats stats = trees.enableStats();
+        HashMap<Integer,Integer> expected = new HashMap<>();
+        for (int m = 0; m < 256; m++) {
+            for (int t = 0; t < 256; t++) {
+                int key = (m << 13) | t;
+                trees.put(key, m);
+                expected.put(key, m);
+            }
+        }
+        int oldCap = trees.table.length;
+        Assert.assertEquals(1 << 17, oldCap);
+        for (Integer key : expected.keySet())
+            Assert.assertTrue(trees.table[MyHashMap.hash(key) & (oldCap - 1)] instanceof MyHashMap.TreeNode);
+        long splits = stats.getSplitCount(), parallelResizes = stats.getParallelResizeCount();
+        trees.resize();
+        Assert.assertEquals(oldCap << 1, trees.table.length);
+        Assert.assertEquals(parallelResizes + 1, stats.getParallelResizeCount());
+        Assert.assertTrue(stats.getSplitCount() > splits);
+        Assert.assertEquals(0L, stats.getUntreeifyCount());
+        boolean bothHalves = false;
+        for (Integer key : expected.keySet()) {
+            int j = MyHashMap.hash(key) & (oldCap - 1);
+            Assert.assertTrue(trees.table[MyHashMap.hash(key) & ((oldCap << 1) - 1)] instanceof MyHashMap.TreeNode);
+            bothHalves |= trees.table[j] instanceof MyHashMap.TreeNode &&
+                    trees.table[j + oldCap] instanceof MyHashMap.TreeNode;
+        }
+        Assert.assertTrue(bothHalves);
+        Assert.assertEquals(expected.entrySet(), trees.entrySet());
+        for (Map.Entry<Integer,Integer> e : expected.entrySet())
+            Assert.assertEquals(e.getValue(), trees.get(e.getKey()));
+    }
+
+    @Test
+    public void putAllTest(){
+        HashMap<Integer,String> hashMap = new HashMap<>();
+        for (int i = 0; i < 65535; i++) {
+            int key = random.nextInt(65535);
+            hashMap.put(key,String.valueOf(key));
+        }
+        MyHashMap<Integer,String> myHashMap = new MyHashMap<>();
+        myHashMap.putAll(hashMap);
+        //按最终数量一次分配好，添加过程中没有扩容
+        Assert.assertEquals(MyHashMap.tableSizeFor(MyHashMap.capacityFor(hashMap.size(), 0.75f)),
+                myHashMap.table.length);
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+
+        Integer[] keys = hashMap.keySet().toArray(new Integer[0]);
+        String[] values = new String[keys.length];
+        MyHashMap.Builder<Integer,String> builder = MyHashMap.builder();
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = hashMap.get(keys[i]);
+            builder.put(keys[i], values[i]);
+        }
+        MyHashMap<Integer,String> built = builder.build();
+        MyHashMap<Integer,String> fromArrays = new MyHashMap<>();
+        fromArrays.put(-1, "-1");
+        fromArrays.putAll(keys, values);
+        Assert.assertEquals(hashMap.size(), built.size());
+        Assert.assertEquals(hashMap.size() + 1, fromArrays.size());
+        for (Integer key : keys) {
+            Assert.assertEquals(hashMap.get(key), myHashMap.get(key));
+            Assert.assertEquals(hashMap.get(key), built.get(key));
+            Assert.assertEquals(hashMap.get(key), fromArrays.get(key));
+        }
+
+        //表已经分配并且有红黑树桶时，putAll()直接扩到最终容量，只扩容一次
+        for (int incremental = 0; incremental <= 1; incremental++) {
+            MyHashMap<Integer,Integer> populated = new MyHashMap<>();
+            HashMap<Integer,Integer> expected = new HashMap<>();
+            for (int m = 0; m < 32; m++) {
+                for (int t = 0; t < 4; t++) {
+                    populated.put((m << 10) | t, m);
+                    expected.put((m << 10) | t, m);
+                }
+            }
+            Assert.assertTrue(populated.table[0] instanceof MyHashMap.TreeNode);
+            populated.setIncrementalResize(incremental);
+            MyHashMapStats stats = populated.enableStats();
+            HashMap<Integer,Integer> more = new HashMap<>();
+            while (more.size() < 100000)
+                more.put((1 << 20) + random.nextInt(1 << 24), 1);
+            expected.putAll(more);
+            populated.putAll(more);
+            Assert.assertEquals(1L, stats.getResizeCount());
+            Assert.assertEquals(MyHashMap.tableSizeFor(MyHashMap.capacityFor(expected.size(), 0.75f)),
+                    populated.table.length);
+            Assert.assertEquals(expected.size(), populated.size());
+            for (Map.Entry<Integer,Integer> e : expected.entrySet())
+                Assert.assertEquals(e.getValue(), populated.get(e.getKey()));
+            Assert.assertEquals(expected.entrySet(), populated.entrySet());
+        }
+    }
+
+    @Test
+    public void viewsTest(){
+        MyHashMap<BadKey,Integer> myHashMap = new MyHashMap<>();
+        HashMap<BadKey,Integer> hashMap = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(1 << 20);
+            myHashMap.put(new BadKey(key),key);
+            hashMap.put(new BadKey(key),key);
+        }
+        Assert.assertEquals(hashMap.entrySet(), new HashSet<>(myHashMap.entrySet()));
+        Assert.assertEquals(hashMap.keySet(), new HashSet<>(myHashMap.keySet()));
+        Assert.assertEquals(hashMap.values().stream().mapToLong(v -> v).sum(),
+                myHashMap.values().parallelStream().mapToLong(v -> v).sum());
+        Assert.assertEquals(hashMap.size(), myHashMap.keySet().parallelStream().toArray().length);
+
+        //每次拆分后两边的大小都是准确的
+        Spliterator<Map.Entry<BadKey,Integer>> right = myHashMap.entrySet().spliterator();
+        Spliterator<Map.Entry<BadKey,Integer>> left = right.trySplit();
+        Assert.assertTrue(right.hasCharacteristics(Spliterator.SUBSIZED));
+        long leftSize = left.estimateSize(), rightSize = right.estimateSize();
+        Assert.assertEquals(hashMap.size(), leftSize + rightSize);
+        long[] counted = new long[1];
+        left.forEachRemaining(e -> counted[0]++);
+        Assert.assertEquals(leftSize, counted[0]);
+
+        //通过迭代器删除
+        for (Iterator<BadKey> it = myHashMap.keySet().iterator(); it.hasNext(); ) {
+            BadKey key = it.next();
+            if (key.value % 2 == 0) {
+                it.remove();
+                hashMap.remove(key);
+            }
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        Assert.assertEquals(hashMap.keySet(), new HashSet<>(myHashMap.keySet()));
+
+        //遍历时修改map
+        try {
+            for (BadKey key : myHashMap.keySet())
+                myHashMap.put(new BadKey(-1 - key.value), 0);
+            Assert.fail();
+        } catch (ConcurrentModificationException expected) {
+        }
+    }
+
+    @Test
+    public void statsTest() throws Exception {
+        MyHashMap<BadKey,Integer> myHashMap = new MyHashMap<>();
+        MyHashMapStats stats = myHashMap.enableStats();
+        Assert.assertSame(stats, myHashMap.enableStats());
+        File file = File.createTempFile("stats", ".jfr");
+        file.deleteOnExit();
+        try (Recording recording = new Recording()) {
+            recording.enable("com.lilingyan.MyHashMapResize");
+            recording.enable("com.lilingyan.MyHashMapTreeify");
+            recording.start();
+            for (int i = 0; i < 100000; i++) {
+                //只有256种hash，每种最多64个key
+                int key = (random.nextInt(64) << 16) | random.nextInt(256);
+                myHashMap.put(new BadKey(key),key);
+            }
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+        int resizeEvents = 0, treeifyEvents = 0;
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            String name = event.getEventType().getName();
+            if (name.equals("com.lilingyan.MyHashMapResize"))
+                ++resizeEvents;
+            else if (name.equals("com.lilingyan.MyHashMapTreeify"))
+                ++treeifyEvents;
+        }
+        Assert.assertEquals(stats.getResizeCount(), resizeEvents);
+        Assert.assertEquals(stats.getTreeifyCount(), treeifyEvents);
+        Assert.assertTrue(stats.getTreeifyCount() > 0);
+        Assert.assertTrue(stats.getSplitCount() > 0);
+        Assert.assertTrue(stats.getTreeBinShare() > 0.0);
+        long puts = stats.getTreeBinPuts();
+        for (long c : stats.getPutProbeHistogram())
+            puts += c;
+        Assert.assertEquals(100000, puts);
+
+        //JMX
+        ObjectName name = stats.register("statsTest");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (int i = 0; i < 1000; i++)
+            myHashMap.get(new BadKey(i));
+        long gets = (Long)server.getAttribute(name, "TreeBinGets");
+        for (long c : (long[])server.getAttribute(name, "GetProbeHistogram"))
+            gets += c;
+        Assert.assertEquals(1000, gets);
+        Assert.assertEquals(myHashMap.size(), server.getAttribute(name, "Size"));
+        server.invoke(name, "reset", null, null);
+        Assert.assertEquals(0L, stats.getResizeCount());
+
+        //同一个名字再注册什么都不做，换名字时注销原来的名字
+        Assert.assertEquals(name, stats.register("statsTest"));
+        ObjectName renamed = stats.register("statsTest2");
+        Assert.assertFalse(server.isRegistered(name));
+        Assert.assertTrue(server.isRegistered(renamed));
+        name = renamed;
+
+        //关闭统计时一起注销
+        myHashMap.disableStats();
+        Assert.assertNull(myHashMap.getStats());
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void hashStrategyTest(){
+        //低位全是0的key，默认的扰动只能用到1/16的桶
+        MyHashMap<Integer,Integer> spread = new MyHashMap<>();
+        MyHashMap<Integer,Integer> murmur = MyHashMap.<Integer,Integer>builder()
+                .hashStrategy(HashStrategy.MURMUR3).build();
+        MyHashMap<Integer,Integer> seeded = new MyHashMap<>();
+        seeded.setHashStrategy(HashStrategy.seeded());
+        MyHashMapStats spreadStats = spread.enableStats(), murmurStats = murmur.enableStats();
+        HashMap<Integer,Integer> hashMap = new HashMap<>();
+        for (int i = 0; i < 4096; i++) {
+            int key = i << 20;
+            spread.put(key, i);
+            murmur.put(key, i);
+            seeded.put(key, i);
+            hashMap.put(key, i);
+        }
+        Assert.assertTrue(spreadStats.getTreeifyCount() > 0);
+        Assert.assertEquals(0, murmurStats.getTreeifyCount());
+        for (int i = 0; i < 8192; i++) {
+            //一半是不存在的key
+            int key = (i >>> 1 << 20) | (i & 1);
+            Assert.assertEquals(hashMap.get(key), murmur.get(key));
+            Assert.assertEquals(hashMap.get(key), seeded.get(key));
+            Assert.assertEquals(hashMap.remove(key), seeded.remove(key));
+        }
+        Assert.assertEquals(0, seeded.size());
+        try {
+            murmur.setHashStrategy(HashStrategy.DEFAULT);
+            Assert.fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        //自定义相等：忽略大小写，而且全部冲突，也不会转红黑树
+        MyHashMap<String,Integer> ignoreCase = new MyHashMap<>();
+        ignoreCase.setHashStrategy(new HashStrategy() {
+            public int hash(Object key) {
+                return 0;
+            }
+            public boolean keyEquals(Object key, Object k) {
+                return k instanceof String && ((String)key).equalsIgnoreCase((String)k);
+            }
+        });
+        MyHashMapStats stats = ignoreCase.enableStats();
+        for (int i = 0; i < 100; i++)
+            ignoreCase.put("key" + i, i);
+        Assert.assertEquals(Integer.valueOf(5), ignoreCase.put("KEY5", -5));
+        Assert.assertEquals(100, ignoreCase.size());
+        Assert.assertEquals(Integer.valueOf(-5), ignoreCase.get("Key5"));
+        Assert.assertEquals(Integer.valueOf(7), ignoreCase.remove("KEY7"));
+        Assert.assertNull(ignoreCase.get("key7"));
+        Assert.assertEquals(0, stats.getTreeifyCount());
+    }
+
+    @Test
+    public void shrinkTest(){
+        MyHashMap<BadKey,Integer> myHashMap = new MyHashMap<>();
+        myHashMap.setShrinkOnRemove(true);
+        MyHashMapStats stats = myHashMap.enableStats();
+        HashMap<BadKey,Integer> hashMap = new HashMap<>();
+        //每种hash最多16个key，缩容合并桶以后会重新转红黑树
+        for (int i = 0; i < 200000; i++) {
+            int key = (random.nextInt(16) << 16) | random.nextInt(1 << 16);
+            myHashMap.put(new BadKey(key),key);
+            hashMap.put(new BadKey(key),key);
+        }
+        int capacity = myHashMap.table.length;
+        BadKey[] keys = hashMap.keySet().toArray(new BadKey[0]);
+        for (int i = 0; i < keys.length - 1000; i++)
+            Assert.assertEquals(hashMap.remove(keys[i]), myHashMap.remove(keys[i]));
+        Assert.assertTrue(myHashMap.table.length <= capacity / 64);
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        Assert.assertEquals(hashMap.keySet(), new HashSet<>(myHashMap.keySet()));
+        for (BadKey key : keys)
+            Assert.assertEquals(hashMap.get(key), myHashMap.get(key));
+
+        //在阈值附近反复添加删除，不会来回扩容缩容
+        stats.reset();
+        capacity = myHashMap.table.length;
+        for (int i = 0; i < 100000; i++) {
+            BadKey key = new BadKey(-1 - (i & 7));
+            if ((i & 8) == 0)
+                myHashMap.put(key, i);
+            else
+                myHashMap.remove(key);
+        }
+        Assert.assertEquals(0, stats.getResizeCount());
+        Assert.assertEquals(capacity, myHashMap.table.length);
+
+        //128的表里桶1和桶65各5个节点，缩到64时合并成10个节点，重新转红黑树
+        MyHashMap<BadKey,Integer> merged = new MyHashMap<>(128, 0.75f);
+        merged.setShrinkOnRemove(true);
+        for (int i = 0; i < 5; i++) {
+            merged.put(new BadKey((i << 16) | 1), i);
+            merged.put(new BadKey((i << 16) | 65), i);
+        }
+        for (int i = 0; i < 20; i++)
+            merged.put(new BadKey(1000 + i), i);
+        Assert.assertFalse(merged.table[1] instanceof MyHashMap.TreeNode);
+        for (int i = 0; i < 6; i++)
+            merged.remove(new BadKey(1000 + i));
+        Assert.assertEquals(64, merged.table.length);
+        Assert.assertTrue(merged.table[1] instanceof MyHashMap.TreeNode);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(Integer.valueOf(i), merged.get(new BadKey((i << 16) | 1)));
+            Assert.assertEquals(Integer.valueOf(i), merged.get(new BadKey((i << 16) | 65)));
+        }
+
+        //trimToSize
+        MyHashMap<Integer,Integer> trimmed = new MyHashMap<>();
+        for (int i = 0; i < 100000; i++)
+            trimmed.put(i, i);
+        for (int i = 12; i < 100000; i++)
+            trimmed.remove(i);
+        trimmed.trimToSize();
+        Assert.assertEquals(16, trimmed.table.length);
+        for (int i = 0; i < 100; i++)
+            Assert.assertEquals(i < 12 ? Integer.valueOf(i) : null, trimmed.get(i));
+        trimmed.put(12, 12);
+        Assert.assertEquals(32, trimmed.table.length);
+
+        //空map不会缩到DEFAULT_INITIAL_CAPACITY以下
+        MyHashMap<Integer,Integer> empty = new MyHashMap<>();
+        for (int i = 0; i < 1000; i++)
+            empty.put(i, i);
+        for (int i = 0; i < 1000; i++)
+            empty.remove(i);
+        empty.trimToSize();
+        Assert.assertEquals(16, empty.table.length);
+        Assert.assertEquals(12, empty.threshold);
+        empty.put(1, 1);
+        Assert.assertEquals(16, empty.table.length);
+
+        //红黑树桶缩到MIN_TREEIFY_CAPACITY以下的表里，变回链表
+        MyHashMap<BadKey,Integer> trees = new MyHashMap<>(128, 0.75f);
+        for (int i = 0; i < 10; i++)
+            trees.put(new BadKey((i << 16) | 1), i);
+        Assert.assertTrue(trees.table[1] instanceof MyHashMap.TreeNode);
+        trees.trimToSize();
+        Assert.assertEquals(16, trees.table.length);
+        Assert.assertFalse(trees.table[1] instanceof MyHashMap.TreeNode);
+        for (int i = 0; i < 10; i++)
+            Assert.assertEquals(Integer.valueOf(i), trees.get(new BadKey((i << 16) | 1)));
+    }
+
+    /**
+     * compute系列方法和HashMap对比
+     * 冲突严重的key会走红黑树，渐进式扩容时查找前要先迁移旧桶
+     */
+    @Test
+    public void computeTest(){
+        MyHashMap<BadKey,Integer> myHashMap = new MyHashMap<>();
+        myHashMap.setIncrementalResize(1);
+        HashMap<BadKey,Integer> hashMap = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            BadKey key = new BadKey((random.nextInt(64) << 16) | random.nextInt(1024));
+            final int n = i;
+            switch (random.nextInt(7)) {
+                case 0:
+                    Assert.assertEquals(hashMap.putIfAbsent(key, n), myHashMap.putIfAbsent(key, n));
+                    break;
+                case 1:
+                    Assert.assertEquals(hashMap.computeIfAbsent(key, k -> n % 5 == 0 ? null : n),
+                            myHashMap.computeIfAbsent(key, k -> n % 5 == 0 ? null : n));
+                    break;
+                case 2:
+                    Assert.assertEquals(hashMap.computeIfPresent(key, (k, v) -> v % 3 == 0 ? null : v + 1),
+                            myHashMap.computeIfPresent(key, (k, v) -> v % 3 == 0 ? null : v + 1));
+                    break;
+                case 3:
+                    Assert.assertEquals(hashMap.compute(key, (k, v) -> v == null ? Integer.valueOf(n) : v % 7 == 0 ? null : v + n),
+                            myHashMap.compute(key, (k, v) -> v == null ? Integer.valueOf(n) : v % 7 == 0 ? null : v + n));
+                    break;
+                case 4:
+                    Assert.assertEquals(hashMap.merge(key, n, (a, b) -> a % 11 == 0 ? null : a + b),
+                            myHashMap.merge(key, n, (a, b) -> a % 11 == 0 ? null : a + b));
+                    break;
+                case 5:
+                    Assert.assertEquals(hashMap.getOrDefault(key, -1), myHashMap.getOrDefault(key, -1));
+                    break;
+                default:
+                    //null value
+                    Assert.assertEquals(hashMap.put(key, null), myHashMap.put(key, null));
+            }
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (Map.Entry<BadKey,Integer> e : hashMap.entrySet()) {
+            Assert.assertTrue(myHashMap.containsKey(e.getKey()));
+            Assert.assertEquals(e.getValue(), myHashMap.get(e.getKey()));
+        }
+
+        //计数，只插入到桶头，不会漏掉转红黑树
+        MyHashMap<Integer,Integer> counts = new MyHashMap<>();
+        for (int i = 0; i < 100000; i++)
+            counts.merge(i % 1000, 1, Integer::sum);
+        for (int i = 0; i < 1000; i++)
+            Assert.assertEquals(Integer.valueOf(100), counts.get(i));
+
+        //compute系列方法的插入也记到put的统计里
+        MyHashMap<Integer,Integer> recorded = new MyHashMap<>();
+        MyHashMapStats stats = recorded.enableStats();
+        for (int i = 0; i < 300; i++) {
+            recorded.merge(i, 1, Integer::sum);
+            recorded.compute(-1 - i, (k, v) -> 1);
+            recorded.computeIfAbsent(100000 + i, k -> 1);
+        }
+        Assert.assertEquals(900L, Arrays.stream(stats.getPutProbeHistogram()).sum());
+        //删除直接摘掉找到的节点
+        for (int i = 0; i < 300; i++) {
+            Assert.assertNull(recorded.merge(i, 1, (a, b) -> null));
+            Assert.assertNull(recorded.computeIfPresent(-1 - i, (k, v) -> null));
+            Assert.assertNull(recorded.compute(100000 + i, (k, v) -> null));
+        }
+        Assert.assertEquals(0, recorded.size());
+        for (MyHashMap.Node<Integer,Integer> e : recorded.table)
+            Assert.assertNull(e);
+
+        //计算过程中修改map
+        try {
+            myHashMap.computeIfAbsent(new BadKey(-1), k -> myHashMap.put(new BadKey(-2), 0));
+            Assert.fail();
+        } catch (ConcurrentModificationException expected) {
+        }
+    }
+
+    @Test
+    public void getAllTest(){
+        MyHashMap<BadKey,Integer> myHashMap = new MyHashMap<>();
+        myHashMap.setIncrementalResize(1);
+        HashMap<BadKey,Integer> hashMap = new HashMap<>();
+        MyHashMap.BatchLookup batch = new MyHashMap.BatchLookup();
+        Object[] keys = new Object[1000];
+        Object[] results = new Object[1000];
+        Assert.assertFalse(myHashMap.containsAll(new Object[] {new BadKey(0)}, 1, batch));
+        Assert.assertTrue(myHashMap.containsAll(keys, 0, batch));
+        //渐进式扩容没迁移完时批量查找，只迁移查到的桶，不会一次迁移完整个旧表
+        MyHashMap<Integer,Integer> pending = new MyHashMap<>();
+        pending.setIncrementalResize(1);
+        int next = 0;
+        while (pending.oldTable == null || pending.oldTable.length < 1024)
+            pending.put(next, next++);
+        Object[] some = {0, 1, next - 1, -1};
+        Object[] got = new Object[4];
+        pending.getAll(some, 4, got, batch);
+        Assert.assertArrayEquals(new Object[] {0, 1, next - 1, null}, got);
+        Assert.assertNotNull(pending.oldTable);
+        Assert.assertTrue(pending.containsAll(some, 3, batch));
+        Assert.assertNotNull(pending.oldTable);
+        //空map，新的batch还没有分配过临时数组
+        Object[] empty = {"x", "y", "z"};
+        new MyHashMap<String,Integer>().getAll(new Object[] {"a", "b", "c"}, 3, empty, new MyHashMap.BatchLookup());
+        Assert.assertArrayEquals(new Object[3], empty);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 5000; i++) {
+                BadKey key = new BadKey((random.nextInt(64) << 16) | random.nextInt(4096));
+                Assert.assertEquals(hashMap.put(key, i), myHashMap.put(key, i));
+            }
+            myHashMap.put(null, -1);
+            hashMap.put(null, -1);
+            //每一轮的批大小不同，batch反复使用
+            int n = 1 + random.nextInt(keys.length);
+            for (int i = 0; i < n; i++)
+                keys[i] = random.nextInt(50) == 0 ? null : new BadKey((random.nextInt(64) << 16) | random.nextInt(4096));
+            myHashMap.getAll(keys, n, results, batch);
+            boolean all = true;
+            for (int i = 0; i < n; i++) {
+                Assert.assertEquals(hashMap.get(keys[i]), results[i]);
+                all &= hashMap.containsKey(keys[i]);
+            }
+            Assert.assertEquals(all, myHashMap.containsAll(keys, n, batch));
+        }
+        //全部存在
+        int n = 0;
+        for (BadKey key : hashMap.keySet()) {
+            if (n == keys.length)
+                break;
+            keys[n++] = key;
+        }
+        Assert.assertTrue(myHashMap.containsAll(keys, n, batch));
+
+        //按访问顺序的LinkedMyHashMap，getAll()命中的key和get()一样移到链表尾
+        LinkedMyHashMap<Integer,Integer> lru = new LinkedMyHashMap<>(16, 0.75f, true);
+        for (int i = 0; i < 5; i++)
+            lru.put(i, i);
+        lru.getAll(new Object[] {3, 9, 1}, 3, results, batch);
+        Assert.assertArrayEquals(new Object[] {3, null, 1}, Arrays.copyOf(results, 3));
+        Assert.assertEquals(Arrays.asList(0, 2, 4, 3, 1), new ArrayList<>(lru.keySet()));
+    }
+
+    /**
+     * 同一个HashedKey在hash策略不同的几个map里使用，hashCode()只调用一次
+     */
+    @Test
+    public void hashedKeyTest(){
+        MyHashMap<CountingKey,Integer> plain = new MyHashMap<>();
+        MyHashMap<CountingKey,Integer> murmur = new MyHashMap<>();
+        murmur.setHashStrategy(HashStrategy.MURMUR3);
+        MyHashMap<CountingKey,Integer> seeded = new MyHashMap<>();
+        seeded.setHashStrategy(HashStrategy.seeded());
+        LinkedMyHashMap<CountingKey,Integer> linked = new LinkedMyHashMap<>(16, 0.75f, true);
+        List<MyHashMap<CountingKey,Integer>> maps = Arrays.asList(plain, murmur, seeded, linked);
+        for (int i = 0; i < 10000; i++) {
+            HashedKey<CountingKey> key = HashedKey.of(new CountingKey(i));
+            for (MyHashMap<CountingKey,Integer> map : maps)
+                Assert.assertNull(map.putHashed(key, i));
+        }
+        CountingKey.hashCodeCalls = 0;
+        for (int i = 0; i < 20000; i++) {
+            CountingKey k = new CountingKey(i);
+            HashedKey<CountingKey> key = HashedKey.of(k);
+            Integer expected = i < 10000 ? Integer.valueOf(i) : null;
+            for (MyHashMap<CountingKey,Integer> map : maps) {
+                Assert.assertEquals(expected, map.getHashed(key));
+                Assert.assertEquals(i < 10000, map.containsHashedKey(key));
+                if ((i & 1) == 0)
+                    Assert.assertEquals(expected, map.removeHashed(key));
+            }
+        }
+        Assert.assertEquals(20000, CountingKey.hashCodeCalls);
+        //和普通方法算出来的hash一样
+        for (int i = 0; i < 10000; i++) {
+            for (MyHashMap<CountingKey,Integer> map : maps)
+                Assert.assertEquals((i & 1) == 0 ? null : Integer.valueOf(i), map.get(new CountingKey(i)));
+        }
+        Assert.assertEquals(Integer.valueOf(1), linked.getHashed(HashedKey.of(new CountingKey(1))));
+        Assert.assertEquals(new CountingKey(1), linked.keySet().toArray()[linked.size() - 1]);
+
+        Assert.assertNull(plain.putHashed(HashedKey.of(null), -1));
+        Assert.assertEquals(Integer.valueOf(-1), plain.get(null));
+        Assert.assertEquals(HashedKey.of("a"), HashedKey.of("a"));
+    }
+
+    static final class CountingKey {
+        static int hashCodeCalls;
+        final int value;
+        CountingKey(int value) {
+            this.value = value;
+        }
+        @Override
+        public int hashCode() {
+            ++hashCodeCalls;
+            return value * 31;
+        }
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CountingKey && ((CountingKey)o).value == value;
+        }
+    }
+
+    @Test
+    public void nodePoolTest(){
+        //冲突严重的key，会反复转红黑树、转链表
+        MyHashMap<BadKey,Integer> myHashMap = new MyHashMap<>();
+        myHashMap.setNodePool(1024);
+        myHashMap.setShrinkOnRemove(true);
+        HashMap<BadKey,Integer> hashMap = new HashMap<>();
+        for (int i = 0; i < 300000; i++) {
+            BadKey key = new BadKey((random.nextInt(16) << 16) | random.nextInt(i < 150000 ? 2048 : 64));
+            if (random.nextInt(2) == 0)
+                Assert.assertEquals(hashMap.remove(key), myHashMap.remove(key));
+            else if (random.nextInt(4) == 0)
+                Assert.assertEquals(hashMap.merge(key, i, (a, b) -> b % 3 == 0 ? null : b),
+                        myHashMap.merge(key, i, (a, b) -> b % 3 == 0 ? null : b));
+            else
+                Assert.assertEquals(hashMap.put(key, i), myHashMap.put(key, i));
+            Assert.assertTrue(myHashMap.freeNodeCount <= 1024 && myHashMap.freeTreeNodeCount <= 1024);
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (Map.Entry<BadKey,Integer> e : hashMap.entrySet())
+            Assert.assertEquals(e.getValue(), myHashMap.get(e.getKey()));
+        Assert.assertEquals(hashMap.entrySet(), myHashMap.entrySet());
+
+        //删除的节点被下一次put复用
+        MyHashMap<Integer,Integer> pooled = new MyHashMap<>();
+        pooled.setNodePool(16);
+        pooled.put(1, 1);
+        MyHashMap.Node<Integer,Integer> node = pooled.getNode(MyHashMap.hash(1), 1);
+        Assert.assertEquals(Integer.valueOf(1), pooled.remove(1));
+        Assert.assertEquals(1, pooled.freeNodeCount);
+        Assert.assertNull(node.key);
+        pooled.put(2, 2);
+        Assert.assertSame(node, pooled.getNode(MyHashMap.hash(2), 2));
+        Assert.assertEquals(0, pooled.freeNodeCount);
+
+        //通过迭代器删除的节点不复用，拿到的Map.Entry还可以读
+        pooled.put(3, 3);
+        Iterator<Map.Entry<Integer,Integer>> it = pooled.entrySet().iterator();
+        Map.Entry<Integer,Integer> first = it.next();
+        Integer firstKey = first.getKey();
+        it.remove();
+        Assert.assertEquals(firstKey, first.getKey());
+        Assert.assertEquals(0, pooled.freeNodeCount);
+
+        //entrySet().remove()传进来的就是节点本身时不复用，按key删掉的其他节点和remove()一样复用
+        Map.Entry<Integer,Integer> second = pooled.entrySet().iterator().next();
+        Integer secondKey = second.getKey();
+        Assert.assertTrue(pooled.entrySet().remove(second));
+        Assert.assertEquals(secondKey, second.getKey());
+        Assert.assertEquals(0, pooled.freeNodeCount);
+        pooled.put(4, 4);
+        Assert.assertTrue(pooled.entrySet().remove(new AbstractMap.SimpleEntry<>(4, 4)));
+        Assert.assertEquals(1, pooled.freeNodeCount);
+
+        //容量调小时丢掉多出来的空闲节点
+        for (int i = 0; i < 16; i++)
+            pooled.put(100 + i, i);
+        for (int i = 0; i < 16; i++)
+            pooled.remove(100 + i);
+        Assert.assertEquals(16, pooled.freeNodeCount);
+        pooled.setNodePool(4);
+        Assert.assertEquals(4, pooled.freeNodeCount);
+        pooled.setNodePool(0);
+        Assert.assertEquals(0, pooled.freeNodeCount);
+
+        //并行扩容期间不使用节点池
+        MyHashMap<BadKey,Integer> parallel = new MyHashMap<>();
+        parallel.setNodePool(1 << 16);
+        parallel.setParallelResize(1);
+        hashMap.clear();
+        for (int i = 0; i < 200000; i++) {
+            BadKey key = new BadKey((random.nextInt(32) << 16) | random.nextInt(1 << 14));
+            if (random.nextInt(3) == 0)
+                Assert.assertEquals(hashMap.remove(key), parallel.remove(key));
+            else
+                Assert.assertEquals(hashMap.put(key, i), parallel.put(key, i));
+        }
+        Assert.assertEquals(hashMap.entrySet(), parallel.entrySet());
+
+        try {
+            new LinkedMyHashMap<Integer,Integer>().setNodePool(16);
+            Assert.fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void adaptiveLoadFactorTest(){
+        //hash()以后低3位都是0的key，只用到1/8的桶，链表比均匀分布长得多：负载因子降到下限
+        MyHashMap<Integer,Integer> clustered = new MyHashMap<>();
+        clustered.setAdaptiveLoadFactor(0.25f, 2f);
+        HashMap<Integer,Integer> hashMap = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            int key = (i << 3) | ((i >>> 13) & 7);
+            Assert.assertEquals(hashMap.put(key, i), clustered.put(key, i));
+            Assert.assertTrue(clustered.loadFactor >= 0.25f && clustered.loadFactor <= 2f);
+        }
+        Assert.assertEquals(0.25f, clustered.loadFactor, 0f);
+        Assert.assertEquals(hashMap.entrySet(), clustered.entrySet());
+        Assert.assertEquals((int)(clustered.table.length * 0.25f), clustered.threshold);
+
+        //连续的key正好一个桶一个：负载因子升到上限，hash表更小
+        MyHashMap<Integer,Integer> uniform = new MyHashMap<>();
+        uniform.setAdaptiveLoadFactor(0.25f, 2f);
+        hashMap.clear();
+        for (int i = 0; i < 100000; i++) {
+            hashMap.put(i, i);
+            Assert.assertEquals(Integer.valueOf(i), uniform.computeIfAbsent(i, k -> k));
+            Assert.assertTrue(uniform.loadFactor >= 0.25f && uniform.loadFactor <= 2f);
+        }
+        Assert.assertEquals(2f, uniform.loadFactor, 0f);
+        Assert.assertTrue(uniform.table.length <= 1 << 16);
+        Assert.assertEquals(hashMap.entrySet(), uniform.entrySet());
+
+        //关闭以后保持当前的负载因子，threshold恢复翻倍
+        uniform.setAdaptiveLoadFactor(0, 0);
+        int thr = uniform.threshold;
+        for (int i = 100000; i < 300000; i++)
+            uniform.put(i, i);
+        Assert.assertEquals(2f, uniform.loadFactor, 0f);
+        Assert.assertEquals(thr << 2, uniform.threshold);
+
+        //开启时当前负载因子限制到范围里
+        MyHashMap<Integer,Integer> clamped = new MyHashMap<>();
+        clamped.put(1, 1);
+        clamped.setAdaptiveLoadFactor(1f, 4f);
+        Assert.assertEquals(1f, clamped.loadFactor, 0f);
+        Assert.assertEquals(clamped.table.length, clamped.threshold);
+
+        for (float[] range : new float[][] {{0, 1}, {1, 0.5f}, {Float.NaN, 1}, {0.5f, Float.POSITIVE_INFINITY}}) {
+            try {
+                clamped.setAdaptiveLoadFactor(range[0], range[1]);
+                Assert.fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void bulkTest(){
+        MyHashMap<Integer,Integer> myHashMap = new MyHashMap<>();
+        long sum = 0;
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextInt() << 1;
+            if (myHashMap.put(key, i) == null)
+                sum += key;
+            else
+                --i;
+        }
+        //红黑树桶：(a << 16) | (a ^ 1)，a是8的倍数时hash()以后都落在桶1(奇数key，不会和上面的重复)
+        for (int i = 0; i < 100; i++)
+            myHashMap.put((8 * i << 16) | (8 * i ^ 1), -1);
+        Assert.assertTrue(myHashMap.table[1] instanceof MyHashMap.TreeNode);
+        for (long threshold : new long[] {Long.MAX_VALUE, 1000, 1}) {
+            LongAdder count = new LongAdder();
+            myHashMap.forEach(threshold, (k, v) -> count.increment());
+            Assert.assertEquals(myHashMap.size(), count.intValue());
+            long expected = sum;
+            for (int i = 0; i < 100; i++)
+                expected += (8 * i << 16) | (8 * i ^ 1);
+            Assert.assertEquals(expected, myHashMap.reduceToLong(threshold, (k, v) -> k, 0L, Long::sum));
+            Assert.assertEquals(Integer.valueOf(199999), myHashMap.reduce(threshold,
+                    (k, v) -> v, Math::max));
+            Assert.assertNull(myHashMap.<Integer>reduce(threshold, (k, v) -> null, Math::max));
+            Integer found = myHashMap.search(threshold, (k, v) -> v == 12345 ? k : null);
+            Assert.assertEquals(Integer.valueOf(12345), myHashMap.get(found));
+            Assert.assertNull(myHashMap.search(threshold, (k, v) -> v == -2 ? k : null));
+        }
+        Assert.assertEquals(42L, new MyHashMap<Integer,Integer>().reduceToLong(1, (k, v) -> k, 42L, Long::sum));
+
+        //执行期间修改map
+        try {
+            myHashMap.forEach(Long.MAX_VALUE, (k, v) -> {
+                if (v == 0)
+                    myHashMap.remove(k);
+            });
+            Assert.fail();
+        } catch (ConcurrentModificationException expected) {
+        }
+    }
+
+    /**
+     * 没有实现Comparable的key全部在同一个hash上
+     * 没有比较器时查找要遍历整个红黑树，有比较器时只走一条路径
+     */
+    @Test
+    public void treeBinComparatorTest(){
+        MyHashMap<PlainKey,Integer> plain = new MyHashMap<>();
+        MyHashMap<PlainKey,Integer> sorted = MyHashMap.<PlainKey,Integer>builder()
+                .treeBinComparator(Comparator.comparingInt(k -> k.value)).build();
+        HashMap<PlainKey,Integer> hashMap = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            PlainKey key = new PlainKey(random.nextInt(2000));
+            Integer expected = hashMap.put(key, i);
+            Assert.assertEquals(expected, plain.put(key, i));
+            Assert.assertEquals(expected, sorted.put(key, i));
+        }
+        Assert.assertTrue(sorted.table[0] instanceof MyHashMap.TreeNode);
+        for (int i = 0; i < 2000; i++) {
+            PlainKey key = new PlainKey(i);
+            Integer expected = hashMap.get(key);
+            Assert.assertEquals(expected, plain.get(key));
+            PlainKey.equalsCalls = 0;
+            Assert.assertEquals(expected, sorted.get(key));
+            Assert.assertTrue(PlainKey.equalsCalls <= 32);
+        }
+        PlainKey.equalsCalls = 0;
+        plain.get(new PlainKey(-1));
+        Assert.assertTrue(PlainKey.equalsCalls >= hashMap.size());
+        for (int i = 0; i < 2000; i += 2)
+            Assert.assertEquals(hashMap.remove(new PlainKey(i)), sorted.remove(new PlainKey(i)));
+        for (int i = 0; i < 2000; i++)
+            Assert.assertEquals(hashMap.get(new PlainKey(i)), sorted.get(new PlainKey(i)));
+        Assert.assertEquals(PlainKey.class, plain.nonComparableKeyClass);
+
+        //有元素以后不能再换比较器
+        try {
+            sorted.setTreeBinComparator(null);
+            Assert.fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        //Comparable的结果缓存在map上
+        MyHashMap<BadKey,Integer> comparable = new MyHashMap<>();
+        for (int i = 0; i < 100; i++)
+            comparable.put(new BadKey(i << 16), i);
+        Assert.assertEquals(BadKey.class, comparable.comparableKeyClass);
+        for (int i = 0; i < 100; i++)
+            Assert.assertEquals(Integer.valueOf(i), comparable.get(new BadKey(i << 16)));
+    }
+
+    /**
+     * 没有实现Comparable，hashCode全部相同
+     */
+    static final class PlainKey {
+        static int equalsCalls;
+        final int value;
+        PlainKey(int value) {
+            this.value = value;
+        }
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+        @Override
+        public boolean equals(Object o) {
+            ++equalsCalls;
+            return o instanceof PlainKey && ((PlainKey)o).value == value;
+        }
+    }
+
+    /**
+     * hash冲突严重的key
+     * 只有低16位参与hashCode，同一个hash会有多个节点(桶会转成红黑树)
+     * 扩容时红黑树会被拆分(TreeNode.split)
+     */
+    static final class BadKey implements Comparable<BadKey> {
+        final int value;
+        BadKey(int value) {
+            this.value = value;
+        }
+        @Override
+        public int hashCode() {
+            return (value & 0xFFFF) << 16;
+        }
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof BadKey && ((BadKey)o).value == value;
+        }
+        @Override
+        public int compareTo(BadKey o) {
+            return Integer.compare(value, o.value);
+        }
+    }
+
 }
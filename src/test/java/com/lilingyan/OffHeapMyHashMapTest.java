@@ -0,0 +1,87 @@
+package com.lilingyan;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @Author: lilingyan
+ * @Date 2026/10/17 15:30
+ */
+public class OffHeapMyHashMapTest {
+
+    private static Random random = new Random();
+
+    @Test
+    public void putAndRemoveAndGetTest(){
+        check(new OffHeapMyHashMap());
+    }
+
+    @Test
+    public void mappedFileTest() throws Exception {
+        File file = File.createTempFile("offheap", ".data");
+        file.deleteOnExit();
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            check(new OffHeapMyHashMap(channel, 16, 0.75f));
+        }
+    }
+
+    /**
+     * 段和hash表的块都设得很小，覆盖多段存储、跨段压缩和多块hash表
+     */
+    @Test
+    public void segmentedTest() throws Exception {
+        OffHeapMyHashMap myHashMap = new OffHeapMyHashMap(null, 16, 0.75f, 12, 4);
+        check(myHashMap);
+        Assert.assertTrue(myHashMap.segmentCount > 1);
+        Assert.assertTrue(myHashMap.table.length > 1);
+
+        File file = File.createTempFile("offheap", ".data");
+        file.deleteOnExit();
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            OffHeapMyHashMap mapped = new OffHeapMyHashMap(channel, 16, 0.75f, 12, 4);
+            check(mapped);
+            Assert.assertTrue(mapped.segmentCount > 1);
+        }
+
+        //一个节点必须放得进一个段
+        try {
+            myHashMap.put(new byte[8], new byte[1 << 12]);
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * value长度随机，覆盖和删除会产生大量标记删除的空间，触发压缩和扩容
+     */
+    private static void check(OffHeapMyHashMap myHashMap){
+        HashMap<ByteBuffer,byte[]> hashMap = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            byte[] key = String.valueOf(random.nextInt(20000)).getBytes();
+            if (random.nextInt(4) == 0) {
+                byte[] old = hashMap.remove(ByteBuffer.wrap(key));
+                Assert.assertArrayEquals(old, myHashMap.remove(key));
+            }
+            else {
+                byte[] value = new byte[random.nextInt(32)];
+                random.nextBytes(value);
+                byte[] old = hashMap.put(ByteBuffer.wrap(key), value);
+                Assert.assertArrayEquals(old, myHashMap.put(key, value));
+            }
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (Map.Entry<ByteBuffer,byte[]> e : hashMap.entrySet())
+            Assert.assertArrayEquals(e.getValue(), myHashMap.get(e.getKey().array()));
+        Assert.assertFalse(myHashMap.containsKey("missing".getBytes()));
+    }
+
+}
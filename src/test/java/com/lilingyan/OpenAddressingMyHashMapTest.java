@@ -0,0 +1,62 @@
+package com.lilingyan;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * @Author: lilingyan
+ * @Date 2026/10/17 14:02
+ */
+public class OpenAddressingMyHashMapTest {
+
+    private static Random random = new Random();
+
+    @Test
+    public void putAndRemoveAndGetTest(){
+        OpenAddressingMyHashMap<Integer,String> myHashMap = new OpenAddressingMyHashMap<>();
+        HashMap<Integer,String> hashMap = new HashMap<>();
+        for (int i = 0; i < 65535; i++) {
+            int key = random.nextInt(65535);
+            Assert.assertEquals(hashMap.put(key,String.valueOf(key)), myHashMap.put(key,String.valueOf(key)));
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (int i = 0; i < 65535; i++) {
+            int key = random.nextInt(65535);
+            Assert.assertEquals(hashMap.remove(key), myHashMap.remove(key));
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (int i = 0; i < 65535; i++) {
+            Assert.assertEquals(hashMap.get(i), myHashMap.get(i));
+            Assert.assertEquals(hashMap.containsKey(i), myHashMap.containsKey(i));
+        }
+    }
+
+    /**
+     * hash相同的key超过探测上限以后进入overflow
+     */
+    @Test
+    public void overflowTest(){
+        OpenAddressingMyHashMap<MyHashMapTest.BadKey,Integer> myHashMap = new OpenAddressingMyHashMap<>();
+        HashMap<MyHashMapTest.BadKey,Integer> hashMap = new HashMap<>();
+        for (int i = 0; i < 4096; i++) {
+            //只有16个不同的hash
+            int key = (random.nextInt(4096) << 16) | random.nextInt(16);
+            myHashMap.put(new MyHashMapTest.BadKey(key),key);
+            hashMap.put(new MyHashMapTest.BadKey(key),key);
+        }
+        Assert.assertNotNull(myHashMap.overflow);
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (MyHashMapTest.BadKey key : hashMap.keySet())
+            Assert.assertEquals(hashMap.get(key), myHashMap.get(key));
+        for (MyHashMapTest.BadKey key : hashMap.keySet().toArray(new MyHashMapTest.BadKey[0])) {
+            if (random.nextBoolean())
+                Assert.assertEquals(hashMap.remove(key), myHashMap.remove(key));
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (MyHashMapTest.BadKey key : hashMap.keySet())
+            Assert.assertTrue(myHashMap.containsKey(key));
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.lilingyan;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @Author: lilingyan
+ * @Date 2026/10/17 22:10
+ */
+public class PersistentMyHashMapTest {
+
+    private static Random random = new Random();
+
+    @Test
+    public void putAndRemoveAndGetTest(){
+        PersistentMyHashMap<Integer,String> myHashMap = new PersistentMyHashMap<>();
+        HashMap<Integer,String> hashMap = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(65535);
+            if (random.nextInt(3) == 0)
+                Assert.assertEquals(hashMap.remove(key), myHashMap.remove(key));
+            else
+                Assert.assertEquals(hashMap.put(key,String.valueOf(i)), myHashMap.put(key,String.valueOf(i)));
+            //时不时拿一个快照，之后的修改走复制路径
+            if (random.nextInt(1000) == 0)
+                myHashMap.snapshot();
+        }
+        Assert.assertEquals(hashMap.put(null,"null"), myHashMap.put(null,"null"));
+        Assert.assertEquals(hashMap.put(-1,null), myHashMap.put(-1,null));
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        Assert.assertTrue(myHashMap.containsKey(-1));
+        for (int i = 0; i < 65535; i++)
+            Assert.assertEquals(hashMap.get(i), myHashMap.get(i));
+        Assert.assertEquals(hashMap.entrySet(), myHashMap.snapshot().entrySet());
+        Assert.assertEquals("null", myHashMap.remove(null));
+        Assert.assertFalse(myHashMap.containsKey(null));
+    }
+
+    /**
+     * hash完全相同的key会放进CollisionNode
+     */
+    @Test
+    public void collidingKeysTest(){
+        PersistentMyHashMap<MyHashMapTest.BadKey,Integer> myHashMap = new PersistentMyHashMap<>();
+        HashMap<MyHashMapTest.BadKey,Integer> hashMap = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            MyHashMapTest.BadKey key = new MyHashMapTest.BadKey((random.nextInt(64) << 16) | random.nextInt(64));
+            if (random.nextInt(3) == 0)
+                Assert.assertEquals(hashMap.remove(key), myHashMap.remove(key));
+            else
+                Assert.assertEquals(hashMap.put(key,i), myHashMap.put(key,i));
+            if (random.nextInt(500) == 0)
+                myHashMap.snapshot();
+        }
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        for (Map.Entry<MyHashMapTest.BadKey,Integer> e : hashMap.entrySet())
+            Assert.assertEquals(e.getValue(), myHashMap.get(e.getKey()));
+        Assert.assertEquals(hashMap.entrySet(), myHashMap.snapshot().entrySet());
+    }
+
+    /**
+     * 快照之后的修改不会影响快照
+     */
+    @Test
+    public void snapshotTest(){
+        PersistentMyHashMap<Integer,Integer> myHashMap = new PersistentMyHashMap<>();
+        List<PersistentMyHashMap.Snapshot<Integer,Integer>> snapshots = new ArrayList<>();
+        List<Map<Integer,Integer>> expected = new ArrayList<>();
+        HashMap<Integer,Integer> hashMap = new HashMap<>();
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 2000; i++) {
+                int key = random.nextInt(10000);
+                if (random.nextInt(4) == 0) {
+                    hashMap.remove(key);
+                    myHashMap.remove(key);
+                } else {
+                    hashMap.put(key, round);
+                    myHashMap.put(key, round);
+                }
+            }
+            snapshots.add(myHashMap.snapshot());
+            expected.add(new HashMap<>(hashMap));
+        }
+        for (int i = 0; i < snapshots.size(); i++) {
+            PersistentMyHashMap.Snapshot<Integer,Integer> s = snapshots.get(i);
+            Map<Integer,Integer> m = expected.get(i);
+            Assert.assertEquals(m.size(), s.size());
+            Assert.assertEquals(m.entrySet(), s.entrySet());
+            HashMap<Integer,Integer> visited = new HashMap<>();
+            s.forEach(visited::put);
+            Assert.assertEquals(m, visited);
+            for (int key = 0; key < 10000; key++) {
+                Assert.assertEquals(m.containsKey(key), s.containsKey(key));
+                Assert.assertEquals(m.get(key), s.get(key));
+            }
+        }
+    }
+
+    /**
+     * 读线程不加锁遍历快照，写线程同时修改
+     */
+    @Test
+    public void concurrentReadersTest() throws InterruptedException {
+        PersistentMyHashMap<Integer,Integer> myHashMap = new PersistentMyHashMap<>();
+        AtomicReference<PersistentMyHashMap.Snapshot<Integer,Integer>> published =
+                new AtomicReference<>(myHashMap.snapshot());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(() -> {
+                try {
+                    for (int n = 0; n < 200; n++) {
+                        PersistentMyHashMap.Snapshot<Integer,Integer> s = published.get();
+                        //写线程保证每个快照里所有value都等于key
+                        int count = 0;
+                        for (Map.Entry<Integer,Integer> e : s.entrySet()) {
+                            Assert.assertEquals(e.getKey(), e.getValue());
+                            ++count;
+                        }
+                        Assert.assertEquals(s.size(), count);
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            readers[t].start();
+        }
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextInt(50000);
+            //先写一个错的值再改回来，快照里不应该看到中间状态
+            myHashMap.put(key, -1);
+            if (random.nextBoolean())
+                myHashMap.put(key, key);
+            else
+                myHashMap.remove(key);
+            if ((i & 1023) == 0)
+                published.set(myHashMap.snapshot());
+        }
+        for (Thread reader : readers)
+            reader.join();
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+    }
+
+}
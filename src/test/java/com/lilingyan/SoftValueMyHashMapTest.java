@@ -0,0 +1,88 @@
+package com.lilingyan;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @Author: lilingyan
+ * @Date 2026/10/17 23:10
+ */
+public class SoftValueMyHashMapTest {
+
+    private static Random random = new Random();
+
+    @Test
+    public void putAndRemoveAndGetTest(){
+        SoftValueMyHashMap<Integer,String> myHashMap = new SoftValueMyHashMap<>();
+        HashMap<Integer,String> hashMap = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(65535);
+            //hashMap一直持有value，value不会被回收
+            String value = String.valueOf(i);
+            if (random.nextInt(3) == 0)
+                Assert.assertEquals(hashMap.remove(key), myHashMap.remove(key));
+            else
+                Assert.assertEquals(hashMap.put(key, value), myHashMap.put(key, value));
+        }
+        Assert.assertEquals(hashMap.put(null, "null"), myHashMap.put(null, "null"));
+        Assert.assertEquals(hashMap.put(-1, null), myHashMap.put(-1, null));
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        Assert.assertTrue(myHashMap.containsKey(-1));
+        Assert.assertTrue(myHashMap.containsKey(null));
+        for (int i = -1; i < 65535; i++)
+            Assert.assertEquals(hashMap.get(i), myHashMap.get(i));
+        Assert.assertNull(myHashMap.put(-1, "x"));
+        Assert.assertEquals("null", myHashMap.remove(null));
+        Assert.assertFalse(myHashMap.containsKey(null));
+        myHashMap.clear();
+        Assert.assertEquals(0, myHashMap.size());
+        Assert.assertNull(myHashMap.get(1));
+    }
+
+    /**
+     * 手动清掉value并让节点进queue，模拟内存不够时value被回收
+     */
+    @Test
+    public void expungeTest(){
+        SoftValueMyHashMap<Integer,Integer> myHashMap = new SoftValueMyHashMap<>();
+        for (int i = 0; i < 10000; i++)
+            myHashMap.put(i, i);
+        List<SoftValueMyHashMap.Node<Integer>> stale = new ArrayList<>();
+        for (SoftValueMyHashMap.Node<Integer> first : myHashMap.table) {
+            for (SoftValueMyHashMap.Node<Integer> e = first; e != null; e = e.next) {
+                if ((e.key & 1) == 0)
+                    stale.add(e);
+            }
+        }
+        for (SoftValueMyHashMap.Node<Integer> e : stale)
+            e.clear();
+        //value已经回收、还没进queue：当作不存在，size还算在里面
+        Assert.assertFalse(myHashMap.containsKey(0));
+        Assert.assertNull(myHashMap.get(0));
+        Assert.assertEquals(10000, myHashMap.size());
+        //覆盖一个已经回收的value，返回null
+        Assert.assertNull(myHashMap.put(2, 2));
+        Assert.assertEquals(Integer.valueOf(2), myHashMap.get(2));
+        for (SoftValueMyHashMap.Node<Integer> e : stale)
+            e.enqueue();
+        //一次get只清理一批
+        Assert.assertNull(myHashMap.get(-1));
+        Assert.assertEquals(10000 - SoftValueMyHashMap.EXPUNGE_BATCH, myHashMap.size);
+        //key是2的节点已经换掉了，不会被清理
+        Assert.assertEquals(5001, myHashMap.size());
+        for (int i = 0; i < 10000; i++)
+            Assert.assertEquals((i & 1) == 0 && i != 2 ? null : Integer.valueOf(i), myHashMap.get(i));
+        //回收的节点不影响之后的添加和扩容
+        for (int i = 0; i < 100000; i += 2)
+            myHashMap.put(i, -i);
+        Assert.assertEquals(55000, myHashMap.size());
+        for (int i = 0; i < 100000; i++)
+            Assert.assertEquals((i & 1) == 0 ? Integer.valueOf(-i) : i < 10000 ? Integer.valueOf(i) : null,
+                    myHashMap.get(i));
+    }
+
+}
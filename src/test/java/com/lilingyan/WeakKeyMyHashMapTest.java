@@ -0,0 +1,109 @@
+package com.lilingyan;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @Author: lilingyan
+ * @Date 2026/10/17 23:10
+ */
+public class WeakKeyMyHashMapTest {
+
+    private static Random random = new Random();
+
+    @Test
+    public void putAndRemoveAndGetTest(){
+        //hashMap一直持有key，key不会被回收
+        WeakKeyMyHashMap<Integer,String> myHashMap = new WeakKeyMyHashMap<>();
+        HashMap<Integer,String> hashMap = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            Integer key = random.nextInt(65535);
+            if (random.nextInt(3) == 0)
+                Assert.assertEquals(hashMap.remove(key), myHashMap.remove(key));
+            else
+                Assert.assertEquals(hashMap.put(key, String.valueOf(i)), myHashMap.put(key, String.valueOf(i)));
+        }
+        Assert.assertEquals(hashMap.put(null, "null"), myHashMap.put(null, "null"));
+        Assert.assertEquals(hashMap.put(-1, null), myHashMap.put(-1, null));
+        Assert.assertEquals(hashMap.size(), myHashMap.size());
+        Assert.assertTrue(myHashMap.containsKey(-1));
+        for (int i = -1; i < 65535; i++)
+            Assert.assertEquals(hashMap.get(i), myHashMap.get(i));
+        Assert.assertEquals("null", myHashMap.remove(null));
+        Assert.assertFalse(myHashMap.containsKey(null));
+        myHashMap.clear();
+        Assert.assertEquals(0, myHashMap.size());
+        Assert.assertNull(myHashMap.get(1));
+    }
+
+    /**
+     * 手动让节点进queue，模拟key被回收
+     */
+    @Test
+    public void expungeTest(){
+        WeakKeyMyHashMap<Integer,Integer> myHashMap = new WeakKeyMyHashMap<>();
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            keys.add(i);
+            myHashMap.put(keys.get(i), i);
+        }
+        List<WeakKeyMyHashMap.Node<Integer>> stale = new ArrayList<>();
+        for (WeakKeyMyHashMap.Node<Integer> first : myHashMap.table) {
+            for (WeakKeyMyHashMap.Node<Integer> e = first; e != null; e = e.next) {
+                if ((e.value & 1) == 0)
+                    stale.add(e);
+            }
+        }
+        for (WeakKeyMyHashMap.Node<Integer> e : stale) {
+            e.clear();
+            e.enqueue();
+        }
+        //一次get只清理一批
+        Assert.assertNull(myHashMap.get(-1));
+        Assert.assertEquals(10000 - WeakKeyMyHashMap.EXPUNGE_BATCH, myHashMap.size);
+        Assert.assertEquals(5000, myHashMap.size());
+        for (int i = 0; i < 10000; i++)
+            Assert.assertEquals((i & 1) == 0 ? null : Integer.valueOf(i), myHashMap.get(keys.get(i)));
+        for (WeakKeyMyHashMap.Node<Integer> e : stale)
+            Assert.assertNull(e.value);
+        //已经删除的节点再进queue，不影响size
+        WeakKeyMyHashMap.Node<Integer> removed = myHashMap.getNode(keys.get(1));
+        Assert.assertEquals(Integer.valueOf(1), myHashMap.remove(keys.get(1)));
+        removed.enqueue();
+        Assert.assertEquals(4999, myHashMap.size());
+    }
+
+    @Test
+    public void gcTest() throws InterruptedException {
+        WeakKeyMyHashMap<Object,byte[]> myHashMap = new WeakKeyMyHashMap<>();
+        List<Object> held = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            Object key = new Object();
+            if (i % 10 == 0)
+                held.add(key);
+            myHashMap.put(key, new byte[64]);
+        }
+        for (int i = 0; i < 50 && myHashMap.size() > held.size(); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(held.size(), myHashMap.size());
+        for (Object key : held)
+            Assert.assertNotNull(myHashMap.get(key));
+        //回收的节点不影响之后的添加和扩容
+        Map<Integer,Integer> hashMap = new HashMap<>();
+        WeakKeyMyHashMap<Integer,Integer> ints = new WeakKeyMyHashMap<>(4, 0.75f);
+        for (int i = 0; i < 1000; i++) {
+            hashMap.put(1000 + i, i);
+            ints.put(1000 + i, i);
+        }
+        for (Map.Entry<Integer,Integer> e : hashMap.entrySet())
+            Assert.assertEquals(e.getValue(), ints.get(e.getKey()));
+    }
+
+}